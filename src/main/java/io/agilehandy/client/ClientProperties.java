@@ -0,0 +1,82 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.client;
+
+import io.agilehandy.command.api.ContainerCommandType;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * What the client does once the application has started.
+ *
+ * @author Haytham Mohamed
+ **/
+@Data
+@ConfigurationProperties(prefix = "acme.client")
+public class ClientProperties {
+
+	private Mode mode = Mode.DEMO;
+
+	private Load load = new Load();
+
+	public enum Mode {
+
+		// one container through its lifecycle, then the inventory it left behind
+		DEMO,
+
+		// the load below, ending with a throughput and latency report
+		LOAD,
+
+		// nothing, the application only serves
+		OFF
+	}
+
+	@Data
+	public static class Load {
+
+		// containers created and driven through their lifecycle
+		private int containers = 1000;
+
+		// containers driven at once, each with one command in flight
+		private int concurrency = 64;
+
+		// containers are created at and sent to zone-1..zones, port-1..ports
+		private int zones = 4;
+		private int ports = 4;
+
+		// weights of the step a container's lifecycle stops after, the whole round trip when empty
+		private Map<ContainerCommandType, Integer> lastSteps = new EnumMap<>(ContainerCommandType.class);
+
+		// share of steps preceded by a command the container's state doesn't allow, to be rejected
+		private double invalidShare = 0.0;
+
+		// a command not answered within this is sent again under the same command id, as a client retrying would
+		private Duration commandTimeout = Duration.ofSeconds(5);
+
+		// times a command is sent again after timing out before the container is given up on
+		private int retries = 2;
+
+		// longest a run may take before it is reported as it stands
+		private Duration timeout = Duration.ofMinutes(10);
+	}
+
+}
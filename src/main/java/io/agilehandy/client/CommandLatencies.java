@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.client;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies of the commands sent during a load run, per command, and how
+ * many of them came back other than expected.
+ *
+ * @author Haytham Mohamed
+ **/
+class CommandLatencies {
+
+	private final Map<String, Latency> commands = new LinkedHashMap<>();
+
+	// every command is known up front, so recording never changes the map
+	CommandLatencies(List<String> names) {
+		names.forEach(name -> commands.put(name, new Latency()));
+	}
+
+	void record(String command, long nanos, boolean expected) {
+		Latency latency = commands.get(command);
+		latency.histogram.recordValue(nanos);
+		if (!expected) {
+			latency.unexpected.increment();
+		}
+	}
+
+	long count() {
+		return commands.values().stream().mapToLong(l -> l.histogram.getTotalCount()).sum();
+	}
+
+	long unexpected() {
+		return commands.values().stream().mapToLong(l -> l.unexpected.sum()).sum();
+	}
+
+	// one line per command that was sent, latencies in microseconds
+	List<String> report(long elapsedNanos) {
+		double seconds = Math.max(elapsedNanos, 1) / 1e9;
+		List<String> lines = new ArrayList<>();
+		lines.add(String.format("%-10s %9s %9s %10s %9s %9s %9s %9s",
+				"command", "count", "per s", "unexpected", "p50 us", "p99 us", "p99.9 us", "max us"));
+		commands.forEach((name, latency) -> {
+			Histogram histogram = latency.histogram.copy();
+			if (histogram.getTotalCount() == 0) {
+				return;
+			}
+			lines.add(String.format("%-10s %9d %9.0f %10d %9d %9d %9d %9d", name,
+					histogram.getTotalCount(), histogram.getTotalCount() / seconds, latency.unexpected.sum(),
+					micros(histogram.getValueAtPercentile(50)),
+					micros(histogram.getValueAtPercentile(99)),
+					micros(histogram.getValueAtPercentile(99.9)),
+					micros(histogram.getMaxValue())));
+		});
+		return lines;
+	}
+
+	private static long micros(long nanos) {
+		return TimeUnit.NANOSECONDS.toMicros(nanos);
+	}
+
+	private static class Latency {
+
+		// nanoseconds at three significant digits, growing to whatever the slowest command takes
+		final Histogram histogram = new ConcurrentHistogram(3);
+
+		final LongAdder unexpected = new LongAdder();
+	}
+
+}
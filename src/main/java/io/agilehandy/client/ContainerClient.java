@@ -27,19 +27,23 @@ import io.agilehandy.command.api.cmd.ContainerTransArriveCommand;
 import io.agilehandy.command.api.cmd.ContainerTransBoardCommand;
 import io.agilehandy.command.api.cmd.ContainerTransDepartCommand;
 import io.agilehandy.command.api.cmd.ContainerTransOffBoardCommand;
+import io.agilehandy.command.batch.ContainerBatchCreator;
+import io.agilehandy.command.batch.ContainerCreateResult;
+import io.agilehandy.command.gateway.PositionedCommandGateway;
 import io.agilehandy.query.inventory.Inventory;
 import io.agilehandy.query.inventory.InventoryQuery;
 import lombok.extern.slf4j.Slf4j;
-import org.axonframework.commandhandling.gateway.CommandGateway;
 import org.axonframework.messaging.responsetypes.ResponseTypes;
 import org.axonframework.queryhandling.QueryGateway;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 /**
  * @author Haytham Mohamed
@@ -48,74 +52,63 @@ import java.util.UUID;
 @Slf4j
 public class ContainerClient implements CommandLineRunner {
 
-	private final CommandGateway commandGateway;
 	private final QueryGateway queryGateway;
-
-	public ContainerClient(CommandGateway commandGateway, QueryGateway queryGateway) {
-		this.commandGateway = commandGateway;
+	private final ContainerBatchCreator batchCreator;
+	private final PositionedCommandGateway positionedGateway;
+	private final ContainerWorkload workload;
+	private final ClientProperties properties;
+
+	public ContainerClient(QueryGateway queryGateway, ContainerBatchCreator batchCreator,
+	                       PositionedCommandGateway positionedGateway, ContainerWorkload workload,
+	                       ClientProperties properties) {
 		this.queryGateway = queryGateway;
+		this.batchCreator = batchCreator;
+		this.positionedGateway = positionedGateway;
+		this.workload = workload;
+		this.properties = properties;
 	}
 
 	public void run(String... args) {
+		switch (properties.getMode()) {
+			case DEMO:
+				demo();
+				break;
+			case LOAD:
+				workload.run();
+				break;
+			default:
+				log.info("client is off");
+		}
+	}
+
+	private void demo() {
 		log.info("==> start");
 		// create 5 containers
-		List<UUID> Ids = new ArrayList<>();
+		List<ContainerCreateCommand> creates = new ArrayList<>();
 		for (int i = 0; i< 6; i++) {
-			ContainerCreateCommand cmd = new ContainerCreateCommand(UUID.randomUUID(),
-					new Random().nextInt(6) * 100f, "zone-1", "port-1");
-
-			Ids.add(commandGateway.sendAndWait(cmd));
+			creates.add(new ContainerCreateCommand(UUID.randomUUID(),
+					(new Random().nextInt(6) + 1) * 100f, "zone-1", "port-1"));
 		}
+		List<UUID> Ids = batchCreator.create(creates).join().stream()
+				.filter(ContainerCreateResult::isCreated)
+				.map(ContainerCreateResult::getContainerId)
+				.collect(Collectors.toList());
 
 		// pick a container
 		log.info("Picking any container");
 		UUID id = Ids.get(new Random().nextInt(Ids.size()));
 
-		// reserve a container
-		log.info("reserve a container");
-		ContainerOpReserveCommand reserveCommand = new ContainerOpReserveCommand(id,
-				UUID.randomUUID(), TransmitType.PRIORITY, "zone-2", "port-2");
-		commandGateway.sendAndWait(reserveCommand);
-
-		// load container
-		log.info("load a container");
-		commandGateway.sendAndWait(new ContainerOpLoadCommand(id, 80f));
-
-		// board container to a ship
-		log.info("board a container");
-		commandGateway.sendAndWait(new ContainerTransBoardCommand(id));
-
-		// depart container from origin
-		log.info("depart a container");
-		commandGateway.sendAndWait(new ContainerTransDepartCommand(id));
-
-		// arrive container to destination
-		log.info("arrive a container");
-		commandGateway.sendAndWait(new ContainerTransArriveCommand(id));
-
-		// off board container at destination
-		log.info("off board a container");
-		commandGateway.sendAndWait(new ContainerTransOffBoardCommand(id));
-
-		// off load container
-		log.info("off load a container");
-		commandGateway.sendAndWait(new ContainerOpOffLoadCommand(id));
-
-		// release container
-		log.info("release a container");
-		commandGateway.send(new ContainerOpReleasedCommand(id));
-
-		// because of eventual consistency, let's pause a little
-		try {
-			Thread.sleep(500);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
+		// drive it through reserve, load, board, depart, arrive, off-board, off-load and release
+		long position = -1L;
+		for (Object command : lifecycle(id, "zone-2", "port-2")) {
+			log.info("sending {}", command.getClass().getSimpleName());
+			position = positionedGateway.send(command).join().getPosition();
 		}
 
-		// query zone/port
-		log.info("querying");
-		InventoryQuery query1 = new InventoryQuery("zone-1", "port-1");
-		InventoryQuery query2 = new InventoryQuery("zone-2", "port-2");
+		// query zone/port as of the last command, rather than sleeping on eventual consistency
+		log.info("querying at event position {}", position);
+		InventoryQuery query1 = new InventoryQuery("zone-1", "port-1", position);
+		InventoryQuery query2 = new InventoryQuery("zone-2", "port-2", position);
 
 		Inventory inv1 = queryGateway.query(query1
 				, ResponseTypes.instanceOf(Inventory.class)).join();
@@ -128,4 +121,18 @@ public class ContainerClient implements CommandLineRunner {
 		log.info("==> finish");
 	}
 
+	// the commands taking a released container to a destination and back to released
+	public static List<Object> lifecycle(UUID id, String destZoneName, String destPortName) {
+		return Arrays.asList(
+				new ContainerOpReserveCommand(id, UUID.randomUUID(), TransmitType.PRIORITY,
+						destZoneName, destPortName),
+				new ContainerOpLoadCommand(id, 80f),
+				new ContainerTransBoardCommand(id),
+				new ContainerTransDepartCommand(id),
+				new ContainerTransArriveCommand(id),
+				new ContainerTransOffBoardCommand(id),
+				new ContainerOpOffLoadCommand(id),
+				new ContainerOpReleasedCommand(id));
+	}
+
 }
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.client;
+
+import io.agilehandy.command.api.ContainerCommandType;
+import io.agilehandy.command.api.cmd.ContainerCreateCommand;
+import io.agilehandy.command.impl.CommandDeduplicationInterceptor;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.axonframework.commandhandling.CommandMessage;
+import org.axonframework.commandhandling.GenericCommandMessage;
+import org.axonframework.commandhandling.gateway.CommandGateway;
+import org.axonframework.common.AxonThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates containers spread over zone/ports and drives each through its
+ * lifecycle, a number of them at once, then reports throughput and latency
+ * percentiles per command.
+ *
+ * Every container is a chain of commands, each sent once the one before it
+ * has completed. A slot of the concurrency takes the next container once
+ * its current one is done. Some steps can be preceded by a command the
+ * container is not ready for, which is expected to be rejected. A command
+ * not answered in time is sent again with the same command id, so the
+ * application answers it once.
+ *
+ * @author Haytham Mohamed
+ **/
+@Component
+@Slf4j
+public class ContainerWorkload {
+
+	static final String CREATE = "CREATE";
+	static final String INVALID = "INVALID";
+
+	private static final ContainerCommandType[] STEPS = ContainerCommandType.values();
+
+	private final CommandGateway commandGateway;
+	private final ClientProperties.Load load;
+	private final ExecutorService executor;
+	private final ScheduledExecutorService timeouts =
+			Executors.newSingleThreadScheduledExecutor(new AxonThreadFactory("container-load-timeouts"));
+	private final AtomicInteger retried = new AtomicInteger();
+
+	public ContainerWorkload(CommandGateway commandGateway, ClientProperties properties) {
+		this.commandGateway = commandGateway;
+		this.load = properties.getLoad();
+		this.executor = Executors.newFixedThreadPool(Math.max(1, load.getConcurrency()),
+				new AxonThreadFactory("container-load"));
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+		timeouts.shutdownNow();
+	}
+
+	public void run() {
+		log.info("driving {} containers, {} at once, over {} zones of {} ports, {}% invalid steps",
+				load.getContainers(), load.getConcurrency(), load.getZones(), load.getPorts(),
+				load.getInvalidShare() * 100);
+		List<String> names = new ArrayList<>();
+		names.add(CREATE);
+		for (ContainerCommandType step : STEPS) {
+			names.add(step.name());
+		}
+		names.add(INVALID);
+		CommandLatencies latencies = new CommandLatencies(names);
+		AtomicInteger next = new AtomicInteger();
+
+		long start = System.nanoTime();
+		CompletableFuture<?>[] slots = new CompletableFuture<?>[Math.max(0, Math.min(load.getConcurrency(), load.getContainers()))];
+		for (int i = 0; i < slots.length; i++) {
+			slots[i] = CompletableFuture.supplyAsync(() -> null, executor)
+					.thenCompose(started -> driveNext(next, latencies));
+		}
+		await(CompletableFuture.allOf(slots), load.getTimeout());
+		long elapsed = System.nanoTime() - start;
+
+		log.info("load run: {} commands in {} ms, {} commands/s, {} not as expected, {} retried",
+				latencies.count(), TimeUnit.NANOSECONDS.toMillis(elapsed),
+				latencies.count() * TimeUnit.SECONDS.toNanos(1) / Math.max(elapsed, 1), latencies.unexpected(),
+				retried.get());
+		latencies.report(elapsed).forEach(log::info);
+	}
+
+	private static void await(CompletableFuture<?> run, Duration timeout) {
+		try {
+			run.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			log.warn("load run still going after {}, reporting the commands completed so far", timeout);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			log.error("load run failed", e.getCause());
+		}
+	}
+
+	// take the next container, then the one after it once this one is done
+	private CompletableFuture<Void> driveNext(AtomicInteger next, CommandLatencies latencies) {
+		if (next.getAndIncrement() >= load.getContainers()) {
+			return CompletableFuture.completedFuture(null);
+		}
+		return send(steps(ThreadLocalRandom.current()), 0, latencies)
+				.thenComposeAsync(done -> driveNext(next, latencies), executor);
+	}
+
+	private CompletableFuture<Void> send(List<Step> steps, int index, CommandLatencies latencies) {
+		if (index >= steps.size()) {
+			return CompletableFuture.completedFuture(null);
+		}
+		Step step = steps.get(index);
+		long start = System.nanoTime();
+		return send(step.command, load.getRetries())
+				.handle((result, error) -> {
+					latencies.record(step.name, System.nanoTime() - start, (error == null) == step.valid);
+					// a container that missed a step can't take the ones after it
+					return error == null || !step.valid;
+				})
+				.thenComposeAsync(carryOn -> carryOn
+						? send(steps, index + 1, latencies)
+						: CompletableFuture.<Void>completedFuture(null), executor);
+	}
+
+	// the command's answer, sending it again while it times out and retries are left
+	private CompletableFuture<Object> send(CommandMessage<?> command, int retries) {
+		CompletableFuture<Object> answer = new CompletableFuture<>();
+		ScheduledFuture<?> timeout = timeouts.schedule(() -> answer.completeExceptionally(new TimeoutException()),
+				load.getCommandTimeout().toMillis(), TimeUnit.MILLISECONDS);
+		commandGateway.send(command).whenComplete((result, error) -> {
+			timeout.cancel(false);
+			if (error == null) {
+				answer.complete(result);
+			} else {
+				answer.completeExceptionally(error);
+			}
+		});
+		if (retries <= 0) {
+			return answer;
+		}
+		return answer.handle((result, error) -> {
+			if (error instanceof TimeoutException) {
+				retried.incrementAndGet();
+				return send(command, retries - 1);
+			}
+			return answer;
+		}).thenCompose(next -> next);
+	}
+
+	// the commands of one container, from its creation to the step its lifecycle stops after
+	List<Step> steps(Random random) {
+		UUID id = UUID.randomUUID();
+		List<Step> steps = new ArrayList<>();
+		steps.add(Step.of(CREATE, new ContainerCreateCommand(id, (random.nextInt(6) + 1) * 100f,
+				"zone-" + (random.nextInt(load.getZones()) + 1), "port-" + (random.nextInt(load.getPorts()) + 1)), true));
+
+		String destZoneName = "zone-" + (random.nextInt(load.getZones()) + 1);
+		String destPortName = "port-" + (random.nextInt(load.getPorts()) + 1);
+		List<Object> lifecycle = ContainerClient.lifecycle(id, destZoneName, destPortName);
+		List<Object> early = ContainerClient.lifecycle(id, destZoneName, destPortName);
+		int last = lastStep(random);
+		for (int i = 0; i <= last; i++) {
+			if (random.nextDouble() < load.getInvalidShare()) {
+				// the lifecycle is a straight line, so the step after the one due is never allowed yet
+				steps.add(Step.of(INVALID, early.get((i + 1) % early.size()), false));
+			}
+			steps.add(Step.of(STEPS[i].name(), lifecycle.get(i), true));
+		}
+		return steps;
+	}
+
+	private int lastStep(Random random) {
+		Map<ContainerCommandType, Integer> weights = load.getLastSteps();
+		int total = weights.values().stream().mapToInt(Integer::intValue).sum();
+		if (total <= 0) {
+			return STEPS.length - 1;
+		}
+		int pick = random.nextInt(total);
+		for (Map.Entry<ContainerCommandType, Integer> weight : weights.entrySet()) {
+			pick -= weight.getValue();
+			if (pick < 0) {
+				return weight.getKey().ordinal();
+			}
+		}
+		return STEPS.length - 1;
+	}
+
+	@AllArgsConstructor
+	static class Step {
+
+		final String name;
+		final CommandMessage<?> command;
+
+		// whether the container's state allows the command when it is sent
+		final boolean valid;
+
+		// every send of the step, retries included, carries the same command id
+		static Step of(String name, Object command, boolean valid) {
+			return new Step(name, GenericCommandMessage.asCommandMessage(command).andMetaData(Collections.singletonMap(
+					CommandDeduplicationInterceptor.COMMAND_ID, UUID.randomUUID().toString())), valid);
+		}
+	}
+
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.command.api;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+/**
+ * The result of a handled command, along with the global event position its
+ * events were stored at or before. Queries asking for at least that position
+ * see the command's effects.
+ *
+ * @author Haytham Mohamed
+ **/
+@Value
+@AllArgsConstructor
+public class CommandResult<R> {
+
+	R result;
+	long position;
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.command.api;
+
+import io.agilehandy.command.api.cmd.ContainerOpLoadCommand;
+import io.agilehandy.command.api.cmd.ContainerOpOffLoadCommand;
+import io.agilehandy.command.api.cmd.ContainerOpReleasedCommand;
+import io.agilehandy.command.api.cmd.ContainerOpReserveCommand;
+import io.agilehandy.command.api.cmd.ContainerTransArriveCommand;
+import io.agilehandy.command.api.cmd.ContainerTransBoardCommand;
+import io.agilehandy.command.api.cmd.ContainerTransDepartCommand;
+import io.agilehandy.command.api.cmd.ContainerTransOffBoardCommand;
+
+/**
+ * @author Haytham Mohamed
+ **/
+public enum ContainerCommandType {
+
+	RESERVE(ContainerOpReserveCommand.class),
+	LOAD(ContainerOpLoadCommand.class),
+	BOARD(ContainerTransBoardCommand.class),
+	DEPART(ContainerTransDepartCommand.class),
+	ARRIVE(ContainerTransArriveCommand.class),
+	OFF_BOARD(ContainerTransOffBoardCommand.class),
+	OFF_LOAD(ContainerOpOffLoadCommand.class),
+	RELEASE(ContainerOpReleasedCommand.class)
+	;
+
+	Class<?> commandType;
+
+	ContainerCommandType(Class<?> commandType) {
+		this.commandType = commandType;
+	}
+
+	public Class<?> getCommandType() {
+		return commandType;
+	}
+}
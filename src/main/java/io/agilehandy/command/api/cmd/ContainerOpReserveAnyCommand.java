@@ -0,0 +1,45 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.command.api.cmd;
+
+import io.agilehandy.command.api.TransmitType;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+import java.util.UUID;
+
+/**
+ * Reserve the best fitting free container at a zone/port, whichever it is.
+ *
+ * @author Haytham Mohamed
+ **/
+@Value
+@AllArgsConstructor
+public class ContainerOpReserveAnyCommand {
+
+	String zoneName;
+	String portName;
+	Float requiredSize;
+
+	UUID shipmentId;
+	TransmitType transitType;
+
+	String destZoneName;
+	String destPortName;
+
+}
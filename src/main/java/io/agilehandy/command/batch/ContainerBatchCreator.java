@@ -0,0 +1,109 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.command.batch;
+
+import io.agilehandy.command.api.cmd.ContainerCreateCommand;
+import io.agilehandy.command.impl.ContainerProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.axonframework.commandhandling.gateway.CommandGateway;
+import org.axonframework.common.AxonThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Creates many containers at once, keeping at most a configured number of
+ * create commands in flight.
+ *
+ * Each in-flight slot sends its next command as soon as the previous one
+ * completes. Slots hop onto the batch executor between commands, so a
+ * synchronous command bus neither blocks the caller nor grows the stack.
+ *
+ * @author Haytham Mohamed
+ **/
+@Component
+@Slf4j
+public class ContainerBatchCreator {
+
+	private final CommandGateway commandGateway;
+	private final int parallelism;
+	private final ExecutorService executor;
+
+	public ContainerBatchCreator(CommandGateway commandGateway, ContainerProperties properties) {
+		this.commandGateway = commandGateway;
+		this.parallelism = properties.getBatch().getParallelism();
+		this.executor = Executors.newFixedThreadPool(parallelism, new AxonThreadFactory("container-batch"));
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	public CompletableFuture<List<ContainerCreateResult>> create(List<ContainerCreateCommand> commands) {
+		log.info("creating a batch of {} containers", commands.size());
+		AtomicReferenceArray<ContainerCreateResult> results = new AtomicReferenceArray<>(commands.size());
+		AtomicInteger next = new AtomicInteger();
+
+		CompletableFuture<?>[] slots = new CompletableFuture<?>[Math.min(parallelism, commands.size())];
+		for (int i = 0; i < slots.length; i++) {
+			slots[i] = CompletableFuture.supplyAsync(() -> null, executor)
+					.thenCompose(start -> sendNext(commands, next, results));
+		}
+
+		return CompletableFuture.allOf(slots).thenApply(done -> {
+			List<ContainerCreateResult> list = new ArrayList<>(commands.size());
+			for (int i = 0; i < results.length(); i++) {
+				list.add(results.get(i));
+			}
+			return list;
+		});
+	}
+
+	public CompletableFuture<List<ContainerCreateResult>> create(ContainerCreateCommand... commands) {
+		return create(Arrays.asList(commands));
+	}
+
+	// send the next pending command, then chain the one after it on completion
+	private CompletableFuture<Void> sendNext(List<ContainerCreateCommand> commands, AtomicInteger next,
+	                                         AtomicReferenceArray<ContainerCreateResult> results) {
+		int index = next.getAndIncrement();
+		if (index >= commands.size()) {
+			return CompletableFuture.completedFuture(null);
+		}
+		ContainerCreateCommand command = commands.get(index);
+		return commandGateway.<UUID>send(command)
+				.handle((id, error) -> {
+					results.set(index, error == null
+							? ContainerCreateResult.created(index, id != null ? id : command.getId())
+							: ContainerCreateResult.failed(index, error));
+					return index;
+				})
+				.thenComposeAsync(done -> sendNext(commands, next, results), executor);
+	}
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.command.batch;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+import java.util.UUID;
+
+/**
+ * Outcome of one container in a batch creation, in request order.
+ *
+ * @author Haytham Mohamed
+ **/
+@Value
+@AllArgsConstructor
+public class ContainerCreateResult {
+
+	int index;
+	UUID containerId;
+	String error;
+
+	public boolean isCreated() {
+		return error == null;
+	}
+
+	static ContainerCreateResult created(int index, UUID containerId) {
+		return new ContainerCreateResult(index, containerId, null);
+	}
+
+	static ContainerCreateResult failed(int index, Throwable error) {
+		return new ContainerCreateResult(index, null, error.getMessage());
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.command.gateway;
+
+import io.agilehandy.command.api.CommandResult;
+import io.agilehandy.command.api.cmd.ContainerOpReserveAnyCommand;
+import io.agilehandy.command.api.cmd.ContainerOpReserveCommand;
+import io.agilehandy.command.impl.ContainerCapacityIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.axonframework.commandhandling.CommandExecutionException;
+import org.axonframework.common.Assert;
+import org.axonframework.messaging.RemoteHandlingException;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Books whichever free container at a zone/port fits best.
+ *
+ * The candidate comes straight out of the {@link ContainerCapacityIndex}, and
+ * is then reserved with a {@link ContainerOpReserveCommand} of its own id, so
+ * the command goes wherever the command bus routes that container. The
+ * container itself still guards the reservation, so a candidate the index has
+ * not caught up on yet is skipped for the next one.
+ *
+ * A reservation repeated under the same command id is answered by the first
+ * one with the container it reserved; the container claimed for the repeat
+ * goes back to the index.
+ *
+ * @author Haytham Mohamed
+ **/
+@Component
+@Slf4j
+public class ContainerReservations {
+
+	private final ContainerCapacityIndex capacityIndex;
+	private final PositionedCommandGateway gateway;
+
+	public ContainerReservations(ContainerCapacityIndex capacityIndex, PositionedCommandGateway gateway) {
+		this.capacityIndex = capacityIndex;
+		this.gateway = gateway;
+	}
+
+	public CompletableFuture<CommandResult<UUID>> reserveAny(ContainerOpReserveAnyCommand cmd, String commandId) {
+		Assert.notNull(cmd.getZoneName(), () -> "Must give the zone name to reserve at");
+		Assert.notNull(cmd.getPortName(), () -> "Must give the port name to reserve at");
+		float requiredSize = cmd.getRequiredSize() == null ? 0f : cmd.getRequiredSize();
+		CompletableFuture<CommandResult<UUID>> reserved = new CompletableFuture<>();
+		reserveNext(cmd, requiredSize, commandId, reserved);
+		return reserved;
+	}
+
+	private void reserveNext(ContainerOpReserveAnyCommand cmd, float requiredSize, String commandId,
+	                         CompletableFuture<CommandResult<UUID>> reserved) {
+		Optional<UUID> candidate = capacityIndex.claim(cmd.getZoneName(), cmd.getPortName(), requiredSize);
+		if (!candidate.isPresent()) {
+			reserved.completeExceptionally(new IllegalStateException("No container available to reserve at "
+					+ cmd.getZoneName() + "/" + cmd.getPortName()));
+			return;
+		}
+		UUID id = candidate.get();
+		gateway.<UUID>send(new ContainerOpReserveCommand(id,
+				cmd.getShipmentId(),
+				cmd.getTransitType(),
+				cmd.getDestZoneName(),
+				cmd.getDestPortName()), commandId)
+				.whenComplete((result, error) -> {
+					Throwable failure = error instanceof CompletionException ? error.getCause() : error;
+					if (failure == null) {
+						if (!id.equals(result.getResult())) {
+							// a repeat, answered with the container the first attempt reserved
+							capacityIndex.unclaim(id);
+						}
+						log.info("reserved container {} at {}/{}", result.getResult(), cmd.getZoneName(),
+								cmd.getPortName());
+						reserved.complete(result);
+					} else if (rejected(failure)) {
+						// the index was behind on this one, it will be re-offered once released
+						log.debug("skipping container {}: {}", id, failure.getMessage());
+						reserveNext(cmd, requiredSize, commandId, reserved);
+					} else {
+						// not the container's state, so it is still free: hand it back before failing
+						capacityIndex.unclaim(id);
+						reserved.completeExceptionally(failure);
+					}
+				});
+	}
+
+	// a failed guard of the container, here or as described by a handler on another node
+	private static boolean rejected(Throwable failure) {
+		if (failure instanceof IllegalStateException) {
+			return true;
+		}
+		if (failure instanceof CommandExecutionException && failure.getCause() instanceof RemoteHandlingException) {
+			List<String> descriptions = ((RemoteHandlingException) failure.getCause()).getExceptionDescriptions();
+			return !descriptions.isEmpty()
+					&& descriptions.get(0).startsWith(IllegalStateException.class.getName() + ": ");
+		}
+		return false;
+	}
+
+}
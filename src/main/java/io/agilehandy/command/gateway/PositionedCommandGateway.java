@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.command.gateway;
+
+import io.agilehandy.command.api.CommandResult;
+import io.agilehandy.command.impl.CommandDeduplicationInterceptor;
+import io.agilehandy.eventstore.TrackingTokens;
+import org.axonframework.commandhandling.GenericCommandMessage;
+import org.axonframework.commandhandling.gateway.CommandGateway;
+import org.axonframework.common.AxonThreadFactory;
+import org.axonframework.eventsourcing.eventstore.EventStore;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Sends commands and answers their results with an event position to read
+ * the query side at.
+ *
+ * A command completes once its events are stored, so the head of the event
+ * store right after is at or past them. It may include events of other
+ * commands stored meanwhile, which only makes a read at that position wait a
+ * little longer.
+ *
+ * Asking for the head is a call to Axon Server, so it is made on threads of
+ * its own rather than on the thread completing the command, which may be one
+ * the command bus handles or receives commands on.
+ *
+ * @author Haytham Mohamed
+ **/
+@Component
+public class PositionedCommandGateway {
+
+	private final CommandGateway commandGateway;
+	private final EventStore eventStore;
+
+	// threads asking the event store for its head, a few calls in flight being plenty
+	private static final int POSITION_THREADS = 4;
+	private final ExecutorService positions;
+
+	public PositionedCommandGateway(CommandGateway commandGateway, EventStore eventStore) {
+		this.commandGateway = commandGateway;
+		this.eventStore = eventStore;
+		this.positions = Executors.newFixedThreadPool(POSITION_THREADS, new AxonThreadFactory("command-positions"));
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		positions.shutdown();
+	}
+
+	public <R> CompletableFuture<CommandResult<R>> send(Object command) {
+		return send(command, null);
+	}
+
+	// a command sent again under the same id is answered with the first one's result
+	public <R> CompletableFuture<CommandResult<R>> send(Object command, String commandId) {
+		Object message = commandId == null ? command : GenericCommandMessage.asCommandMessage(command)
+				.andMetaData(Collections.singletonMap(CommandDeduplicationInterceptor.COMMAND_ID, commandId));
+		return commandGateway.<R>send(message)
+				.thenApplyAsync(result -> new CommandResult<>(result, TrackingTokens.position(eventStore.createHeadToken())),
+						positions);
+	}
+
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.command.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.axonframework.commandhandling.CommandBus;
+import org.axonframework.commandhandling.CommandCallback;
+import org.axonframework.commandhandling.CommandMessage;
+import org.axonframework.commandhandling.GenericCommandResultMessage;
+import org.axonframework.common.AxonThreadFactory;
+import org.axonframework.common.Registration;
+import org.axonframework.messaging.MessageDispatchInterceptor;
+import org.axonframework.messaging.MessageHandler;
+import org.axonframework.messaging.MessageHandlerInterceptor;
+import org.axonframework.modelling.command.AnnotationCommandTargetResolver;
+import org.axonframework.modelling.command.CommandTargetResolver;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Asynchronous command bus that pins every aggregate to one worker thread.
+ *
+ * A command goes to the worker picked by hashing its target aggregate
+ * identifier, and each worker handles its commands one at a time on the
+ * wrapped local bus. Commands for one container therefore stay in order and
+ * never contend for its lock, while different containers run in parallel.
+ * Commands without a target identifier are spread round robin.
+ *
+ * @author Haytham Mohamed
+ **/
+@ManagedResource(objectName = "io.agilehandy:type=AggregateAffineCommandBus")
+@Slf4j
+public class AggregateAffineCommandBus implements CommandBus {
+
+	// longest a shutdown waits for the commands queued before it
+	private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(30);
+
+	private final CommandBus localSegment;
+	private final CommandTargetResolver targetResolver = new AnnotationCommandTargetResolver();
+	private final List<MessageDispatchInterceptor<? super CommandMessage<?>>> dispatchInterceptors =
+			new CopyOnWriteArrayList<>();
+
+	private final ThreadPoolExecutor[] workers;
+	private final AtomicIntegerArray maxQueueDepths;
+	private final AtomicInteger roundRobin = new AtomicInteger();
+
+	public AggregateAffineCommandBus(CommandBus localSegment, int workerCount, int queueCapacity) {
+		this.localSegment = localSegment;
+		this.workers = new ThreadPoolExecutor[workerCount];
+		this.maxQueueDepths = new AtomicIntegerArray(workerCount);
+		AxonThreadFactory threadFactory = new AxonThreadFactory("container-commands");
+		for (int i = 0; i < workerCount; i++) {
+			workers[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+					new LinkedBlockingQueue<>(queueCapacity), threadFactory);
+		}
+	}
+
+	@Override
+	public <C> void dispatch(CommandMessage<C> command) {
+		dispatch(command, (message, result) -> {
+			if (result.isExceptional()) {
+				log.warn("command {} failed", message.getCommandName(), result.exceptionResult());
+			}
+		});
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <C, R> void dispatch(CommandMessage<C> command, CommandCallback<? super C, ? super R> callback) {
+		CommandMessage<C> intercepted = command;
+		for (MessageDispatchInterceptor<? super CommandMessage<?>> interceptor : dispatchInterceptors) {
+			intercepted = (CommandMessage<C>) interceptor.handle(intercepted);
+		}
+		CommandMessage<C> message = intercepted;
+
+		int worker = workerFor(message);
+		try {
+			workers[worker].execute(() -> localSegment.dispatch(message, callback));
+			maxQueueDepths.accumulateAndGet(worker, workers[worker].getQueue().size(), Math::max);
+		} catch (RejectedExecutionException e) {
+			callback.onResult(message, GenericCommandResultMessage.asCommandResultMessage(e));
+		}
+	}
+
+	private int workerFor(CommandMessage<?> command) {
+		String target;
+		try {
+			target = targetResolver.resolveTarget(command).getIdentifier();
+		} catch (IllegalArgumentException e) {
+			return Math.floorMod(roundRobin.getAndIncrement(), workers.length);
+		}
+		return Math.floorMod(target.hashCode(), workers.length);
+	}
+
+	@Override
+	public Registration subscribe(String commandName, MessageHandler<? super CommandMessage<?>> handler) {
+		return localSegment.subscribe(commandName, handler);
+	}
+
+	@Override
+	public Registration registerDispatchInterceptor(
+			MessageDispatchInterceptor<? super CommandMessage<?>> dispatchInterceptor) {
+		dispatchInterceptors.add(dispatchInterceptor);
+		return () -> dispatchInterceptors.remove(dispatchInterceptor);
+	}
+
+	@Override
+	public Registration registerHandlerInterceptor(
+			MessageHandlerInterceptor<? super CommandMessage<?>> handlerInterceptor) {
+		return localSegment.registerHandlerInterceptor(handlerInterceptor);
+	}
+
+	// commands already queued are still handled, for up to the shutdown timeout in all
+	public void shutdown() {
+		for (ThreadPoolExecutor worker : workers) {
+			worker.shutdown();
+		}
+		long deadline = System.nanoTime() + SHUTDOWN_TIMEOUT.toNanos();
+		try {
+			for (ThreadPoolExecutor worker : workers) {
+				if (!worker.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+					log.warn("container command workers still busy after {}, dropping their queued commands",
+							SHUTDOWN_TIMEOUT);
+					break;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		for (ThreadPoolExecutor worker : workers) {
+			worker.shutdownNow();
+		}
+	}
+
+	@ManagedAttribute
+	public int getWorkerCount() {
+		return workers.length;
+	}
+
+	@ManagedAttribute
+	public int[] getQueueDepths() {
+		int[] depths = new int[workers.length];
+		for (int i = 0; i < workers.length; i++) {
+			depths[i] = workers[i].getQueue().size();
+		}
+		return depths;
+	}
+
+	@ManagedAttribute
+	public int[] getMaxQueueDepths() {
+		int[] depths = new int[workers.length];
+		for (int i = 0; i < workers.length; i++) {
+			depths[i] = maxQueueDepths.get(i);
+		}
+		return depths;
+	}
+
+	@ManagedAttribute
+	public long[] getCompletedCommands() {
+		long[] completed = new long[workers.length];
+		for (int i = 0; i < workers.length; i++) {
+			completed[i] = workers[i].getCompletedTaskCount();
+		}
+		return completed;
+	}
+
+}
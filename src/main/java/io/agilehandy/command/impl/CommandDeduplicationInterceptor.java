@@ -0,0 +1,178 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.command.impl;
+
+import io.agilehandy.command.api.cmd.ContainerCreateCommand;
+import lombok.extern.slf4j.Slf4j;
+import org.axonframework.commandhandling.CommandMessage;
+import org.axonframework.messaging.InterceptorChain;
+import org.axonframework.messaging.MessageHandlerInterceptor;
+import org.axonframework.messaging.unitofwork.UnitOfWork;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Answers retried commands with the result of the first attempt.
+ *
+ * A command is identified by the {@value #COMMAND_ID} meta data its sender
+ * attaches, and a create command also by the container id it carries. An id
+ * is taken as soon as its command starts being handled: a repeat arriving
+ * meanwhile, as a retry after a timeout does, waits for the first attempt
+ * and gets its result, or is handled itself if the first attempt failed.
+ * It waits no longer than a command is expected to take, and fails as still
+ * being handled after that, rather than holding its thread.
+ * Ids of successfully handled commands are then remembered in a compact
+ * {@link RecentCommandIds} for a sliding window and up to a maximum count,
+ * and a repeat within that window gets the remembered result straight back,
+ * before the container is loaded or any event is written.
+ *
+ * @author Haytham Mohamed
+ **/
+@ManagedResource(objectName = "io.agilehandy:type=CommandDeduplication")
+@Slf4j
+public class CommandDeduplicationInterceptor implements MessageHandlerInterceptor<CommandMessage<?>> {
+
+	public static final String COMMAND_ID = "commandId";
+
+	// what a first attempt that rolled back leaves its waiting repeats
+	private static final Object FAILED = new Object();
+
+	private final long windowMillis;
+	private final long waitMillis;
+	private final Clock clock;
+
+	// guarded by itself, together with the moves out of inFlight
+	private final RecentCommandIds seen;
+
+	// commands being handled, by id
+	private final ConcurrentHashMap<UUID, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+	private final LongAdder duplicates = new LongAdder();
+
+	public CommandDeduplicationInterceptor(Duration window, Duration waitTimeout, int maxEntries) {
+		this(window, waitTimeout, maxEntries, Clock.systemUTC());
+	}
+
+	CommandDeduplicationInterceptor(Duration window, Duration waitTimeout, int maxEntries, Clock clock) {
+		this.windowMillis = window.toMillis();
+		this.waitMillis = waitTimeout.toMillis();
+		this.clock = clock;
+		this.seen = new RecentCommandIds(maxEntries, windowMillis);
+	}
+
+	@Override
+	public Object handle(UnitOfWork<? extends CommandMessage<?>> unitOfWork, InterceptorChain chain) throws Exception {
+		Optional<String> commandId = commandIdOf(unitOfWork.getMessage());
+		if (!commandId.isPresent()) {
+			return chain.proceed();
+		}
+		UUID id = UUID.nameUUIDFromBytes(commandId.get().getBytes(StandardCharsets.UTF_8));
+
+		CompletableFuture<Object> attempt = new CompletableFuture<>();
+		while (true) {
+			Object previous;
+			CompletableFuture<Object> first;
+			synchronized (seen) {
+				previous = seen.get(id, clock.millis());
+				first = previous == RecentCommandIds.UNKNOWN ? inFlight.putIfAbsent(id, attempt) : null;
+			}
+			if (previous == RecentCommandIds.UNKNOWN && first == null) {
+				break;
+			}
+			if (first != null) {
+				previous = await(first, commandId.get());
+				if (previous == FAILED) {
+					// the first attempt didn't go through, try again to take the id
+					continue;
+				}
+			}
+			duplicates.increment();
+			log.info("ignoring duplicate command {} ({})", commandId.get(),
+					unitOfWork.getMessage().getCommandName());
+			return previous;
+		}
+
+		Object[] result = new Object[1];
+		unitOfWork.afterCommit(u -> {
+			synchronized (seen) {
+				seen.add(id, clock.millis(), result[0]);
+				inFlight.remove(id, attempt);
+			}
+			attempt.complete(result[0]);
+		});
+		unitOfWork.onRollback(u -> {
+			inFlight.remove(id, attempt);
+			attempt.complete(FAILED);
+		});
+		result[0] = chain.proceed();
+		return result[0];
+	}
+
+	// the first attempt's result, waited on no longer than a command should take
+	private Object await(CompletableFuture<Object> first, String commandId) throws Exception {
+		try {
+			return first.get(waitMillis, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			throw new TimeoutException("Command " + commandId + " is still being handled");
+		} catch (ExecutionException e) {
+			return FAILED;
+		}
+	}
+
+	static Optional<String> commandIdOf(CommandMessage<?> command) {
+		Object commandId = command.getMetaData().get(COMMAND_ID);
+		if (commandId != null) {
+			return Optional.of(commandId.toString());
+		}
+		if (command.getPayload() instanceof ContainerCreateCommand) {
+			return Optional.ofNullable(((ContainerCreateCommand) command.getPayload()).getId())
+					.map(id -> "create:" + id);
+		}
+		return Optional.empty();
+	}
+
+	@ManagedAttribute
+	public int getRemembered() {
+		synchronized (seen) {
+			return seen.size();
+		}
+	}
+
+	@ManagedAttribute
+	public int getInFlight() {
+		return inFlight.size();
+	}
+
+	@ManagedAttribute
+	public long getDuplicates() {
+		return duplicates.sum();
+	}
+
+}
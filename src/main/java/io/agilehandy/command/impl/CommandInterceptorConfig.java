@@ -0,0 +1,52 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.command.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.axonframework.commandhandling.CommandBus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Interceptors around the handling of every container command.
+ *
+ * @author Haytham Mohamed
+ **/
+@Configuration
+@Slf4j
+public class CommandInterceptorConfig {
+
+	@Bean
+	public CommandDeduplicationInterceptor commandDeduplicationInterceptor(ContainerProperties properties) {
+		ContainerProperties.Deduplication deduplication = properties.getDeduplication();
+		return new CommandDeduplicationInterceptor(deduplication.getWindow(), deduplication.getWaitTimeout(),
+				deduplication.getMaxEntries());
+	}
+
+	@Autowired
+	public void registerInterceptors(CommandBus commandBus,
+	                                 CommandDeduplicationInterceptor commandDeduplicationInterceptor,
+	                                 ContainerProperties properties) {
+		if (properties.getDeduplication().isEnabled()) {
+			log.info("deduplicating commands seen in the last {}", properties.getDeduplication().getWindow());
+			commandBus.registerHandlerInterceptor(commandDeduplicationInterceptor);
+		}
+	}
+
+}
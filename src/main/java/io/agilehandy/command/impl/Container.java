@@ -17,6 +17,7 @@
 
 package io.agilehandy.command.impl;
 
+import io.agilehandy.command.api.ContainerCommandType;
 import io.agilehandy.command.api.OpStatus;
 import io.agilehandy.command.api.TransmitStatus;
 import io.agilehandy.command.api.TransmitType;
@@ -48,6 +49,7 @@ import org.axonframework.modelling.command.AggregateIdentifier;
 import org.axonframework.spring.stereotype.Aggregate;
 
 import java.time.LocalDateTime;
+import java.util.EnumSet;
 import java.util.UUID;
 
 import static org.axonframework.modelling.command.AggregateLifecycle.*;
@@ -55,7 +57,7 @@ import static org.axonframework.modelling.command.AggregateLifecycle.*;
 /**
  * @author Haytham Mohamed
  **/
-@Aggregate
+@Aggregate(repository = "containerRepository")
 @Data
 @NoArgsConstructor
 @Slf4j
@@ -100,46 +102,43 @@ public class Container {
 	}
 
 	boolean canReserve() {
-		return (spaceAvailable()
-				&& transmitStatus.getValue().equals(TransmitStatus.OFF_BOARDED.getValue())
-				&& opStatus.getValue().equals(OpStatus.RELEASED.getValue()));
+		return spaceAvailable() && canAccept(ContainerCommandType.RESERVE);
 	}
 
 	boolean canLoad() {
-		return opStatus.getValue().equals(OpStatus.RESERVED.getValue())
-				&& this.transmitStatus.getValue().equals(TransmitStatus.OFF_BOARDED.getValue())
-				&& !isFull();
+		return canAccept(ContainerCommandType.LOAD) && !isFull();
 	}
 
 	boolean canBoard() {
-		return opStatus.getValue().equals(OpStatus.LOADED.getValue())
-				&& this.transmitStatus.getValue().equals(TransmitStatus.OFF_BOARDED.getValue());
+		return canAccept(ContainerCommandType.BOARD);
 	}
 
 	boolean canDepart() {
-		return opStatus.getValue().equals(OpStatus.LOADED.getValue())
-				&& this.transmitStatus.getValue().equals(TransmitStatus.BOARDED.getValue());
+		return canAccept(ContainerCommandType.DEPART);
 	}
 
 	boolean canArrive() {
-		return opStatus.getValue().equals(OpStatus.LOADED.getValue())
-				&& this.transmitStatus.getValue().equals(TransmitStatus.DEPARTED.getValue());
+		return canAccept(ContainerCommandType.ARRIVE);
 	}
 
 	boolean canOffBoard() {
-		return opStatus.getValue().equals(OpStatus.LOADED.getValue())
-				&& this.transmitStatus.getValue().equals(TransmitStatus.ARRIVED.getValue());
+		return canAccept(ContainerCommandType.OFF_BOARD);
 	}
 
 	boolean canOffLoad() {
-		return opStatus.getValue().equals(OpStatus.LOADED.getValue())
-				&& this.transmitStatus.getValue().equals(TransmitStatus.OFF_BOARDED.getValue());
+		return canAccept(ContainerCommandType.OFF_LOAD);
 	}
 
 	boolean canRelease() {
-		return
-				opStatus.getValue().equals(OpStatus.OFF_LOADED.getValue())
-						&& this.transmitStatus.getValue().equals(TransmitStatus.OFF_BOARDED.getValue());
+		return canAccept(ContainerCommandType.RELEASE);
+	}
+
+	boolean canAccept(ContainerCommandType command) {
+		return ContainerTransitions.allows(opStatus, transmitStatus, command);
+	}
+
+	EnumSet<ContainerCommandType> legalCommands() {
+		return ContainerTransitions.legalCommands(opStatus, transmitStatus);
 	}
 
 	// creating a new container
@@ -151,7 +150,9 @@ public class Container {
 		Assert.notNull(containerCreateCommand.getCurrentPortName(),
 				() ->"Must assign a container to a facility center name");
 
-		apply(new ContainerCreated(UUID.randomUUID(),
+		// create the container under the id the caller targeted, the disruptor routes on it
+		UUID id = containerCreateCommand.getId() != null ? containerCreateCommand.getId() : UUID.randomUUID();
+		apply(new ContainerCreated(id,
 				containerCreateCommand.getSize(),
 				containerCreateCommand.getCurrentZoneName(),
 				containerCreateCommand.getCurrentPortName(),
@@ -163,16 +164,16 @@ public class Container {
 		this.id = event.getId();
 		this.size = event.getSize();
 		this.createTimeStamp = event.getTimestamp();
-		this.currentPortName = this.getCurrentPortName();
-		this.currentZoneName = this.getCurrentZoneName();
+		this.currentPortName = event.getCurrentPortName();
+		this.currentZoneName = event.getCurrentZoneName();
 		this.usedSize = 0f;
 		this.opStatus = OpStatus.RELEASED;
 		this.transmitStatus = TransmitStatus.OFF_BOARDED;
 	}
 
-	// reserve a container
+	// reserve a container, answering its id to tell which one a repeated reservation got
 	@CommandHandler
-	public void reserve(ContainerOpReserveCommand containerBookCommand) {
+	public UUID reserve(ContainerOpReserveCommand containerBookCommand) {
 		log.info("command to reserve a new container");
 		Assert.state(canReserve(), () -> "Container is not available to reserve");
 		apply (new ContainerOpReserved(containerBookCommand.getId(),
@@ -185,6 +186,7 @@ public class Container {
 				this.currentPortName
 				)
 		);
+		return this.id;
 	}
 
 	@EventSourcingHandler
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.command.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.axonframework.commandhandling.CommandBus;
+import org.axonframework.commandhandling.SimpleCommandBus;
+import org.axonframework.common.transaction.TransactionManager;
+import org.axonframework.messaging.interceptors.CorrelationDataInterceptor;
+import org.axonframework.spring.config.AxonConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+
+/**
+ * Asynchronous, aggregate-affine command handling, active with the
+ * {@code affine} profile. The {@code disruptor} profile sets up a command bus
+ * of its own under the same name, so the two refuse to start together.
+ *
+ * @author Haytham Mohamed
+ **/
+@Configuration
+@Profile("affine")
+@Slf4j
+public class ContainerAffinityConfig {
+
+	public ContainerAffinityConfig(Environment environment) {
+		if (environment.acceptsProfiles(Profiles.of("disruptor"))) {
+			throw new IllegalStateException(
+					"The affine and disruptor profiles each set up the command bus, activate only one of them");
+		}
+	}
+
+	@Bean(destroyMethod = "shutdown")
+	public AggregateAffineCommandBus commandBus(TransactionManager transactionManager,
+	                                            AxonConfiguration axonConfiguration,
+	                                            ContainerProperties properties) {
+		ContainerProperties.Affinity affinity = properties.getAffinity();
+		log.info("handling container commands on {} aggregate-affine workers", affinity.getWorkers());
+
+		SimpleCommandBus localSegment = SimpleCommandBus.builder()
+				.transactionManager(transactionManager)
+				.messageMonitor(axonConfiguration.messageMonitor(CommandBus.class, "commandBus"))
+				.build();
+		localSegment.registerHandlerInterceptor(
+				new CorrelationDataInterceptor<>(axonConfiguration.correlationDataProviders()));
+
+		return new AggregateAffineCommandBus(localSegment, affinity.getWorkers(), affinity.getQueueCapacity());
+	}
+
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.command.impl;
+
+import org.axonframework.common.Registration;
+import org.axonframework.common.caching.Cache;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded in-memory cache of loaded {@link Container} aggregates.
+ *
+ * Entries are evicted once the cache is full, either the least recently used
+ * or the oldest one depending on the {@link EvictionPolicy}. The repository
+ * removes an entry whenever the unit of work that loaded it rolls back, so a
+ * concurrency conflict never leaves a stale container behind.
+ *
+ * @author Haytham Mohamed
+ **/
+@ManagedResource(objectName = "io.agilehandy:type=ContainerCache")
+public class ContainerCache implements Cache {
+
+	public enum EvictionPolicy {
+		LRU,
+		FIFO
+	}
+
+	private final int maxSize;
+	private final EvictionPolicy policy;
+	private final Map<Object, Object> entries;
+	private final List<EntryListener> listeners = new CopyOnWriteArrayList<>();
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder invalidations = new LongAdder();
+
+	public ContainerCache(int maxSize, EvictionPolicy policy) {
+		this.maxSize = maxSize;
+		this.policy = policy;
+		this.entries = new LinkedHashMap<Object, Object>(16, 0.75f, policy == EvictionPolicy.LRU) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Object, Object> eldest) {
+				if (size() <= ContainerCache.this.maxSize) {
+					return false;
+				}
+				evictions.increment();
+				listeners.forEach(l -> l.onEntryExpired(eldest.getKey()));
+				return true;
+			}
+		};
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <K, V> V get(K key) {
+		Object value;
+		synchronized (entries) {
+			value = entries.get(key);
+		}
+		if (value == null) {
+			misses.increment();
+		} else {
+			hits.increment();
+			listeners.forEach(l -> l.onEntryRead(key, value));
+		}
+		return (V) value;
+	}
+
+	@Override
+	public <K, V> void put(K key, V value) {
+		Object previous;
+		synchronized (entries) {
+			previous = entries.put(key, value);
+		}
+		if (previous == null) {
+			listeners.forEach(l -> l.onEntryCreated(key, value));
+		} else {
+			listeners.forEach(l -> l.onEntryUpdated(key, value));
+		}
+	}
+
+	@Override
+	public <K, V> boolean putIfAbsent(K key, V value) {
+		synchronized (entries) {
+			if (entries.containsKey(key)) {
+				return false;
+			}
+			entries.put(key, value);
+		}
+		listeners.forEach(l -> l.onEntryCreated(key, value));
+		return true;
+	}
+
+	@Override
+	public <K> boolean remove(K key) {
+		Object removed;
+		synchronized (entries) {
+			removed = entries.remove(key);
+		}
+		if (removed == null) {
+			return false;
+		}
+		invalidations.increment();
+		listeners.forEach(l -> l.onEntryRemoved(key));
+		return true;
+	}
+
+	@Override
+	public <K> boolean containsKey(K key) {
+		synchronized (entries) {
+			return entries.containsKey(key);
+		}
+	}
+
+	@Override
+	public Registration registerCacheEntryListener(EntryListener entryListener) {
+		listeners.add(entryListener);
+		return () -> listeners.remove(entryListener);
+	}
+
+	@ManagedAttribute
+	public int getSize() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	@ManagedAttribute
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	@ManagedAttribute
+	public String getEvictionPolicy() {
+		return policy.name();
+	}
+
+	@ManagedAttribute
+	public long getHits() {
+		return hits.sum();
+	}
+
+	@ManagedAttribute
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	@ManagedAttribute
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	@ManagedAttribute
+	public long getInvalidations() {
+		return invalidations.sum();
+	}
+
+	@ManagedAttribute
+	public double getHitRatio() {
+		long h = hits.sum();
+		long total = h + misses.sum();
+		return total == 0 ? 0d : (double) h / total;
+	}
+
+	@ManagedOperation
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+}
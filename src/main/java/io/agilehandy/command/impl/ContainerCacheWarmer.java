@@ -0,0 +1,116 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.command.impl;
+
+import io.agilehandy.command.api.evt.ContainerCreated;
+import io.agilehandy.command.api.evt.ContainerOpReserved;
+import io.agilehandy.command.api.evt.ContainerTransArrived;
+import lombok.extern.slf4j.Slf4j;
+import org.axonframework.common.stream.BlockingStream;
+import org.axonframework.eventhandling.TrackedEventMessage;
+import org.axonframework.eventsourcing.eventstore.EventStore;
+import org.axonframework.messaging.unitofwork.DefaultUnitOfWork;
+import org.axonframework.modelling.command.Repository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Pre-loads the containers sitting at the busiest zone/ports into the
+ * container cache, so the first commands of the day don't pay for a replay.
+ *
+ * @author Haytham Mohamed
+ **/
+@Component
+@ConditionalOnProperty(prefix = "acme.container.cache.warm-up", name = "enabled", havingValue = "true")
+@Slf4j
+public class ContainerCacheWarmer {
+
+	private final EventStore eventStore;
+	private final Repository<Container> containerRepository;
+	private final ContainerProperties properties;
+
+	public ContainerCacheWarmer(EventStore eventStore,
+	                            Repository<Container> containerRepository,
+	                            ContainerProperties properties) {
+		this.eventStore = eventStore;
+		this.containerRepository = containerRepository;
+		this.properties = properties;
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void warmUp() {
+		Map<UUID, String> locations = currentLocations();
+
+		Map<String, List<UUID>> byPort = locations.entrySet().stream()
+				.collect(Collectors.groupingBy(Map.Entry::getValue,
+						Collectors.mapping(Map.Entry::getKey, Collectors.toList())));
+
+		List<UUID> ids = byPort.values().stream()
+				.sorted(Comparator.comparingInt(List<UUID>::size).reversed())
+				.limit(properties.getCache().getWarmUp().getPorts())
+				.flatMap(List::stream)
+				.limit(properties.getCache().getMaxSize())
+				.collect(Collectors.toList());
+
+		log.info("warming up container cache with {} containers", ids.size());
+		ids.forEach(id -> DefaultUnitOfWork.startAndGet(null)
+				.execute(() -> containerRepository.load(id.toString())));
+	}
+
+	// replay the container movements to find where every container is now
+	private Map<UUID, String> currentLocations() {
+		Map<UUID, String> locations = new HashMap<>();
+		Map<UUID, String> destinations = new HashMap<>();
+
+		try (BlockingStream<TrackedEventMessage<?>> stream = eventStore.openStream(null)) {
+			while (stream.hasNextAvailable(100, TimeUnit.MILLISECONDS)) {
+				Object payload = stream.nextAvailable().getPayload();
+				if (payload instanceof ContainerCreated) {
+					ContainerCreated event = (ContainerCreated) payload;
+					locations.put(event.getId(), location(event.getCurrentZoneName(), event.getCurrentPortName()));
+				} else if (payload instanceof ContainerOpReserved) {
+					ContainerOpReserved event = (ContainerOpReserved) payload;
+					destinations.put(event.getId(), location(event.getDestZoneName(), event.getDestPortName()));
+				} else if (payload instanceof ContainerTransArrived) {
+					String destination = destinations.remove(((ContainerTransArrived) payload).getId());
+					if (destination != null) {
+						locations.put(((ContainerTransArrived) payload).getId(), destination);
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return locations;
+	}
+
+	private static String location(String zoneName, String portName) {
+		return zoneName + "/" + portName;
+	}
+
+}
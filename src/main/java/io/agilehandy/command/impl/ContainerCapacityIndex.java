@@ -0,0 +1,206 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.command.impl;
+
+import io.agilehandy.command.api.evt.ContainerCreated;
+import io.agilehandy.command.api.evt.ContainerOpLoaded;
+import io.agilehandy.command.api.evt.ContainerOpReleased;
+import io.agilehandy.command.api.evt.ContainerOpReserved;
+import io.agilehandy.command.api.evt.ContainerTransArrived;
+import lombok.extern.slf4j.Slf4j;
+import org.axonframework.config.ProcessingGroup;
+import org.axonframework.eventhandling.EventHandler;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Free containers per zone/port, ordered by their free capacity.
+ *
+ * Kept up to date from the container events by its own tracking processor,
+ * which always starts from the beginning of the event stream, so the index
+ * is rebuilt in memory on every start. A booking claims the best fitting
+ * container with one ordered lookup; a claimed container stays out of the
+ * index until it is released again, so concurrent bookings never pick the
+ * same one.
+ *
+ * @author Haytham Mohamed
+ **/
+@Component
+@ProcessingGroup(ContainerCapacityIndex.PROCESSING_GROUP)
+@Slf4j
+public class ContainerCapacityIndex {
+
+	public static final String PROCESSING_GROUP = "container-capacity";
+
+	private static final Comparator<Slot> BY_FREE_CAPACITY =
+			Comparator.comparingDouble((Slot slot) -> slot.free)
+					.thenComparing(slot -> slot.id, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+	// zone/port -> free containers there, smallest free capacity first
+	private final Map<String, NavigableSet<Slot>> freeByPort = new ConcurrentHashMap<>();
+
+	// everything the index knows about each container
+	private final Map<UUID, Tracked> containers = new ConcurrentHashMap<>();
+
+	@EventHandler
+	public void on(ContainerCreated event) {
+		Tracked container = new Tracked(event.getSize() == null ? 0f : event.getSize(),
+				event.getCurrentZoneName(), event.getCurrentPortName());
+		containers.put(event.getId(), container);
+		offer(event.getId(), container);
+	}
+
+	@EventHandler
+	public void on(ContainerOpReserved event) {
+		Tracked container = containers.get(event.getId());
+		if (container != null) {
+			synchronized (container) {
+				withdraw(event.getId(), container);
+				container.destZoneName = event.getDestZoneName();
+				container.destPortName = event.getDestPortName();
+			}
+		}
+	}
+
+	@EventHandler
+	public void on(ContainerOpLoaded event) {
+		Tracked container = containers.get(event.getId());
+		if (container != null && event.getUsedSize() != null) {
+			synchronized (container) {
+				container.usedSize = event.getUsedSize();
+			}
+		}
+	}
+
+	@EventHandler
+	public void on(ContainerTransArrived event) {
+		Tracked container = containers.get(event.getId());
+		if (container != null) {
+			synchronized (container) {
+				container.zoneName = container.destZoneName;
+				container.portName = container.destPortName;
+			}
+		}
+	}
+
+	@EventHandler
+	public void on(ContainerOpReleased event) {
+		Tracked container = containers.get(event.getId());
+		if (container != null) {
+			offer(event.getId(), container);
+		}
+	}
+
+	/**
+	 * Takes the free container at the zone/port with the least free capacity
+	 * that still fits the required size out of the index.
+	 */
+	public Optional<UUID> claim(String zoneName, String portName, float requiredSize) {
+		NavigableSet<Slot> free = freeByPort.get(key(zoneName, portName));
+		if (free == null) {
+			return Optional.empty();
+		}
+		Slot probe = new Slot(null, requiredSize);
+		Slot candidate;
+		while ((candidate = free.ceiling(probe)) != null) {
+			if (free.remove(candidate)) {
+				return Optional.of(candidate.id);
+			}
+		}
+		return Optional.empty();
+	}
+
+	/**
+	 * Puts back a claimed container whose reservation did not go through.
+	 */
+	public void unclaim(UUID id) {
+		Tracked container = containers.get(id);
+		if (container != null) {
+			offer(id, container);
+		}
+	}
+
+	public int freeContainers(String zoneName, String portName) {
+		NavigableSet<Slot> free = freeByPort.get(key(zoneName, portName));
+		return free == null ? 0 : free.size();
+	}
+
+	private void offer(UUID id, Tracked container) {
+		synchronized (container) {
+			float free = container.size - container.usedSize;
+			if (free <= 0f) {
+				return;
+			}
+			container.slot = new Slot(id, free);
+			freeByPort.computeIfAbsent(key(container.zoneName, container.portName),
+					k -> new ConcurrentSkipListSet<>(BY_FREE_CAPACITY))
+					.add(container.slot);
+		}
+	}
+
+	// the caller holds the container's lock
+	private void withdraw(UUID id, Tracked container) {
+		if (container.slot != null) {
+			NavigableSet<Slot> free = freeByPort.get(key(container.zoneName, container.portName));
+			if (free != null) {
+				free.remove(container.slot);
+			}
+			container.slot = null;
+		}
+	}
+
+	private static String key(String zoneName, String portName) {
+		return zoneName + "/" + portName;
+	}
+
+	private static final class Slot {
+		// null sorts before every id, so a probe finds the first slot with enough room
+		final UUID id;
+		final float free;
+
+		Slot(UUID id, float free) {
+			this.id = id;
+			this.free = free;
+		}
+	}
+
+	// changed by the processor's thread and put back by unclaim from a caller's, under its own lock
+	private static final class Tracked {
+		final float size;
+		float usedSize;
+		String zoneName;
+		String portName;
+		String destZoneName;
+		String destPortName;
+		Slot slot;
+
+		Tracked(float size, String zoneName, String portName) {
+			this.size = size;
+			this.zoneName = zoneName;
+			this.portName = portName;
+		}
+	}
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.command.impl;
+
+import io.agilehandy.serialization.ContainerBinarySerializer;
+import lombok.extern.slf4j.Slf4j;
+import org.axonframework.common.caching.Cache;
+import org.axonframework.common.caching.NoCache;
+import org.axonframework.config.EventProcessingConfigurer;
+import org.axonframework.eventhandling.tokenstore.inmemory.InMemoryTokenStore;
+import org.axonframework.eventsourcing.EventCountSnapshotTriggerDefinition;
+import org.axonframework.eventsourcing.EventSourcingRepository;
+import org.axonframework.eventsourcing.NoSnapshotTriggerDefinition;
+import org.axonframework.eventsourcing.SnapshotTriggerDefinition;
+import org.axonframework.eventsourcing.Snapshotter;
+import org.axonframework.eventsourcing.eventstore.EventStore;
+import org.axonframework.modelling.command.Repository;
+import org.axonframework.serialization.AbstractXStreamSerializer;
+import org.axonframework.serialization.Serializer;
+import org.axonframework.spring.eventsourcing.SpringAggregateSnapshotterFactoryBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Wiring of the {@link Container} aggregate.
+ *
+ * @author Haytham Mohamed
+ **/
+@Configuration
+@EnableConfigurationProperties(ContainerProperties.class)
+@Slf4j
+public class ContainerConfig {
+
+	private final ContainerProperties properties;
+
+	public ContainerConfig(ContainerProperties properties) {
+		this.properties = properties;
+	}
+
+	@Bean
+	public SpringAggregateSnapshotterFactoryBean snapshotter() {
+		return new SpringAggregateSnapshotterFactoryBean();
+	}
+
+	// snapshot a container once loading it replays more than the threshold of events
+	@Bean
+	public SnapshotTriggerDefinition containerSnapshotTriggerDefinition(Snapshotter snapshotter) {
+		if (!properties.getSnapshot().isEnabled()) {
+			return NoSnapshotTriggerDefinition.INSTANCE;
+		}
+		log.info("snapshotting containers every {} events", properties.getSnapshot().getThreshold());
+		return new EventCountSnapshotTriggerDefinition(snapshotter, properties.getSnapshot().getThreshold());
+	}
+
+	@Bean
+	public Cache containerCache() {
+		ContainerProperties.Cache cache = properties.getCache();
+		if (!cache.isEnabled()) {
+			return NoCache.INSTANCE;
+		}
+		log.info("caching up to {} containers ({})", cache.getMaxSize(), cache.getEvictionPolicy());
+		return new ContainerCache(cache.getMaxSize(), cache.getEvictionPolicy());
+	}
+
+	@Bean
+	@Profile("!disruptor")
+	public Repository<Container> containerRepository(EventStore eventStore,
+	                                                 Cache containerCache,
+	                                                 SnapshotTriggerDefinition containerSnapshotTriggerDefinition) {
+		return EventSourcingRepository.builder(Container.class)
+				.eventStore(eventStore)
+				.cache(containerCache)
+				.snapshotTriggerDefinition(containerSnapshotTriggerDefinition)
+				.build();
+	}
+
+	// keep snapshots compact: a short element name instead of the fully qualified aggregate class
+	@Autowired
+	public void registerSnapshotAliases(@Qualifier("eventSerializer") Serializer eventSerializer) {
+		if (eventSerializer instanceof ContainerBinarySerializer) {
+			eventSerializer = ((ContainerBinarySerializer) eventSerializer).getDelegate();
+		}
+		if (eventSerializer instanceof AbstractXStreamSerializer) {
+			((AbstractXStreamSerializer) eventSerializer).addAlias("container", Container.class);
+		}
+	}
+
+	// the capacity index lives in memory only, so its processor starts over from the first event on every start
+	@Autowired
+	public void registerCapacityIndexProcessor(EventProcessingConfigurer eventProcessing) {
+		eventProcessing.registerTokenStore(ContainerCapacityIndex.PROCESSING_GROUP, c -> new InMemoryTokenStore());
+	}
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.command.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.axonframework.common.caching.Cache;
+import org.axonframework.common.transaction.TransactionManager;
+import org.axonframework.disruptor.commandhandling.DisruptorCommandBus;
+import org.axonframework.eventsourcing.GenericAggregateFactory;
+import org.axonframework.eventsourcing.SnapshotTriggerDefinition;
+import org.axonframework.eventsourcing.eventstore.EventStore;
+import org.axonframework.messaging.interceptors.CorrelationDataInterceptor;
+import org.axonframework.modelling.command.Repository;
+import org.axonframework.spring.config.AxonConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import java.util.Collections;
+
+/**
+ * High-throughput command handling for the {@link Container} aggregate,
+ * active with the {@code disruptor} profile.
+ *
+ * Commands run on Axon's Disruptor command bus in this process instead of
+ * the default bus, and containers load through the bus' own repository.
+ *
+ * @author Haytham Mohamed
+ **/
+@Configuration
+@Profile("disruptor")
+@Slf4j
+public class ContainerDisruptorConfig {
+
+	@Bean(destroyMethod = "stop")
+	public DisruptorCommandBus commandBus(TransactionManager transactionManager,
+	                                      AxonConfiguration axonConfiguration,
+	                                      Cache containerCache,
+	                                      ContainerProperties properties) {
+		ContainerProperties.Disruptor disruptor = properties.getDisruptor();
+		log.info("handling container commands on the disruptor command bus ({} invoker threads)",
+				disruptor.getInvokerThreads());
+		return DisruptorCommandBus.builder()
+				.transactionManager(transactionManager)
+				.messageMonitor(axonConfiguration.messageMonitor(DisruptorCommandBus.class, "commandBus"))
+				.invokerInterceptors(Collections.singletonList(
+						new CorrelationDataInterceptor<>(axonConfiguration.correlationDataProviders())))
+				.bufferSize(disruptor.getBufferSize())
+				.invokerThreadCount(disruptor.getInvokerThreads())
+				.publisherThreadCount(disruptor.getPublisherThreads())
+				.cache(containerCache)
+				.build();
+	}
+
+	@Bean
+	public Repository<Container> containerRepository(DisruptorCommandBus commandBus,
+	                                                 EventStore eventStore,
+	                                                 SnapshotTriggerDefinition containerSnapshotTriggerDefinition) {
+		return commandBus.createRepository(eventStore,
+				new GenericAggregateFactory<>(Container.class),
+				containerSnapshotTriggerDefinition);
+	}
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.command.impl;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Tuning knobs of the container command side.
+ *
+ * @author Haytham Mohamed
+ **/
+@Data
+@ConfigurationProperties(prefix = "acme.container")
+public class ContainerProperties {
+
+	private Snapshot snapshot = new Snapshot();
+	private Cache cache = new Cache();
+	private Batch batch = new Batch();
+	private Disruptor disruptor = new Disruptor();
+	private Affinity affinity = new Affinity();
+	private Deduplication deduplication = new Deduplication();
+
+	@Data
+	public static class Snapshot {
+
+		// snapshot the container aggregate at all
+		private boolean enabled = false;
+
+		// number of events replayed on load before a new snapshot is taken
+		private int threshold = 100;
+	}
+
+	@Data
+	public static class Cache {
+
+		// keep recently used containers in memory between commands
+		private boolean enabled = true;
+
+		// containers held before the eviction policy kicks in
+		private int maxSize = 1000;
+
+		private ContainerCache.EvictionPolicy evictionPolicy = ContainerCache.EvictionPolicy.LRU;
+
+		private WarmUp warmUp = new WarmUp();
+	}
+
+	@Data
+	public static class WarmUp {
+
+		// pre-load the containers sitting at the busiest ports on startup
+		private boolean enabled = false;
+
+		// how many of the busiest zone/ports to pre-load
+		private int ports = 3;
+	}
+
+	@Data
+	public static class Batch {
+
+		// create commands in flight at once during a batch creation
+		private int parallelism = 8;
+	}
+
+	@Data
+	public static class Disruptor {
+
+		// slots in the ring buffer, a power of two
+		private int bufferSize = 4096;
+
+		// threads invoking command handlers, commands are routed by container id
+		private int invokerThreads = 1;
+
+		// threads storing and publishing the resulting events
+		private int publisherThreads = 1;
+	}
+
+	@Data
+	public static class Affinity {
+
+		// worker threads, each owning the containers whose id hashes to it
+		private int workers = Runtime.getRuntime().availableProcessors();
+
+		// commands a worker may have waiting before new ones are rejected
+		private int queueCapacity = 10_000;
+	}
+
+	@Data
+	public static class Deduplication {
+
+		// answer retried commands with the result of the first attempt
+		private boolean enabled = true;
+
+		// how long a handled command id is remembered
+		private Duration window = Duration.ofMinutes(10);
+
+		// longest a repeat waits for its first attempt, still being handled, before failing
+		private Duration waitTimeout = Duration.ofSeconds(5);
+
+		// most command ids remembered at once, the oldest go first
+		private int maxEntries = 100_000;
+	}
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.command.impl;
+
+import io.agilehandy.command.api.ContainerCommandType;
+import io.agilehandy.command.api.OpStatus;
+import io.agilehandy.command.api.TransmitStatus;
+
+import java.util.EnumSet;
+
+import static io.agilehandy.command.api.ContainerCommandType.*;
+
+/**
+ * Legal container commands per operation and transmit status.
+ *
+ * The rules below are compiled once into a table indexed by
+ * {@code OpStatus x TransmitStatus}, each cell holding a bitmask of the
+ * {@link ContainerCommandType}s allowed in that state, so a guard check is
+ * an array read and a bit test.
+ *
+ * @author Haytham Mohamed
+ **/
+public final class ContainerTransitions {
+
+	private static final TransmitStatus[] TRANSMIT_STATUSES = TransmitStatus.values();
+	private static final ContainerCommandType[] COMMAND_TYPES = ContainerCommandType.values();
+
+	private static final int[] TABLE = new int[OpStatus.values().length * TRANSMIT_STATUSES.length];
+
+	static {
+		allow(RESERVE,   OpStatus.RELEASED,   TransmitStatus.OFF_BOARDED);
+		allow(LOAD,      OpStatus.RESERVED,   TransmitStatus.OFF_BOARDED);
+		allow(BOARD,     OpStatus.LOADED,     TransmitStatus.OFF_BOARDED);
+		allow(DEPART,    OpStatus.LOADED,     TransmitStatus.BOARDED);
+		allow(ARRIVE,    OpStatus.LOADED,     TransmitStatus.DEPARTED);
+		allow(OFF_BOARD, OpStatus.LOADED,     TransmitStatus.ARRIVED);
+		allow(OFF_LOAD,  OpStatus.LOADED,     TransmitStatus.OFF_BOARDED);
+		allow(RELEASE,   OpStatus.OFF_LOADED, TransmitStatus.OFF_BOARDED);
+	}
+
+	private ContainerTransitions() {
+	}
+
+	private static void allow(ContainerCommandType command, OpStatus opStatus, TransmitStatus transmitStatus) {
+		TABLE[index(opStatus, transmitStatus)] |= 1 << command.ordinal();
+	}
+
+	private static int index(OpStatus opStatus, TransmitStatus transmitStatus) {
+		return opStatus.ordinal() * TRANSMIT_STATUSES.length + transmitStatus.ordinal();
+	}
+
+	public static boolean allows(OpStatus opStatus, TransmitStatus transmitStatus, ContainerCommandType command) {
+		if (opStatus == null || transmitStatus == null) {
+			return false;
+		}
+		return (TABLE[index(opStatus, transmitStatus)] & (1 << command.ordinal())) != 0;
+	}
+
+	// the commands a container in the given state may accept next
+	public static EnumSet<ContainerCommandType> legalCommands(OpStatus opStatus, TransmitStatus transmitStatus) {
+		EnumSet<ContainerCommandType> commands = EnumSet.noneOf(ContainerCommandType.class);
+		if (opStatus == null || transmitStatus == null) {
+			return commands;
+		}
+		int mask = TABLE[index(opStatus, transmitStatus)];
+		for (ContainerCommandType command : COMMAND_TYPES) {
+			if ((mask & (1 << command.ordinal())) != 0) {
+				commands.add(command);
+			}
+		}
+		return commands;
+	}
+
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.command.impl;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * The ids and results of recently handled commands, held in flat arrays.
+ *
+ * A command id is kept as its 128 bit name-based UUID, and a result that is
+ * null or a UUID, which is what container commands answer, takes no object
+ * of its own. Entries sit in a ring in the order they were added, so the
+ * expired and the oldest ones are always at its head, and an open-addressing
+ * table over the ring slots finds an id. Not thread-safe.
+ *
+ * @author Haytham Mohamed
+ **/
+final class RecentCommandIds {
+
+	// the answer for an id that isn't held
+	static final Object UNKNOWN = new Object();
+
+	private static final byte NULL_RESULT = 0;
+	private static final byte UUID_RESULT = 1;
+	private static final byte OTHER_RESULT = 2;
+
+	private final int capacity;
+	private final long windowMillis;
+
+	// the ring, oldest entry at head
+	private final long[] idHigh;
+	private final long[] idLow;
+	private final long[] addedAt;
+	private final long[] resultHigh;
+	private final long[] resultLow;
+	private final byte[] resultKind;
+	// results of any other type, only allocated once one comes along
+	private Object[] otherResults;
+	private int head;
+	private int size;
+
+	// ring slots by id hash with linear probing, -1 where free
+	private final int[] table;
+	private final int mask;
+
+	RecentCommandIds(int capacity, long windowMillis) {
+		this.capacity = Math.max(1, capacity);
+		this.windowMillis = windowMillis;
+		this.idHigh = new long[this.capacity];
+		this.idLow = new long[this.capacity];
+		this.addedAt = new long[this.capacity];
+		this.resultHigh = new long[this.capacity];
+		this.resultLow = new long[this.capacity];
+		this.resultKind = new byte[this.capacity];
+		int tableSize = Integer.highestOneBit(this.capacity * 2 - 1) << 1;
+		this.table = new int[tableSize];
+		this.mask = tableSize - 1;
+		Arrays.fill(table, -1);
+	}
+
+	// the result an id was added with, null included, or UNKNOWN
+	Object get(UUID id, long now) {
+		expire(now);
+		int at = find(id.getMostSignificantBits(), id.getLeastSignificantBits());
+		if (table[at] < 0) {
+			return UNKNOWN;
+		}
+		int slot = table[at];
+		switch (resultKind[slot]) {
+			case UUID_RESULT:
+				return new UUID(resultHigh[slot], resultLow[slot]);
+			case OTHER_RESULT:
+				return otherResults[slot];
+			default:
+				return null;
+		}
+	}
+
+	// an id already held keeps its first result
+	void add(UUID id, long now, Object result) {
+		expire(now);
+		long high = id.getMostSignificantBits();
+		long low = id.getLeastSignificantBits();
+		int at = find(high, low);
+		if (table[at] >= 0) {
+			return;
+		}
+		if (size == capacity) {
+			removeOldest();
+			at = find(high, low);
+		}
+		int slot = (head + size) % capacity;
+		idHigh[slot] = high;
+		idLow[slot] = low;
+		addedAt[slot] = now;
+		if (otherResults != null) {
+			otherResults[slot] = null;
+		}
+		if (result == null) {
+			resultKind[slot] = NULL_RESULT;
+		} else if (result instanceof UUID) {
+			resultKind[slot] = UUID_RESULT;
+			resultHigh[slot] = ((UUID) result).getMostSignificantBits();
+			resultLow[slot] = ((UUID) result).getLeastSignificantBits();
+		} else {
+			resultKind[slot] = OTHER_RESULT;
+			if (otherResults == null) {
+				otherResults = new Object[capacity];
+			}
+			otherResults[slot] = result;
+		}
+		table[at] = slot;
+		size++;
+	}
+
+	int size() {
+		return size;
+	}
+
+	private void expire(long now) {
+		while (size > 0 && now - addedAt[head] > windowMillis) {
+			removeOldest();
+		}
+	}
+
+	private void removeOldest() {
+		int at = find(idHigh[head], idLow[head]);
+		if (otherResults != null) {
+			otherResults[head] = null;
+		}
+		head = (head + 1) % capacity;
+		size--;
+		delete(at);
+	}
+
+	// the table position holding the id, or the free one it would go to
+	private int find(long high, long low) {
+		int at = hash(high, low) & mask;
+		while (table[at] >= 0 && (idHigh[table[at]] != high || idLow[table[at]] != low)) {
+			at = (at + 1) & mask;
+		}
+		return at;
+	}
+
+	// frees a table position, shifting back the entries probed past it so they can still be found
+	private void delete(int hole) {
+		table[hole] = -1;
+		for (int at = (hole + 1) & mask; table[at] >= 0; at = (at + 1) & mask) {
+			int slot = table[at];
+			int home = hash(idHigh[slot], idLow[slot]) & mask;
+			// distance from home to here, measured around the table, must not be shorter than from home to the hole
+			if (((at - home) & mask) >= ((hole - home) & mask)) {
+				table[hole] = slot;
+				table[at] = -1;
+				hole = at;
+			}
+		}
+	}
+
+	// name-based UUIDs are MD5 digests, so their bits are already spread
+	private static int hash(long high, long low) {
+		long h = high ^ low;
+		return (int) (h ^ (h >>> 32));
+	}
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.eventstore;
+
+import lombok.extern.slf4j.Slf4j;
+import org.axonframework.common.jdbc.PersistenceExceptionResolver;
+import org.axonframework.common.jpa.EntityManagerProvider;
+import org.axonframework.common.transaction.TransactionManager;
+import org.axonframework.eventsourcing.eventstore.EventStorageEngine;
+import org.axonframework.eventsourcing.eventstore.jpa.JpaEventStorageEngine;
+import org.axonframework.serialization.Serializer;
+import org.axonframework.spring.config.AxonConfiguration;
+import org.axonframework.springboot.util.RegisterDefaultEntities;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Self-contained event store on the application's own JPA datasource, for
+ * environments without an Axon Server.
+ *
+ * All events applied in a unit of work reach the storage engine together;
+ * they are persisted first and flushed once, so Hibernate sends them as a
+ * single JDBC batch (see application-embedded.yml).
+ *
+ * @author Haytham Mohamed
+ **/
+@Configuration
+@Profile("embedded")
+@RegisterDefaultEntities(packages = "org.axonframework.eventsourcing.eventstore.jpa")
+@EnableConfigurationProperties(EventStoreProperties.class)
+@Slf4j
+public class EmbeddedEventStoreConfig {
+
+	@Bean
+	public EventStorageEngine eventStorageEngine(Serializer defaultSerializer,
+	                                             PersistenceExceptionResolver persistenceExceptionResolver,
+	                                             @Qualifier("eventSerializer") Serializer eventSerializer,
+	                                             AxonConfiguration configuration,
+	                                             EntityManagerProvider entityManagerProvider,
+	                                             TransactionManager transactionManager,
+	                                             EventStoreProperties properties) {
+		log.info("storing events in the embedded JPA event store, reading {} at a time", properties.getReadBatchSize());
+		return JpaEventStorageEngine.builder()
+				.snapshotSerializer(defaultSerializer)
+				.upcasterChain(configuration.upcasterChain())
+				.persistenceExceptionResolver(persistenceExceptionResolver)
+				.eventSerializer(eventSerializer)
+				.entityManagerProvider(entityManagerProvider)
+				.transactionManager(transactionManager)
+				.batchSize(properties.getReadBatchSize())
+				.explicitFlush(true)
+				.build();
+	}
+
+}
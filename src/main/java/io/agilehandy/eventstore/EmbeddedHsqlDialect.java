@@ -0,0 +1,48 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.eventstore;
+
+import org.hibernate.dialect.HSQLDialect;
+import org.hibernate.type.descriptor.sql.SqlTypeDescriptor;
+import org.hibernate.type.descriptor.sql.VarbinaryTypeDescriptor;
+
+import java.sql.Types;
+
+/**
+ * HSQLDB dialect of the embedded event store.
+ *
+ * Event payloads and meta-data are mapped as LOBs, which HSQLDB keeps in a
+ * separate LOB store with its own bookkeeping on every insert and commit.
+ * The entries are bounded (10000 bytes) and small, so they are stored
+ * inline as VARBINARY columns instead.
+ *
+ * @author Haytham Mohamed
+ **/
+public class EmbeddedHsqlDialect extends HSQLDialect {
+
+	public EmbeddedHsqlDialect() {
+		super();
+		registerColumnType(Types.BLOB, "varbinary($l)");
+	}
+
+	@Override
+	protected SqlTypeDescriptor getSqlTypeDescriptorOverride(int sqlCode) {
+		return sqlCode == Types.BLOB ? VarbinaryTypeDescriptor.INSTANCE : super.getSqlTypeDescriptorOverride(sqlCode);
+	}
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.eventstore;
+
+import org.axonframework.eventhandling.GapAwareTrackingToken;
+import org.axonframework.eventhandling.GlobalSequenceTrackingToken;
+import org.axonframework.eventhandling.TrackingToken;
+import org.axonframework.eventhandling.WrappedToken;
+
+import java.util.Collections;
+
+/**
+ * Tracking tokens read as global event positions, whichever event store
+ * issued them.
+ *
+ * @author Haytham Mohamed
+ **/
+public final class TrackingTokens {
+
+	private TrackingTokens() {
+	}
+
+	// global index a token has reached, -1 before the first event
+	public static long position(TrackingToken token) {
+		token = unwrap(token);
+		if (token instanceof GlobalSequenceTrackingToken) {
+			return ((GlobalSequenceTrackingToken) token).getGlobalIndex();
+		}
+		if (token instanceof GapAwareTrackingToken) {
+			return ((GapAwareTrackingToken) token).getIndex();
+		}
+		return -1L;
+	}
+
+	// whether the event at a position has been seen, a gap left behind at that position doesn't count
+	public static boolean covers(TrackingToken token, long position) {
+		token = unwrap(token);
+		if (token instanceof GapAwareTrackingToken) {
+			return ((GapAwareTrackingToken) token)
+					.covers(GapAwareTrackingToken.newInstance(position, Collections.emptySortedSet()));
+		}
+		return position(token) >= position;
+	}
+
+	// the token a replay or other wrapper carries, which an event store can open a stream from
+	public static TrackingToken unwrap(TrackingToken token) {
+		return token instanceof WrappedToken ? ((WrappedToken) token).unwrap() : token;
+	}
+
+}
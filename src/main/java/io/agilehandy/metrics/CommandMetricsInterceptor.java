@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.axonframework.commandhandling.CommandMessage;
+import org.axonframework.messaging.InterceptorChain;
+import org.axonframework.messaging.MessageDispatchInterceptor;
+import org.axonframework.messaging.MessageHandlerInterceptor;
+import org.axonframework.messaging.unitofwork.UnitOfWork;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * Times every command per command class: from its dispatch to the start of
+ * its handling, and from there until its unit of work is done, events
+ * stored. Commands a container turns away with a failed guard are counted
+ * as rejected.
+ *
+ * The dispatch time travels in the command's meta data, to a handler that
+ * may be in another JVM, so it is wall-clock time in milliseconds. Clocks a
+ * little apart make for a dispatch time a little off, never a negative one.
+ *
+ * @author Haytham Mohamed
+ **/
+public class CommandMetricsInterceptor implements MessageDispatchInterceptor<CommandMessage<?>>,
+		MessageHandlerInterceptor<CommandMessage<?>> {
+
+	static final String DISPATCHED_AT = "dispatchedAt";
+
+	private final MeterRegistry registry;
+
+	// built once per command class, looking meters up by name and tags on every command costs more than the timing
+	private final Map<Class<?>, Meters> meters = new ConcurrentHashMap<>();
+
+	public CommandMetricsInterceptor(MeterRegistry registry) {
+		this.registry = registry;
+	}
+
+	@Override
+	public BiFunction<Integer, CommandMessage<?>, CommandMessage<?>> handle(List<? extends CommandMessage<?>> messages) {
+		return (index, command) -> command.andMetaData(
+				Collections.singletonMap(DISPATCHED_AT, System.currentTimeMillis()));
+	}
+
+	@Override
+	public Object handle(UnitOfWork<? extends CommandMessage<?>> unitOfWork, InterceptorChain chain) throws Exception {
+		CommandMessage<?> command = unitOfWork.getMessage();
+		Meters meters = this.meters.computeIfAbsent(command.getPayloadType(), this::meters);
+		Object dispatchedAt = command.getMetaData().get(DISPATCHED_AT);
+		if (dispatchedAt instanceof Number) {
+			long millis = System.currentTimeMillis() - ((Number) dispatchedAt).longValue();
+			meters.dispatch.record(Math.max(0L, millis), TimeUnit.MILLISECONDS);
+		}
+		long start = System.nanoTime();
+		unitOfWork.onCleanup(u -> meters.handled(u, System.nanoTime() - start));
+		return chain.proceed();
+	}
+
+	private Meters meters(Class<?> commandType) {
+		String command = commandType.getSimpleName();
+		return new Meters(
+				Timer.builder("acme.command.dispatch")
+						.description("Time from dispatching a command to the start of its handling")
+						.tag("command", command)
+						.register(registry),
+				handling(command, "success"),
+				handling(command, "rejected"),
+				handling(command, "failed"),
+				Counter.builder("acme.command.rejections")
+						.description("Commands the container's state doesn't allow")
+						.tag("command", command)
+						.register(registry));
+	}
+
+	private Timer handling(String command, String outcome) {
+		return Timer.builder("acme.command.handling")
+				.description("Time handling a command, events stored")
+				.tag("command", command)
+				.tag("outcome", outcome)
+				.register(registry);
+	}
+
+	private static class Meters {
+
+		final Timer dispatch;
+		final Timer success;
+		final Timer rejected;
+		final Timer failed;
+		final Counter rejections;
+
+		Meters(Timer dispatch, Timer success, Timer rejected, Timer failed, Counter rejections) {
+			this.dispatch = dispatch;
+			this.success = success;
+			this.rejected = rejected;
+			this.failed = failed;
+			this.rejections = rejections;
+		}
+
+		void handled(UnitOfWork<?> unitOfWork, long nanos) {
+			if (unitOfWork.getExecutionResult() == null || !unitOfWork.getExecutionResult().isExceptionResult()) {
+				success.record(nanos, TimeUnit.NANOSECONDS);
+			} else if (unitOfWork.getExecutionResult().getExceptionResult() instanceof IllegalStateException) {
+				// the container's Assert.state guards
+				rejected.record(nanos, TimeUnit.NANOSECONDS);
+				rejections.increment();
+			} else {
+				failed.record(nanos, TimeUnit.NANOSECONDS);
+			}
+		}
+	}
+
+}
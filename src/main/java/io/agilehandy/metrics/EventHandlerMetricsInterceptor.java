@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.axonframework.eventhandling.EventMessage;
+import org.axonframework.messaging.InterceptorChain;
+import org.axonframework.messaging.MessageHandlerInterceptor;
+import org.axonframework.messaging.unitofwork.UnitOfWork;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the handlers of one event processor, per event class. Writes a
+ * projection holds back until its batch commits are not part of it.
+ *
+ * @author Haytham Mohamed
+ **/
+public class EventHandlerMetricsInterceptor implements MessageHandlerInterceptor<EventMessage<?>> {
+
+	private final MeterRegistry registry;
+	private final String processor;
+	private final Map<Class<?>, Timer> timers = new ConcurrentHashMap<>();
+
+	public EventHandlerMetricsInterceptor(MeterRegistry registry, String processor) {
+		this.registry = registry;
+		this.processor = processor;
+	}
+
+	@Override
+	public Object handle(UnitOfWork<? extends EventMessage<?>> unitOfWork, InterceptorChain chain) throws Exception {
+		Timer timer = timers.computeIfAbsent(unitOfWork.getMessage().getPayloadType(), this::timer);
+		long start = System.nanoTime();
+		try {
+			return chain.proceed();
+		} finally {
+			timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	private Timer timer(Class<?> eventType) {
+		return Timer.builder("acme.event.handling")
+				.description("Time an event processor's handlers take for an event")
+				.tag("processor", processor)
+				.tag("event", eventType.getSimpleName())
+				.register(registry);
+	}
+
+}
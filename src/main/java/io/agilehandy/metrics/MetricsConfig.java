@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.axonframework.commandhandling.CommandBus;
+import org.axonframework.config.EventProcessingConfiguration;
+import org.axonframework.config.EventProcessingConfigurer;
+import org.axonframework.eventsourcing.eventstore.EventStore;
+import org.axonframework.queryhandling.QueryBus;
+import org.axonframework.springboot.EventProcessorProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Metrics of commands, event handlers, queries and processor lag, collected
+ * by interceptors and exposed through the actuator.
+ *
+ * @author Haytham Mohamed
+ **/
+@Configuration
+@Slf4j
+public class MetricsConfig {
+
+	// longest a scrape waits on the event store for the oldest event a processor has yet to handle
+	private static final Duration LAG_PEEK_TIMEOUT = Duration.ofMillis(500);
+
+	// how often the lag in seconds is worked out, about as often as a scrape
+	private static final Duration LAG_REFRESH_INTERVAL = Duration.ofSeconds(10);
+
+	@Bean
+	public CommandMetricsInterceptor commandMetricsInterceptor(MeterRegistry registry) {
+		return new CommandMetricsInterceptor(registry);
+	}
+
+	@Bean
+	public QueryMetricsInterceptor queryMetricsInterceptor(MeterRegistry registry) {
+		return new QueryMetricsInterceptor(registry);
+	}
+
+	@Bean(destroyMethod = "shutdown")
+	public ProcessorLagMetrics processorLagMetrics(EventProcessingConfiguration eventProcessing, EventStore eventStore,
+	                                               EventProcessorProperties processors) {
+		return new ProcessorLagMetrics(eventProcessing, eventStore, processors.getProcessors().keySet(),
+				LAG_PEEK_TIMEOUT, LAG_REFRESH_INTERVAL);
+	}
+
+	@Autowired
+	public void registerCommandMetrics(CommandBus commandBus, CommandMetricsInterceptor commandMetricsInterceptor) {
+		commandBus.registerDispatchInterceptor(commandMetricsInterceptor);
+		commandBus.registerHandlerInterceptor(commandMetricsInterceptor);
+	}
+
+	@Autowired
+	public void registerQueryMetrics(QueryBus queryBus, QueryMetricsInterceptor queryMetricsInterceptor) {
+		queryBus.registerHandlerInterceptor(queryMetricsInterceptor);
+	}
+
+	// every processor, each handler timed under its processor's name
+	@Autowired
+	public void registerEventHandlerMetrics(EventProcessingConfigurer eventProcessing, MeterRegistry registry) {
+		eventProcessing.registerDefaultHandlerInterceptor(
+				(configuration, processor) -> new EventHandlerMetricsInterceptor(registry, processor));
+	}
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.metrics;
+
+import io.agilehandy.eventstore.TrackingTokens;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.axonframework.common.AxonThreadFactory;
+import org.axonframework.common.stream.BlockingStream;
+import org.axonframework.config.EventProcessingConfiguration;
+import org.axonframework.eventhandling.EventTrackerStatus;
+import org.axonframework.eventhandling.TrackedEventMessage;
+import org.axonframework.eventhandling.TrackingEventProcessor;
+import org.axonframework.eventhandling.TrackingToken;
+import org.axonframework.eventsourcing.eventstore.EventStore;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How far each tracking processor trails the event store, in events and in
+ * seconds: the age of the oldest event its slowest segment has yet to
+ * handle. The lag in events is worked out from the processor's tokens when
+ * scraped. The lag in seconds needs a stream opened on the event store and
+ * its next event waited for, so it is worked out on a thread of its own every
+ * refresh interval and scrapes read the last value.
+ * Processors that don't track in this instance report NaN, as does a lag in
+ * seconds whose next event the event store didn't deliver within the peek
+ * timeout, or that wasn't worked out yet.
+ *
+ * @author Haytham Mohamed
+ **/
+public class ProcessorLagMetrics implements MeterBinder {
+
+	private final EventProcessingConfiguration eventProcessing;
+	private final EventStore eventStore;
+	private final Collection<String> processors;
+	private final Duration peekTimeout;
+	private final Duration refreshInterval;
+
+	// the lag in seconds of each processor as of the last refresh
+	private final Map<String, Double> lastSeconds = new ConcurrentHashMap<>();
+	private final ScheduledExecutorService scheduler =
+			Executors.newSingleThreadScheduledExecutor(new AxonThreadFactory("processor-lag"));
+
+	public ProcessorLagMetrics(EventProcessingConfiguration eventProcessing, EventStore eventStore,
+	                           Collection<String> processors, Duration peekTimeout, Duration refreshInterval) {
+		this.eventProcessing = eventProcessing;
+		this.eventStore = eventStore;
+		this.processors = processors;
+		this.peekTimeout = peekTimeout;
+		this.refreshInterval = refreshInterval;
+	}
+
+	public void shutdown() {
+		scheduler.shutdownNow();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		long refreshMillis = refreshInterval.toMillis();
+		scheduler.scheduleWithFixedDelay(this::refresh, 0L, refreshMillis, TimeUnit.MILLISECONDS);
+		for (String processor : processors) {
+			Gauge.builder("acme.processor.lag.events", this, lag -> lag.events(processor))
+					.description("Events stored that the slowest segment of a processor has yet to handle")
+					.tag("processor", processor)
+					.baseUnit("events")
+					.register(registry);
+			Gauge.builder("acme.processor.lag.seconds", this, lag -> lag.lastSeconds(processor))
+					.description("Age of the oldest event the slowest segment of a processor has yet to handle")
+					.tag("processor", processor)
+					.baseUnit("seconds")
+					.register(registry);
+		}
+	}
+
+	double events(String processor) {
+		Optional<EventTrackerStatus> slowest = slowest(processor);
+		if (!slowest.isPresent()) {
+			return Double.NaN;
+		}
+		long head = TrackingTokens.position(eventStore.createHeadToken());
+		return Math.max(0L, head - TrackingTokens.position(slowest.get().getTrackingToken()));
+	}
+
+	void refresh() {
+		for (String processor : processors) {
+			try {
+				lastSeconds.put(processor, seconds(processor));
+			} catch (RuntimeException e) {
+				// an event store out of reach leaves the lag unknown until the next refresh
+				lastSeconds.put(processor, Double.NaN);
+			}
+		}
+	}
+
+	double lastSeconds(String processor) {
+		return lastSeconds.getOrDefault(processor, Double.NaN);
+	}
+
+	double seconds(String processor) {
+		Optional<EventTrackerStatus> slowest = slowest(processor);
+		if (!slowest.isPresent()) {
+			return Double.NaN;
+		}
+		TrackingToken token = slowest.get().getTrackingToken();
+		// a segment at the head has nothing left to handle, so no stream is opened for it
+		if (TrackingTokens.position(token) >= TrackingTokens.position(eventStore.createHeadToken())) {
+			return 0d;
+		}
+		// a remote store streams events only after it's opened, so the next one is waited for, up to a bound
+		try (BlockingStream<TrackedEventMessage<?>> stream = eventStore.openStream(TrackingTokens.unwrap(token))) {
+			if (!stream.hasNextAvailable((int) peekTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+				return Double.NaN;
+			}
+			Instant timestamp = stream.peek().map(TrackedEventMessage::getTimestamp).orElse(Instant.now());
+			return Math.max(0L, Duration.between(timestamp, Instant.now()).toMillis()) / 1000d;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return Double.NaN;
+		}
+	}
+
+	private Optional<EventTrackerStatus> slowest(String processor) {
+		return eventProcessing.eventProcessor(processor, TrackingEventProcessor.class)
+				.flatMap(tracking -> tracking.processingStatus().values().stream()
+						.min(Comparator.comparingLong(status -> TrackingTokens.position(status.getTrackingToken()))));
+	}
+
+}
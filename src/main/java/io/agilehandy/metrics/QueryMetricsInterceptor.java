@@ -0,0 +1,90 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.axonframework.messaging.InterceptorChain;
+import org.axonframework.messaging.MessageHandlerInterceptor;
+import org.axonframework.messaging.unitofwork.UnitOfWork;
+import org.axonframework.queryhandling.QueryMessage;
+
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times query handlers per query class, up to the answer of those that
+ * answer later, like an inventory query waiting for an event position.
+ *
+ * @author Haytham Mohamed
+ **/
+public class QueryMetricsInterceptor implements MessageHandlerInterceptor<QueryMessage<?, ?>> {
+
+	private final MeterRegistry registry;
+	private final Map<Class<?>, Timers> timers = new ConcurrentHashMap<>();
+
+	public QueryMetricsInterceptor(MeterRegistry registry) {
+		this.registry = registry;
+	}
+
+	@Override
+	public Object handle(UnitOfWork<? extends QueryMessage<?, ?>> unitOfWork, InterceptorChain chain) throws Exception {
+		Timers timers = this.timers.computeIfAbsent(unitOfWork.getMessage().getPayloadType(), this::timers);
+		long start = System.nanoTime();
+		Object result;
+		try {
+			result = chain.proceed();
+		} catch (Exception e) {
+			timers.failed.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+			throw e;
+		}
+		if (result instanceof CompletionStage) {
+			((CompletionStage<?>) result).whenComplete((answer, error) ->
+					(error == null ? timers.success : timers.failed).record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+		} else {
+			timers.success.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		}
+		return result;
+	}
+
+	private Timers timers(Class<?> queryType) {
+		return new Timers(timer(queryType, "success"), timer(queryType, "failed"));
+	}
+
+	private Timer timer(Class<?> queryType, String outcome) {
+		return Timer.builder("acme.query.handling")
+				.description("Time from receiving a query to its answer")
+				.tag("query", queryType.getSimpleName())
+				.tag("outcome", outcome)
+				.register(registry);
+	}
+
+	private static class Timers {
+
+		final Timer success;
+		final Timer failed;
+
+		Timers(Timer success, Timer failed) {
+			this.success = success;
+			this.failed = failed;
+		}
+	}
+
+}
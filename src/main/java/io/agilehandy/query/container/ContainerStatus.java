@@ -0,0 +1,83 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.container;
+
+import io.agilehandy.command.api.OpStatus;
+import io.agilehandy.command.api.TransmitStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Where a container is and what state it is in, as of its last event.
+ *
+ * @author Haytham Mohamed
+ **/
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+// location queries walk container_status_location from the free size asked for, state queries container_status_state
+@Table(name = "CONTAINER_STATUS", indexes = {
+		@Index(name = "container_status_location", columnList = "zoneName, portName, opStatus, freeSize, id"),
+		@Index(name = "container_status_state", columnList = "opStatus, transmitStatus, id")})
+public class ContainerStatus {
+
+	@Id
+	@Column(length = 16)
+	private UUID id;
+
+	private float size;
+	private float usedSize;
+
+	// size less used size, kept as a column so it can be indexed, worked out in the database's double precision
+	private double freeSize;
+
+	@NotNull
+	private String zoneName;
+
+	@NotNull
+	private String portName;
+
+	// where a reserved container goes, it is there once it arrives
+	private String destZoneName;
+	private String destPortName;
+
+	@NotNull
+	@Enumerated(EnumType.STRING)
+	private OpStatus opStatus;
+
+	@NotNull
+	@Enumerated(EnumType.STRING)
+	private TransmitStatus transmitStatus;
+
+	@NotNull
+	private LocalDateTime lastUpdated;
+
+}
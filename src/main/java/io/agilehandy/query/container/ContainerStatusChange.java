@@ -0,0 +1,78 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.container;
+
+import lombok.Value;
+
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One container event as the statement that brings its row up to date.
+ *
+ * @author Haytham Mohamed
+ **/
+@Value
+class ContainerStatusChange {
+
+	enum Type {
+
+		// a new row, released and off-boarded at the zone/port it was created
+		CREATE,
+
+		// reserved towards a destination
+		RESERVE,
+
+		// loaded with a used size
+		LOAD,
+
+		// off-loaded or released
+		OP_STATUS,
+
+		// boarded, departed or off-boarded
+		TRANSMIT_STATUS,
+
+		// arrived, so now at its destination
+		ARRIVE
+	}
+
+	Type type;
+
+	// statement parameters, the container id last
+	Object[] args;
+
+	static ContainerStatusChange of(Type type, UUID id, Object... values) {
+		Object[] args = new Object[values.length + 1];
+		for (int i = 0; i < values.length; i++) {
+			args[i] = values[i] instanceof LocalDateTime ? Timestamp.valueOf((LocalDateTime) values[i]) : values[i];
+		}
+		args[values.length] = bytes(id);
+		return new ContainerStatusChange(type, args);
+	}
+
+	// the id column holds the uuid as Hibernate maps it, most significant bits first
+	private static byte[] bytes(UUID id) {
+		return ByteBuffer.allocate(16)
+				.putLong(id.getMostSignificantBits())
+				.putLong(id.getLeastSignificantBits())
+				.array();
+	}
+
+}
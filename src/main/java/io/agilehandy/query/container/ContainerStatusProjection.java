@@ -0,0 +1,162 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.container;
+
+import io.agilehandy.command.api.OpStatus;
+import io.agilehandy.command.api.TransmitStatus;
+import io.agilehandy.command.api.evt.ContainerCreated;
+import io.agilehandy.command.api.evt.ContainerOpLoaded;
+import io.agilehandy.command.api.evt.ContainerOpOffLoaded;
+import io.agilehandy.command.api.evt.ContainerOpReleased;
+import io.agilehandy.command.api.evt.ContainerOpReserved;
+import io.agilehandy.command.api.evt.ContainerTransArrived;
+import io.agilehandy.command.api.evt.ContainerTransBoarded;
+import io.agilehandy.command.api.evt.ContainerTransDeparted;
+import io.agilehandy.command.api.evt.ContainerTransOffBoarded;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.axonframework.config.ProcessingGroup;
+import org.axonframework.eventhandling.EventHandler;
+import org.axonframework.eventhandling.ResetHandler;
+import org.axonframework.messaging.unitofwork.CurrentUnitOfWork;
+import org.axonframework.messaging.unitofwork.UnitOfWork;
+import org.axonframework.queryhandling.QueryHandler;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the status, location and free size of every container, fed by all
+ * of its events.
+ *
+ * @author Haytham Mohamed
+ **/
+@Component
+@ProcessingGroup("container-status")
+@RequiredArgsConstructor
+@Slf4j
+public class ContainerStatusProjection {
+
+	private static final String PENDING = "container-status.pending";
+
+	private final ContainerStatusRepository repository;
+	private final ContainerStatusProperties properties;
+
+	@EventHandler
+	public void on(ContainerCreated event) {
+		pending().add(ContainerStatusChange.of(ContainerStatusChange.Type.CREATE, event.getId(),
+				event.getSize(), event.getSize(), event.getCurrentZoneName(), event.getCurrentPortName(),
+				event.getTimestamp()));
+	}
+
+	@EventHandler
+	public void on(ContainerOpReserved event) {
+		pending().add(ContainerStatusChange.of(ContainerStatusChange.Type.RESERVE, event.getId(),
+				event.getDestZoneName(), event.getDestPortName(), event.getTimestamp()));
+	}
+
+	@EventHandler
+	public void on(ContainerOpLoaded event) {
+		pending().add(ContainerStatusChange.of(ContainerStatusChange.Type.LOAD, event.getId(),
+				event.getUsedSize(), event.getUsedSize(), event.getTimestamp()));
+	}
+
+	@EventHandler
+	public void on(ContainerOpOffLoaded event) {
+		pending().add(ContainerStatusChange.of(ContainerStatusChange.Type.OP_STATUS, event.getId(),
+				OpStatus.OFF_LOADED.name(), event.getTimestamp()));
+	}
+
+	@EventHandler
+	public void on(ContainerOpReleased event) {
+		pending().add(ContainerStatusChange.of(ContainerStatusChange.Type.OP_STATUS, event.getId(),
+				OpStatus.RELEASED.name(), event.getTimestamp()));
+	}
+
+	@EventHandler
+	public void on(ContainerTransBoarded event) {
+		pending().add(ContainerStatusChange.of(ContainerStatusChange.Type.TRANSMIT_STATUS, event.getId(),
+				TransmitStatus.BOARDED.name(), event.getTimestamp()));
+	}
+
+	@EventHandler
+	public void on(ContainerTransDeparted event) {
+		pending().add(ContainerStatusChange.of(ContainerStatusChange.Type.TRANSMIT_STATUS, event.getId(),
+				TransmitStatus.DEPARTED.name(), event.getTimestamp()));
+	}
+
+	@EventHandler
+	public void on(ContainerTransArrived event) {
+		pending().add(ContainerStatusChange.of(ContainerStatusChange.Type.ARRIVE, event.getId(),
+				event.getTimestamp()));
+	}
+
+	@EventHandler
+	public void on(ContainerTransOffBoarded event) {
+		pending().add(ContainerStatusChange.of(ContainerStatusChange.Type.TRANSMIT_STATUS, event.getId(),
+				TransmitStatus.OFF_BOARDED.name(), event.getTimestamp()));
+	}
+
+	// the changes of the current batch in event order, written once the batch commits along with its token
+	private List<ContainerStatusChange> pending() {
+		UnitOfWork<?> batch = CurrentUnitOfWork.get().root();
+		return batch.getOrComputeResource(PENDING, name -> {
+			List<ContainerStatusChange> pending = new ArrayList<>();
+			batch.onPrepareCommit(u -> repository.applyChanges(pending));
+			return pending;
+		});
+	}
+
+	@ResetHandler
+	public void reset() {
+		log.info("resetting the container statuses");
+		repository.deleteAllRows();
+	}
+
+	@QueryHandler
+	public ContainerStatus getContainerStatus(ContainerStatusQuery query) {
+		return repository.findById(query.getId()).orElse(null);
+	}
+
+	@QueryHandler
+	public List<ContainerStatus> getContainersAtLocation(ContainersAtLocationQuery query) {
+		PageRequest page = pageRequest(query.getLimit());
+		if (query.isFirstPage()) {
+			return repository.findAtLocationPage(query.getZoneName(), query.getPortName(), query.getOpStatus(),
+					query.getMinFreeSize(), page);
+		}
+		return repository.findAtLocationPageAfter(query.getZoneName(), query.getPortName(), query.getOpStatus(),
+				Math.max(query.getAfterFreeSize(), query.getMinFreeSize()), query.getAfterId(), page);
+	}
+
+	@QueryHandler
+	public List<ContainerStatus> getContainersInState(ContainersInStateQuery query) {
+		PageRequest page = pageRequest(query.getLimit());
+		if (query.getAfterId() == null) {
+			return repository.findInStatePage(query.getOpStatus(), query.getTransmitStatus(), page);
+		}
+		return repository.findInStatePageAfter(query.getOpStatus(), query.getTransmitStatus(), query.getAfterId(), page);
+	}
+
+	private PageRequest pageRequest(int limit) {
+		return PageRequest.of(0, Math.max(1, Math.min(limit, properties.getPaging().getMaxSize())));
+	}
+
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.container;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Tuning knobs of the container status read model.
+ *
+ * @author Haytham Mohamed
+ **/
+@Data
+@ConfigurationProperties(prefix = "acme.container-status")
+public class ContainerStatusProperties {
+
+	private Paging paging = new Paging();
+
+	@Data
+	public static class Paging {
+
+		// most containers a location or state query answers with at once
+		private int maxSize = 500;
+	}
+
+}
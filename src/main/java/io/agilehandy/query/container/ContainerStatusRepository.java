@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.container;
+
+import io.agilehandy.command.api.OpStatus;
+import io.agilehandy.command.api.TransmitStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * @author Haytham Mohamed
+ **/
+public interface ContainerStatusRepository extends CrudRepository<ContainerStatus, UUID>, ContainerStatusRepositoryCustom {
+
+	// the columns fixed by the where clause lead every order by, or the database sorts instead of walking the index
+	@Query("select c from ContainerStatus c where c.zoneName = :zoneName and c.portName = :portName "
+			+ "and c.opStatus = :opStatus and c.freeSize >= :minFreeSize "
+			+ "order by c.zoneName, c.portName, c.opStatus, c.freeSize, c.id")
+	List<ContainerStatus> findAtLocationPage(@Param("zoneName") String zoneName,
+	                                         @Param("portName") String portName,
+	                                         @Param("opStatus") OpStatus opStatus,
+	                                         @Param("minFreeSize") double minFreeSize,
+	                                         Pageable page);
+
+	// the cursor's free size is at least the minimum asked for, so it bounds the index range on its own
+	@Query("select c from ContainerStatus c where c.zoneName = :zoneName and c.portName = :portName "
+			+ "and c.opStatus = :opStatus and c.freeSize >= :afterFreeSize "
+			+ "and (c.freeSize > :afterFreeSize or c.id > :afterId) "
+			+ "order by c.zoneName, c.portName, c.opStatus, c.freeSize, c.id")
+	List<ContainerStatus> findAtLocationPageAfter(@Param("zoneName") String zoneName,
+	                                              @Param("portName") String portName,
+	                                              @Param("opStatus") OpStatus opStatus,
+	                                              @Param("afterFreeSize") double afterFreeSize,
+	                                              @Param("afterId") UUID afterId,
+	                                              Pageable page);
+
+	@Query("select c from ContainerStatus c where c.opStatus = :opStatus and c.transmitStatus = :transmitStatus "
+			+ "order by c.opStatus, c.transmitStatus, c.id")
+	List<ContainerStatus> findInStatePage(@Param("opStatus") OpStatus opStatus,
+	                                      @Param("transmitStatus") TransmitStatus transmitStatus,
+	                                      Pageable page);
+
+	@Query("select c from ContainerStatus c where c.opStatus = :opStatus and c.transmitStatus = :transmitStatus "
+			+ "and c.id > :afterId order by c.opStatus, c.transmitStatus, c.id")
+	List<ContainerStatus> findInStatePageAfter(@Param("opStatus") OpStatus opStatus,
+	                                           @Param("transmitStatus") TransmitStatus transmitStatus,
+	                                           @Param("afterId") UUID afterId,
+	                                           Pageable page);
+
+}
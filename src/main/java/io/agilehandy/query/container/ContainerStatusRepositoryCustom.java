@@ -0,0 +1,35 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.container;
+
+import java.util.List;
+
+/**
+ * Container status changes written as batched JDBC statements.
+ *
+ * @author Haytham Mohamed
+ **/
+public interface ContainerStatusRepositoryCustom {
+
+	// runs the changes in order, consecutive ones of the same type as one batch
+	void applyChanges(List<ContainerStatusChange> changes);
+
+	// empties the table in one statement
+	void deleteAllRows();
+
+}
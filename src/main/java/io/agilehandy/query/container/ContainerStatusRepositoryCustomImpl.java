@@ -0,0 +1,88 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.container;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes container status changes with plain {@code INSERT} and
+ * {@code UPDATE ... WHERE id = ?} statements, so no event needs its row
+ * read first. Runs in the caller's transaction.
+ *
+ * @author Haytham Mohamed
+ **/
+class ContainerStatusRepositoryCustomImpl implements ContainerStatusRepositoryCustom {
+
+	private static final Map<ContainerStatusChange.Type, String> STATEMENTS =
+			new EnumMap<>(ContainerStatusChange.Type.class);
+
+	static {
+		STATEMENTS.put(ContainerStatusChange.Type.CREATE,
+				"insert into container_status (size, used_size, free_size, zone_name, port_name,"
+				+ " op_status, transmit_status, last_updated, id)"
+				+ " values (?, 0, ?, ?, ?, 'RELEASED', 'OFF_BOARDED', ?, ?)");
+		STATEMENTS.put(ContainerStatusChange.Type.RESERVE,
+				"update container_status set op_status = 'RESERVED', dest_zone_name = ?, dest_port_name = ?,"
+				+ " last_updated = ? where id = ?");
+		STATEMENTS.put(ContainerStatusChange.Type.LOAD,
+				"update container_status set op_status = 'LOADED', used_size = ?, free_size = size - ?,"
+				+ " last_updated = ? where id = ?");
+		STATEMENTS.put(ContainerStatusChange.Type.OP_STATUS,
+				"update container_status set op_status = ?, last_updated = ? where id = ?");
+		STATEMENTS.put(ContainerStatusChange.Type.TRANSMIT_STATUS,
+				"update container_status set transmit_status = ?, last_updated = ? where id = ?");
+		STATEMENTS.put(ContainerStatusChange.Type.ARRIVE,
+				"update container_status set transmit_status = 'ARRIVED', zone_name = dest_zone_name,"
+				+ " port_name = dest_port_name, last_updated = ? where id = ?");
+	}
+
+	private final JdbcTemplate jdbcTemplate;
+
+	ContainerStatusRepositoryCustomImpl(JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	@Override
+	public void applyChanges(List<ContainerStatusChange> changes) {
+		List<Object[]> batch = new ArrayList<>();
+		ContainerStatusChange.Type type = null;
+		for (ContainerStatusChange change : changes) {
+			// a container's events keep their order, batches only join neighbours of the same type
+			if (change.getType() != type && !batch.isEmpty()) {
+				jdbcTemplate.batchUpdate(STATEMENTS.get(type), batch);
+				batch = new ArrayList<>();
+			}
+			type = change.getType();
+			batch.add(change.getArgs());
+		}
+		if (!batch.isEmpty()) {
+			jdbcTemplate.batchUpdate(STATEMENTS.get(type), batch);
+		}
+	}
+
+	@Override
+	public void deleteAllRows() {
+		jdbcTemplate.update("delete from container_status");
+	}
+
+}
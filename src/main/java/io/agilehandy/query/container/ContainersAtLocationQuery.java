@@ -0,0 +1,60 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.container;
+
+import io.agilehandy.command.api.OpStatus;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+import java.util.UUID;
+
+/**
+ * A page of the containers at a zone/port in an operation status with at
+ * least some free size, the ones with the least free size that fits first.
+ *
+ * @author Haytham Mohamed
+ **/
+@Value
+@AllArgsConstructor
+public class ContainersAtLocationQuery {
+
+	String zoneName;
+	String portName;
+	OpStatus opStatus;
+	float minFreeSize;
+
+	// free size and id of the container the previous page ended with, nulls for the first page
+	Double afterFreeSize;
+	UUID afterId;
+
+	int limit;
+
+	public ContainersAtLocationQuery(String zoneName, String portName, OpStatus opStatus, float minFreeSize, int limit) {
+		this(zoneName, portName, opStatus, minFreeSize, null, null, limit);
+	}
+
+	// the page following one that ended with this container
+	public ContainersAtLocationQuery next(ContainerStatus last) {
+		return new ContainersAtLocationQuery(zoneName, portName, opStatus, minFreeSize,
+				last.getFreeSize(), last.getId(), limit);
+	}
+
+	boolean isFirstPage() {
+		return afterFreeSize == null || afterId == null;
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.container;
+
+import io.agilehandy.command.api.OpStatus;
+import io.agilehandy.command.api.TransmitStatus;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+import java.util.UUID;
+
+/**
+ * A page of the containers in an operation and transmit status, wherever
+ * they are, ordered by id.
+ *
+ * @author Haytham Mohamed
+ **/
+@Value
+@AllArgsConstructor
+public class ContainersInStateQuery {
+
+	OpStatus opStatus;
+	TransmitStatus transmitStatus;
+
+	// id of the container the previous page ended with, null for the first page
+	UUID afterId;
+
+	int limit;
+
+	public ContainersInStateQuery(OpStatus opStatus, TransmitStatus transmitStatus, int limit) {
+		this(opStatus, transmitStatus, null, limit);
+	}
+
+	// the page following one that ended with this container
+	public ContainersInStateQuery next(ContainerStatus last) {
+		return new ContainersInStateQuery(opStatus, transmitStatus, last.getId(), limit);
+	}
+}
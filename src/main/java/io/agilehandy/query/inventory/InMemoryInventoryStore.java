@@ -0,0 +1,415 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.inventory;
+
+import io.agilehandy.eventstore.TrackingTokens;
+import lombok.extern.slf4j.Slf4j;
+import org.axonframework.common.AxonThreadFactory;
+import org.axonframework.eventhandling.TrackingToken;
+import org.axonframework.eventhandling.tokenstore.TokenStore;
+import org.axonframework.eventhandling.tokenstore.inmemory.InMemoryTokenStore;
+import org.axonframework.eventsourcing.eventstore.EventStore;
+import org.axonframework.messaging.unitofwork.CurrentUnitOfWork;
+import org.axonframework.messaging.unitofwork.UnitOfWork;
+import org.axonframework.serialization.SerializedObject;
+import org.axonframework.serialization.Serializer;
+import org.axonframework.serialization.SimpleSerializedObject;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Predicate;
+
+/**
+ * The inventory counts held in primitive arrays, indexed by a dense id every
+ * zone/port is given when its first container is created.
+ *
+ * The changes of a processing batch are applied as the batch commits, together
+ * with the token its segment reached, so a snapshot always holds counts and
+ * tokens that match. On start the inventory processor resumes from the tokens
+ * of the last snapshot, or from the first event without one. A snapshot is
+ * only valid against the event store it was taken from.
+ *
+ * @author Haytham Mohamed
+ **/
+@ManagedResource(objectName = "io.agilehandy:type=InMemoryInventoryStore")
+@Slf4j
+public class InMemoryInventoryStore implements InventoryStore {
+
+	private static final String STAGED = "inventory.staged";
+
+	// the resources a tracking processor puts on the unit of work of each batch
+	private static final String SEGMENT = "Processor[" + InventoryProcessorLag.PROCESSOR + "]/SegmentId";
+	private static final String TOKEN = "Processor[" + InventoryProcessorLag.PROCESSOR + "]/Token";
+
+	private static final int SNAPSHOT_FORMAT = 1;
+
+	private static final Comparator<Inventory> BY_PORT = Comparator.comparing(i -> i.getKey().getPortName());
+	private static final Comparator<Inventory> RANKED = Comparator
+			.comparingInt(Inventory::getAvailableContainers)
+			.thenComparing(i -> i.getKey().getZoneName())
+			.thenComparing(i -> i.getKey().getPortName())
+			.reversed();
+
+	private final InventoryProperties.Snapshot snapshot;
+	private final Serializer serializer;
+
+	// written under the lock, read without it when no write happened meanwhile
+	private final StampedLock lock = new StampedLock();
+	private final Map<InventoryKey, Integer> ids = new ConcurrentHashMap<>();
+	private InventoryKey[] keys;
+	private int[] available;
+	private int[] forecast;
+	// the instance of each batch, shared by the zone/ports it touched
+	private LocalDateTime[] lastUpdated;
+	private int size;
+	private final Map<Integer, TrackingToken> tokens = new HashMap<>();
+
+	private final ScheduledExecutorService scheduler =
+			Executors.newSingleThreadScheduledExecutor(new AxonThreadFactory("inventory-snapshots"));
+	private volatile boolean restored;
+	private volatile long snapshots;
+
+	public InMemoryInventoryStore(InventoryProperties.Memory memory, Serializer serializer) {
+		this.snapshot = memory.getSnapshot();
+		this.serializer = serializer;
+		int capacity = Math.max(memory.getInitialCapacity(), 16);
+		this.keys = new InventoryKey[capacity];
+		this.available = new int[capacity];
+		this.forecast = new int[capacity];
+		this.lastUpdated = new LocalDateTime[capacity];
+		if (snapshot.isEnabled()) {
+			long interval = snapshot.getInterval().toMillis();
+			scheduler.scheduleWithFixedDelay(this::snapshotQuietly, interval, interval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		scheduler.shutdown();
+		if (snapshot.isEnabled()) {
+			snapshotQuietly();
+		}
+	}
+
+	@Override
+	public void apply(Map<InventoryKey, InventoryDelta> deltas, LocalDateTime lastUpdated) {
+		if (!CurrentUnitOfWork.isStarted()) {
+			write(deltas, lastUpdated, null, null);
+			return;
+		}
+		// held back until the batch commits, then applied in one go along with its token
+		UnitOfWork<?> batch = CurrentUnitOfWork.get().root();
+		Map<InventoryKey, InventoryDelta> staged = batch.getOrComputeResource(STAGED, name -> {
+			Map<InventoryKey, InventoryDelta> changes = new HashMap<>();
+			batch.onCommit(u -> write(changes, lastUpdated, u.getResource(SEGMENT), u.getResource(TOKEN)));
+			return changes;
+		});
+		deltas.forEach((key, delta) -> staged.computeIfAbsent(key, k -> new InventoryDelta()).add(delta));
+	}
+
+	@Override
+	public Inventory find(InventoryKey key) {
+		Integer id = ids.get(key);
+		if (id == null) {
+			return null;
+		}
+		long stamp = lock.tryOptimisticRead();
+		Inventory inventory = read(key, id);
+		if (!lock.validate(stamp)) {
+			stamp = lock.readLock();
+			try {
+				inventory = read(key, id);
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		return inventory;
+	}
+
+	@Override
+	public List<Inventory> findByZone(String zoneName, String afterPortName, int limit) {
+		Inventory after = afterPortName == null ? null : new Inventory(new InventoryKey(zoneName, afterPortName), 0, 0, null);
+		return page(key -> key.getZoneName().equals(zoneName), BY_PORT, after, limit);
+	}
+
+	@Override
+	public List<Inventory> findRanked(Inventory after, int limit) {
+		return page(key -> true, RANKED, after, limit);
+	}
+
+	// one pass over the table, keeping only the first limit inventories ordered after the given one
+	private List<Inventory> page(Predicate<InventoryKey> filter, Comparator<Inventory> order,
+	                             Inventory after, int limit) {
+		PriorityQueue<Inventory> first = new PriorityQueue<>(limit + 1, order.reversed());
+		long stamp = lock.readLock();
+		try {
+			for (int id = 0; id < size; id++) {
+				if (!filter.test(keys[id])) {
+					continue;
+				}
+				// the interned keys stay with the table
+				Inventory inventory = read(new InventoryKey(keys[id].getZoneName(), keys[id].getPortName()), id);
+				if (after != null && order.compare(inventory, after) <= 0) {
+					continue;
+				}
+				first.add(inventory);
+				if (first.size() > limit) {
+					first.poll();
+				}
+			}
+		} finally {
+			lock.unlockRead(stamp);
+		}
+		List<Inventory> page = new ArrayList<>(first);
+		page.sort(order);
+		return page;
+	}
+
+	private Inventory read(InventoryKey key, int id) {
+		return new Inventory(key, available[id], forecast[id], lastUpdated[id]);
+	}
+
+	// same arithmetic as the upserts on the RTI_MT table
+	private void write(Map<InventoryKey, InventoryDelta> deltas, LocalDateTime when,
+	                   Integer segment, TrackingToken token) {
+		long stamp = lock.writeLock();
+		try {
+			deltas.forEach((key, delta) -> {
+				Integer id = ids.get(key);
+				if (id == null) {
+					if (!delta.createsRow()) {
+						return;
+					}
+					id = intern(key);
+				}
+				available[id] = Math.max(available[id] + delta.getAvailable(), 0);
+				forecast[id] += delta.getForecast();
+				lastUpdated[id] = when;
+			});
+			if (segment != null && token != null) {
+				tokens.put(segment, token);
+			}
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	// under the write lock
+	private int intern(InventoryKey key) {
+		if (size == keys.length) {
+			int capacity = size * 2;
+			keys = Arrays.copyOf(keys, capacity);
+			available = Arrays.copyOf(available, capacity);
+			forecast = Arrays.copyOf(forecast, capacity);
+			lastUpdated = Arrays.copyOf(lastUpdated, capacity);
+		}
+		int id = size++;
+		keys[id] = key;
+		ids.put(key, id);
+		return id;
+	}
+
+	/**
+	 * Loads the last snapshot and hands the inventory processor a token store
+	 * resuming each segment where the snapshot left it.
+	 */
+	TokenStore restore(EventStore eventStore, int segments) {
+		InMemoryTokenStore tokenStore = new InMemoryTokenStore();
+		Path file = Paths.get(snapshot.getFile());
+		if (snapshot.isEnabled() && Files.exists(file)) {
+			try {
+				read(file);
+				long head = TrackingTokens.position(eventStore.createHeadToken());
+				if (tokens.values().stream().anyMatch(token -> TrackingTokens.position(token) > head)) {
+					log.warn("inventory snapshot {} is ahead of the event store, rebuilding from the first event", file);
+					clear();
+				} else if (tokens.isEmpty() && size > 0) {
+					// counts without a token to resume from would be counted again from the first event
+					log.warn("inventory snapshot {} has no tokens, rebuilding from the first event", file);
+					clear();
+				}
+			} catch (IOException | RuntimeException e) {
+				log.warn("could not restore inventory snapshot {}, rebuilding from the first event", file, e);
+				clear();
+			}
+		}
+		if (!tokens.isEmpty()) {
+			int count = Math.max(segments, tokens.keySet().stream().mapToInt(id -> id + 1).max().orElse(0));
+			tokenStore.initializeTokenSegments(InventoryProcessorLag.PROCESSOR, count);
+			tokens.forEach((segment, token) -> tokenStore.storeToken(token, InventoryProcessorLag.PROCESSOR, segment));
+			log.info("restored {} zone/ports of inventory from {}", size, file);
+		}
+		restored = true;
+		return tokenStore;
+	}
+
+	@ManagedOperation
+	public void snapshot() throws IOException {
+		// nothing worth keeping before the processor has started from the previous snapshot
+		if (!restored) {
+			return;
+		}
+		InventoryKey[] keys;
+		int[] available;
+		int[] forecast;
+		LocalDateTime[] lastUpdated;
+		Map<Integer, TrackingToken> tokens;
+		long stamp = lock.readLock();
+		try {
+			keys = Arrays.copyOf(this.keys, size);
+			available = Arrays.copyOf(this.available, size);
+			forecast = Arrays.copyOf(this.forecast, size);
+			lastUpdated = Arrays.copyOf(this.lastUpdated, size);
+			tokens = new HashMap<>(this.tokens);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+
+		// written aside and moved over the previous one, a crash midway leaves that one intact
+		Path file = Paths.get(snapshot.getFile()).toAbsolutePath();
+		Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+			out.writeInt(SNAPSHOT_FORMAT);
+			out.writeInt(tokens.size());
+			for (Map.Entry<Integer, TrackingToken> entry : tokens.entrySet()) {
+				SerializedObject<byte[]> token = serializer.serialize(entry.getValue(), byte[].class);
+				out.writeInt(entry.getKey());
+				out.writeUTF(token.getType().getName());
+				out.writeUTF(token.getType().getRevision() == null ? "" : token.getType().getRevision());
+				out.writeInt(token.getData().length);
+				out.write(token.getData());
+			}
+			out.writeInt(keys.length);
+			for (int id = 0; id < keys.length; id++) {
+				out.writeUTF(keys[id].getZoneName());
+				out.writeUTF(keys[id].getPortName());
+				out.writeInt(available[id]);
+				out.writeInt(forecast[id]);
+				out.writeLong(toMillis(lastUpdated[id]));
+			}
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		snapshots++;
+		log.debug("snapshotted {} zone/ports of inventory to {}", keys.length, file);
+	}
+
+	private void snapshotQuietly() {
+		try {
+			snapshot();
+		} catch (IOException | RuntimeException e) {
+			log.warn("could not snapshot the inventory to {}", snapshot.getFile(), e);
+		}
+	}
+
+	private void read(Path file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			int format = in.readInt();
+			if (format != SNAPSHOT_FORMAT) {
+				throw new IOException("unknown inventory snapshot format " + format);
+			}
+			Map<Integer, TrackingToken> restoredTokens = new HashMap<>();
+			for (int i = in.readInt(); i > 0; i--) {
+				int segment = in.readInt();
+				String type = in.readUTF();
+				String revision = in.readUTF();
+				byte[] data = new byte[in.readInt()];
+				in.readFully(data);
+				restoredTokens.put(segment, serializer.deserialize(new SimpleSerializedObject<>(
+						data, byte[].class, type, revision.isEmpty() ? null : revision)));
+			}
+			long stamp = lock.writeLock();
+			try {
+				for (int i = in.readInt(); i > 0; i--) {
+					int id = intern(new InventoryKey(in.readUTF(), in.readUTF()));
+					available[id] = in.readInt();
+					forecast[id] = in.readInt();
+					lastUpdated[id] = toDateTime(in.readLong());
+				}
+				tokens.putAll(restoredTokens);
+			} finally {
+				lock.unlockWrite(stamp);
+			}
+		}
+	}
+
+	@Override
+	public void clear() {
+		long stamp = lock.writeLock();
+		try {
+			ids.clear();
+			Arrays.fill(keys, 0, size, null);
+			Arrays.fill(available, 0, size, 0);
+			Arrays.fill(forecast, 0, size, 0);
+			Arrays.fill(lastUpdated, 0, size, null);
+			size = 0;
+			tokens.clear();
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	private static long toMillis(LocalDateTime dateTime) {
+		return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+	}
+
+	private static LocalDateTime toDateTime(long millis) {
+		return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000L),
+				(int) Math.floorMod(millis, 1000L) * 1_000_000, ZoneOffset.UTC);
+	}
+
+	@ManagedAttribute
+	public int getZonePorts() {
+		return ids.size();
+	}
+
+	@ManagedAttribute
+	public int getCapacity() {
+		return keys.length;
+	}
+
+	@ManagedAttribute
+	public long getSnapshots() {
+		return snapshots;
+	}
+
+}
@@ -23,6 +23,7 @@ import lombok.NoArgsConstructor;
 
 import javax.persistence.EmbeddedId;
 import javax.persistence.Entity;
+import javax.persistence.Index;
 import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 import java.time.LocalDateTime;
@@ -34,7 +35,10 @@ import java.time.LocalDateTime;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "RTI_MT")
+// zone-wide queries walk rti_mt_zone, ranked ones rti_mt_ranked backwards
+@Table(name = "RTI_MT", indexes = {
+		@Index(name = "rti_mt_zone", columnList = "zoneName, portName"),
+		@Index(name = "rti_mt_ranked", columnList = "availableContainers, zoneName, portName")})
 public class Inventory {
 
 	@EmbeddedId
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.inventory;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Bounded read-through cache of the inventory per zone/port, serving repeated
+ * {@link InventoryQuery}s from memory.
+ *
+ * The projection invalidates the zone/ports it wrote once their transaction
+ * has committed. A row read while an invalidation happened is returned but not
+ * kept, as it may predate the commit. Zone/ports without a row are cached too,
+ * until their first container is created.
+ *
+ * @author Haytham Mohamed
+ **/
+@ManagedResource(objectName = "io.agilehandy:type=InventoryCache")
+public class InventoryCache {
+
+	private final int maxSize;
+	private final Map<InventoryKey, Optional<Inventory>> entries;
+
+	// bumped by every invalidation, guarded by entries
+	private long generation;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder invalidations = new LongAdder();
+
+	public InventoryCache(int maxSize) {
+		this.maxSize = maxSize;
+		this.entries = new LinkedHashMap<InventoryKey, Optional<Inventory>>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<InventoryKey, Optional<Inventory>> eldest) {
+				if (size() <= InventoryCache.this.maxSize) {
+					return false;
+				}
+				evictions.increment();
+				return true;
+			}
+		};
+	}
+
+	public Inventory get(InventoryKey key, Function<InventoryKey, Optional<Inventory>> loader) {
+		if (maxSize <= 0) {
+			return loader.apply(key).orElse(null);
+		}
+		long seen;
+		synchronized (entries) {
+			Optional<Inventory> cached = entries.get(key);
+			if (cached != null) {
+				hits.increment();
+				return cached.orElse(null);
+			}
+			seen = generation;
+		}
+		misses.increment();
+		Optional<Inventory> loaded = loader.apply(key);
+		synchronized (entries) {
+			if (generation == seen) {
+				entries.put(key, loaded);
+			}
+		}
+		return loaded.orElse(null);
+	}
+
+	public void invalidate(Collection<InventoryKey> keys) {
+		synchronized (entries) {
+			generation++;
+			for (InventoryKey key : keys) {
+				if (entries.remove(key) != null) {
+					invalidations.increment();
+				}
+			}
+		}
+	}
+
+	@ManagedAttribute
+	public int getSize() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	@ManagedAttribute
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	@ManagedAttribute
+	public long getHits() {
+		return hits.sum();
+	}
+
+	@ManagedAttribute
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	@ManagedAttribute
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	@ManagedAttribute
+	public long getInvalidations() {
+		return invalidations.sum();
+	}
+
+	@ManagedAttribute
+	public double getHitRatio() {
+		long h = hits.sum();
+		long total = h + misses.sum();
+		return total == 0 ? 0d : (double) h / total;
+	}
+
+	@ManagedOperation
+	public void clear() {
+		synchronized (entries) {
+			generation++;
+			entries.clear();
+		}
+	}
+
+}
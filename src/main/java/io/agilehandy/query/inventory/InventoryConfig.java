@@ -0,0 +1,87 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.inventory;
+
+import lombok.extern.slf4j.Slf4j;
+import org.axonframework.config.EventProcessingConfigurer;
+import org.axonframework.serialization.Serializer;
+import org.axonframework.springboot.EventProcessorProperties;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Wiring of the inventory read model.
+ *
+ * @author Haytham Mohamed
+ **/
+@Configuration
+@EnableConfigurationProperties(InventoryProperties.class)
+@Slf4j
+public class InventoryConfig {
+
+	private final InventoryProperties properties;
+
+	public InventoryConfig(InventoryProperties properties) {
+		this.properties = properties;
+	}
+
+	@Bean
+	public InventoryCache inventoryCache() {
+		InventoryProperties.Cache cache = properties.getCache();
+		if (!cache.isEnabled()) {
+			return new InventoryCache(0);
+		}
+		log.info("caching up to {} zone/port inventories", cache.getMaxSize());
+		return new InventoryCache(cache.getMaxSize());
+	}
+
+	@Bean
+	@ConditionalOnProperty(prefix = "acme.inventory", name = "store", havingValue = "jpa", matchIfMissing = true)
+	public InventoryStore jpaInventoryStore(InventoryRepository repository, InventoryCache inventoryCache) {
+		return new JpaInventoryStore(repository, inventoryCache);
+	}
+
+	@Bean
+	@ConditionalOnProperty(prefix = "acme.inventory", name = "store", havingValue = "memory")
+	public InMemoryInventoryStore inMemoryInventoryStore(@Qualifier("serializer") Serializer serializer) {
+		InventoryProperties.Snapshot snapshot = properties.getMemory().getSnapshot();
+		log.info("keeping the inventory in memory, snapshots {}",
+				snapshot.isEnabled() ? "every " + snapshot.getInterval() + " to " + snapshot.getFile() : "disabled");
+		return new InMemoryInventoryStore(properties.getMemory(), serializer);
+	}
+
+	// the in-memory counts and the tokens of the processor feeding them restart together from the last snapshot
+	@Autowired
+	public void registerInMemoryTokenStore(EventProcessingConfigurer eventProcessing,
+	                                       EventProcessorProperties processors,
+	                                       ObjectProvider<InMemoryInventoryStore> inMemoryStore) {
+		InMemoryInventoryStore store = inMemoryStore.getIfAvailable();
+		if (store == null) {
+			return;
+		}
+		EventProcessorProperties.ProcessorSettings settings = processors.getProcessors().get(InventoryProcessorLag.PROCESSOR);
+		int segments = settings == null ? 1 : settings.getInitialSegmentCount();
+		eventProcessing.registerTokenStore(InventoryProcessorLag.PROCESSOR, c -> store.restore(c.eventStore(), segments));
+	}
+
+}
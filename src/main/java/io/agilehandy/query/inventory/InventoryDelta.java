@@ -0,0 +1,62 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.inventory;
+
+import lombok.Getter;
+
+/**
+ * Changes to one zone/port's inventory gathered over a batch of events.
+ *
+ * @author Haytham Mohamed
+ **/
+@Getter
+public class InventoryDelta {
+
+	private int created;
+	private int reserved;
+	private int forecast;
+
+	void created() {
+		created++;
+	}
+
+	void reserved() {
+		reserved++;
+	}
+
+	void forecast() {
+		forecast++;
+	}
+
+	void add(InventoryDelta other) {
+		created += other.created;
+		reserved += other.reserved;
+		forecast += other.forecast;
+	}
+
+	// a zone/port only gets a row once a container is created there
+	boolean createsRow() {
+		return created > 0;
+	}
+
+	// net change to the available containers
+	int getAvailable() {
+		return created - reserved;
+	}
+
+}
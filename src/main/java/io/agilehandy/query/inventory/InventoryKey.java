@@ -50,8 +50,7 @@ public class InventoryKey implements Serializable {
 
 	@Override
 	public int hashCode() {
-		int result = zoneName.hashCode() + portName.hashCode();
-		result = 31 * result + 32 * zoneName.hashCode() + 33 * portName.hashCode();
-		return result;
+		// the low bits pick the processor segment, so every port has to reach them
+		return 31 * zoneName.hashCode() + portName.hashCode();
 	}
 }
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.inventory;
+
+import org.axonframework.messaging.responsetypes.ResponseTypes;
+import org.axonframework.queryhandling.QueryGateway;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Zone-wide and ranked inventory queries read as one stream, fetching the
+ * next page only once the stream has consumed the previous one. Counts
+ * changing while the stream is read may move a zone/port between pages.
+ *
+ * A page with fewer inventories than the page size ends the stream, so the
+ * page size must be within the paging max-size of the query handlers, or
+ * the first page they cut short is taken for the last.
+ *
+ * @author Haytham Mohamed
+ **/
+public final class InventoryPages {
+
+	private InventoryPages() {
+	}
+
+	public static Stream<Inventory> zone(QueryGateway queryGateway, String zoneName, int pageSize) {
+		return stream(new ZoneInventoryQuery(zoneName, pageSize), ZoneInventoryQuery::next, pageSize, queryGateway);
+	}
+
+	public static Stream<Inventory> ranked(QueryGateway queryGateway, int pageSize) {
+		return stream(new RankedInventoryQuery(pageSize), RankedInventoryQuery::next, pageSize, queryGateway);
+	}
+
+	private static <Q> Stream<Inventory> stream(Q first, BiFunction<Q, Inventory, Q> next, int pageSize,
+	                                            QueryGateway queryGateway) {
+		// the query handlers answer at least one
+		int limit = Math.max(1, pageSize);
+		Function<Q, List<Inventory>> fetch = query ->
+				queryGateway.query(query, ResponseTypes.multipleInstancesOf(Inventory.class)).join();
+		return StreamSupport.stream(new Spliterators.AbstractSpliterator<Inventory>(Long.MAX_VALUE,
+				Spliterator.ORDERED | Spliterator.NONNULL) {
+
+			private Q query = first;
+			// nothing is asked for before the stream is read
+			private Iterator<Inventory> page;
+			private boolean lastPage;
+			private Inventory last;
+
+			@Override
+			public boolean tryAdvance(Consumer<? super Inventory> action) {
+				// a page short of the page size is the last one, only a full one may be followed by more
+				if (page == null || (!page.hasNext() && !lastPage)) {
+					if (page != null) {
+						query = next.apply(query, last);
+					}
+					List<Inventory> fetched = fetch.apply(query);
+					lastPage = fetched.size() < limit;
+					page = fetched.iterator();
+				}
+				if (!page.hasNext()) {
+					return false;
+				}
+				last = page.next();
+				action.accept(last);
+				return true;
+			}
+		}, false);
+	}
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.inventory;
+
+import io.agilehandy.eventstore.TrackingTokens;
+import org.axonframework.config.EventProcessingConfiguration;
+import org.axonframework.eventhandling.EventTrackerStatus;
+import org.axonframework.eventhandling.TrackingEventProcessor;
+import org.axonframework.eventsourcing.eventstore.EventStore;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * How far each segment of the inventory processor trails the event store,
+ * in events. Segments this instance doesn't process report -1.
+ *
+ * @author Haytham Mohamed
+ **/
+@Component
+@ManagedResource(objectName = "io.agilehandy:type=InventoryProcessorLag")
+public class InventoryProcessorLag {
+
+	static final String PROCESSOR = "inventory";
+
+	private final EventProcessingConfiguration eventProcessing;
+	private final EventStore eventStore;
+
+	public InventoryProcessorLag(EventProcessingConfiguration eventProcessing, EventStore eventStore) {
+		this.eventProcessing = eventProcessing;
+		this.eventStore = eventStore;
+	}
+
+	@ManagedAttribute
+	public long[] getSegmentLag() {
+		Map<Integer, EventTrackerStatus> status = processingStatus();
+		int segments = status.keySet().stream().mapToInt(id -> id + 1).max().orElse(0);
+		long[] lag = new long[segments];
+		Arrays.fill(lag, -1L);
+		long head = TrackingTokens.position(eventStore.createHeadToken());
+		status.forEach((segment, tracker) ->
+				lag[segment] = Math.max(0L, head - TrackingTokens.position(tracker.getTrackingToken())));
+		return lag;
+	}
+
+	@ManagedAttribute
+	public long getMaxLag() {
+		long max = 0;
+		for (long lag : getSegmentLag()) {
+			max = Math.max(max, lag);
+		}
+		return max;
+	}
+
+	@ManagedAttribute
+	public int getActiveSegments() {
+		return processingStatus().size();
+	}
+
+	@ManagedAttribute
+	public boolean isCaughtUp() {
+		return processingStatus().values().stream().allMatch(EventTrackerStatus::isCaughtUp);
+	}
+
+	// whether the segments claimed here make up the whole event stream, each one being 1/(mask+1) of it;
+	// a segment claimed by another instance, or by none while a claim moves, leaves a share uncovered
+	static boolean spansAllSegments(Collection<EventTrackerStatus> segments) {
+		long whole = 1L << 32;
+		long claimed = 0;
+		for (EventTrackerStatus status : segments) {
+			claimed += whole / (status.getSegment().getMask() + 1L);
+		}
+		return claimed == whole;
+	}
+
+	private Map<Integer, EventTrackerStatus> processingStatus() {
+		Optional<TrackingEventProcessor> processor = eventProcessing.eventProcessor(PROCESSOR, TrackingEventProcessor.class);
+		return processor.map(TrackingEventProcessor::processingStatus).orElse(Collections.emptyMap());
+	}
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.inventory;
+
+import io.agilehandy.eventstore.TrackingTokens;
+import lombok.extern.slf4j.Slf4j;
+import org.axonframework.common.AxonThreadFactory;
+import org.axonframework.config.EventProcessingConfiguration;
+import org.axonframework.eventhandling.EventTrackerStatus;
+import org.axonframework.eventhandling.TrackingEventProcessor;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tells when the inventory processor has projected the events up to a global
+ * position, so a query can read its own writes.
+ *
+ * Waiting queries don't hold a thread. They are parked as futures and one
+ * scheduler thread checks the processor's tokens every poll interval while
+ * any are parked, completing them once the segments claimed here make up the
+ * whole stream and all cover their position, or failing them after the timeout.
+ *
+ * Only the segments claimed by this instance are known here, so this works
+ * for a single instance of the query side. With the inventory processor's
+ * segments split across several, the claimed ones never make up the whole
+ * stream and every query asking for a position waits out its timeout; that is
+ * logged once, the first time a query times out with segments claimed elsewhere.
+ *
+ * @author Haytham Mohamed
+ **/
+@Component
+@Slf4j
+public class InventoryProgress {
+
+	private final EventProcessingConfiguration eventProcessing;
+	private final InventoryReplay replay;
+	private final long timeoutMillis;
+	private final long pollMillis;
+
+	private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean polling = new AtomicBoolean();
+	private final AtomicBoolean warnedPartial = new AtomicBoolean();
+	private final ScheduledExecutorService scheduler =
+			Executors.newSingleThreadScheduledExecutor(new AxonThreadFactory("inventory-progress"));
+
+	public InventoryProgress(EventProcessingConfiguration eventProcessing, InventoryReplay replay,
+	                         InventoryProperties properties) {
+		this.eventProcessing = eventProcessing;
+		this.replay = replay;
+		this.timeoutMillis = properties.getConsistency().getTimeout().toMillis();
+		this.pollMillis = Math.max(1L, properties.getConsistency().getPollInterval().toMillis());
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		scheduler.shutdownNow();
+	}
+
+	public CompletableFuture<Void> reached(long position) {
+		if (covers(position)) {
+			return CompletableFuture.completedFuture(null);
+		}
+		Waiter waiter = new Waiter(position, System.currentTimeMillis() + timeoutMillis);
+		waiters.add(waiter);
+		if (polling.compareAndSet(false, true)) {
+			scheduler.schedule(this::poll, pollMillis, TimeUnit.MILLISECONDS);
+		}
+		return waiter.future;
+	}
+
+	private void poll() {
+		long now = System.currentTimeMillis();
+		for (Iterator<Waiter> it = waiters.iterator(); it.hasNext(); ) {
+			Waiter waiter = it.next();
+			if (covers(waiter.position)) {
+				it.remove();
+				waiter.future.complete(null);
+			} else if (now >= waiter.deadline) {
+				it.remove();
+				warnIfPartial();
+				waiter.future.completeExceptionally(new TimeoutException(
+						"inventory has not reached position " + waiter.position + " within " + timeoutMillis + "ms"));
+			}
+		}
+		polling.set(false);
+		// a waiter parked while this run went through is picked up by the next one
+		if (!waiters.isEmpty() && polling.compareAndSet(false, true)) {
+			scheduler.schedule(this::poll, pollMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	// a subscribing processor projects events as they are stored, so it is always there
+	private boolean covers(long position) {
+		// the counts of a replay only show once it has loaded them
+		if (replay.isDeferring()) {
+			return false;
+		}
+		Optional<TrackingEventProcessor> processor =
+				eventProcessing.eventProcessor(InventoryProcessorLag.PROCESSOR, TrackingEventProcessor.class);
+		if (!processor.isPresent()) {
+			return true;
+		}
+		Collection<EventTrackerStatus> segments = processor.get().processingStatus().values();
+		return InventoryProcessorLag.spansAllSegments(segments)
+				&& segments.stream().allMatch(status -> TrackingTokens.covers(status.getTrackingToken(), position));
+	}
+
+	// still claiming only some segments a whole timeout later, the rest are claimed by another instance
+	private void warnIfPartial() {
+		Collection<EventTrackerStatus> segments = eventProcessing
+				.eventProcessor(InventoryProcessorLag.PROCESSOR, TrackingEventProcessor.class)
+				.map(processor -> processor.processingStatus().values())
+				.orElse(Collections.emptyList());
+		if (!segments.isEmpty() && !InventoryProcessorLag.spansAllSegments(segments)
+				&& warnedPartial.compareAndSet(false, true)) {
+			log.warn("the {} processor claims only {} of its segments here; inventory queries asking for "
+							+ "a position time out until a single instance claims them all",
+					InventoryProcessorLag.PROCESSOR, segments.size());
+		}
+	}
+
+	private static class Waiter {
+
+		final long position;
+		final long deadline;
+		final CompletableFuture<Void> future = new CompletableFuture<>();
+
+		Waiter(long position, long deadline) {
+			this.position = position;
+			this.deadline = deadline;
+		}
+	}
+
+}
@@ -21,23 +21,40 @@ import io.agilehandy.command.api.evt.ContainerCreated;
 import io.agilehandy.command.api.evt.ContainerOpReserved;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.axonframework.config.ProcessingGroup;
 import org.axonframework.eventhandling.EventHandler;
+import org.axonframework.eventhandling.ResetHandler;
+import org.axonframework.messaging.unitofwork.CurrentUnitOfWork;
+import org.axonframework.messaging.unitofwork.UnitOfWork;
 import org.axonframework.queryhandling.QueryHandler;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author Haytham Mohamed
  **/
 @Component
+@ProcessingGroup("inventory")
 @RequiredArgsConstructor
 @Slf4j
 public class InventoryProjection {
 
-	private final InventoryRepository repository;
+	private static final String PENDING = "inventory.pending";
 
-	// when creating a new container
+	private final InventoryStore store;
+	private final InventoryProperties properties;
+	private final InventoryUpdatePublisher updates;
+	private final InventoryProgress progress;
+	private final InventoryReplay replay;
+
+	// when creating a new container, count it towards its zone/port
 	@EventHandler
 	public void on(ContainerCreated event) {
 		log.debug("projecting {}", event);
@@ -45,46 +62,109 @@ public class InventoryProjection {
 		key.setZoneName(event.getCurrentZoneName());
 		key.setPortName(event.getCurrentPortName());
 
-		Inventory inventory = new Inventory();
-		inventory.setKey(key);
-		inventory.setAvailableContainers(1);
-		inventory.setLastUpdated(LocalDateTime.now());
-		repository.save(inventory);
+		delta(key).created();
+		handled();
 	}
 
-
-	// When reserving a container update origin zone/port available containers
+	// When reserving a container, take it from the origin zone/port and forecast it at the destination
 	@EventHandler
-	public void onOrigin(ContainerOpReserved event) {
+	public void on(ContainerOpReserved event) {
 		log.debug("projecting {}", event);
-		Inventory originInventory = repository.findById(
-				new InventoryKey(event.getOrigZoneName(), event.getOrigPortName())
-		).orElseGet(() -> null);
+		delta(new InventoryKey(event.getOrigZoneName(), event.getOrigPortName())).reserved();
+		delta(new InventoryKey(event.getDestZoneName(), event.getDestPortName())).forecast();
+		handled();
+	}
+
+	private InventoryDelta delta(InventoryKey key) {
+		return pending().computeIfAbsent(key, k -> new InventoryDelta());
+	}
+
+	// the changes of the current batch, written once the batch commits along with its token
+	private Map<InventoryKey, InventoryDelta> pending() {
+		UnitOfWork<?> batch = CurrentUnitOfWork.get().root();
+		return batch.getOrComputeResource(PENDING, name -> {
+			Map<InventoryKey, InventoryDelta> pending = new HashMap<>();
+			batch.onPrepareCommit(u -> flush(batch, pending));
+			return pending;
+		});
+	}
 
-		if (originInventory != null && originInventory.getAvailableContainers() > 0) {
-			originInventory.setAvailableContainers(originInventory.getAvailableContainers() - 1);
-			repository.save(originInventory);
+	// the counts are rebuilt from the first event, see InventoryReplay
+	@ResetHandler
+	public void reset() {
+		log.info("resetting the inventory");
+		store.clear();
+		replay.start();
+	}
+
+	private void handled() {
+		replay.handled();
+		if (!properties.isWriteBehind()) {
+			flush(CurrentUnitOfWork.get().root(), pending());
 		}
 	}
 
-	// When reserving a container update destination zone/port forecast containers
-	@EventHandler
-	public void onDest(ContainerOpReserved event) {
-		log.debug("projecting {}", event);
-		Inventory destInventory = repository.findById(
-				new InventoryKey(event.getDestZoneName(), event.getDestPortName())
-		).orElseGet(() -> null);
-		if (destInventory != null) {
-			destInventory.setForecastContainers(destInventory.getForecastContainers() + 1);
-			repository.save(destInventory);
+	// one batched write for all zone/ports touched, counted up in the store
+	private void flush(UnitOfWork<?> batch, Map<InventoryKey, InventoryDelta> pending) {
+		if (pending.isEmpty()) {
+			return;
+		}
+		LocalDateTime now = LocalDateTime.now();
+		if (replay.isDeferring()) {
+			// replayed counts are held until the replay loads them, from the batches that did commit
+			Map<InventoryKey, InventoryDelta> replayed = new HashMap<>(pending);
+			batch.afterCommit(u -> {
+				if (!replay.defer(replayed, now)) {
+					store.apply(replayed, now);
+					committed(replayed.keySet());
+				}
+			});
+		} else {
+			store.apply(pending, now);
+			// cached queries and subscribers only see the new counts once they are committed
+			Set<InventoryKey> written = new HashSet<>(pending.keySet());
+			batch.afterCommit(u -> committed(written));
+		}
+		pending.clear();
+	}
+
+	private void committed(Set<InventoryKey> keys) {
+		store.committed(keys);
+		updates.changed(keys);
+	}
+
+	// also the initial result of subscription queries, updates follow through the InventoryUpdatePublisher
+	@QueryHandler
+	public CompletableFuture<Inventory> getAvailableInventory(InventoryQuery query) {
+		InventoryKey key = new InventoryKey(query.getZoneName(), query.getPortName());
+		if (query.getAtLeastPosition() == null) {
+			return CompletableFuture.completedFuture(store.find(key));
 		}
+		// read once the projection has caught up with the events the caller has seen stored
+		return progress.reached(query.getAtLeastPosition())
+				.thenApply(reached -> store.find(key));
 	}
 
 	@QueryHandler
-	public Inventory getAvailableInventory(InventoryQuery query) {
-		return repository.findById(new InventoryKey(query.getZoneName(), query.getPortName()))
-				.orElse(null);
+	public List<Inventory> getZoneInventory(ZoneInventoryQuery query) {
+		return store.findByZone(query.getZoneName(), query.getAfterPortName(), pageSize(query.getLimit()));
 	}
 
-}
+	@QueryHandler
+	public List<Inventory> getRankedInventory(RankedInventoryQuery query) {
+		Inventory after = query.isFirstPage() ? null : new Inventory(
+				new InventoryKey(nullToEmpty(query.getAfterZoneName()), nullToEmpty(query.getAfterPortName())),
+				query.getAfterAvailableContainers(), 0, null);
+		return store.findRanked(after, pageSize(query.getLimit()));
+	}
+
+	// a cursor without names carries on below its count of available containers
+	private static String nullToEmpty(String name) {
+		return name == null ? "" : name;
+	}
 
+	private int pageSize(int limit) {
+		return Math.max(1, Math.min(limit, properties.getPaging().getMaxSize()));
+	}
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.inventory;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Tuning knobs of the inventory read model.
+ *
+ * @author Haytham Mohamed
+ **/
+@Data
+@ConfigurationProperties(prefix = "acme.inventory")
+public class InventoryProperties {
+
+	// merge the changes of a whole processing batch and write them once, instead of after every event
+	private boolean writeBehind = true;
+
+	// where the counts are kept and inventory queries are answered from
+	private Store store = Store.JPA;
+
+	private Cache cache = new Cache();
+	private Memory memory = new Memory();
+	private Updates updates = new Updates();
+	private Consistency consistency = new Consistency();
+	private Paging paging = new Paging();
+	private Replay replay = new Replay();
+
+	@Data
+	public static class Cache {
+
+		// serve repeated inventory queries from memory
+		private boolean enabled = true;
+
+		// zone/ports held before the least recently queried ones go
+		private int maxSize = 1000;
+	}
+
+	public enum Store {
+
+		// the RTI_MT table, read through the cache
+		JPA,
+
+		// primitive arrays indexed by interned zone/port ids, snapshotted to disk
+		MEMORY
+	}
+
+	@Data
+	public static class Memory {
+
+		// zone/ports the in-memory table has room for before its arrays grow
+		private int initialCapacity = 1024;
+
+		private Snapshot snapshot = new Snapshot();
+	}
+
+	@Data
+	public static class Snapshot {
+
+		// write the in-memory table to disk, so a restart picks up from there instead of the first event
+		private boolean enabled = true;
+
+		// where the snapshot is written and restored from
+		private String file = "inventory.snapshot";
+
+		// time between snapshots, a last one is taken on shutdown
+		private Duration interval = Duration.ofSeconds(30);
+	}
+
+	@Data
+	public static class Updates {
+
+		// changes to a zone/port within this window reach its subscribers as one update
+		private Duration coalesceWindow = Duration.ofMillis(10);
+	}
+
+	@Data
+	public static class Consistency {
+
+		// longest a query asking for an event position waits for the projection to get there
+		private Duration timeout = Duration.ofSeconds(5);
+
+		// how often the projection's progress is checked while queries wait on it
+		private Duration pollInterval = Duration.ofMillis(5);
+	}
+
+	@Data
+	public static class Paging {
+
+		// most inventories a zone-wide or ranked query answers with at once
+		private int maxSize = 500;
+	}
+
+	@Data
+	public static class Replay {
+
+		// keep the counts of a replay in memory and load them into RTI_MT in one pass once it has caught up
+		private boolean bulkLoad = true;
+
+		// how often a running replay checks whether the processor has caught up
+		private Duration checkInterval = Duration.ofMillis(100);
+
+		// how often a running replay logs its progress
+		private Duration progressInterval = Duration.ofSeconds(5);
+	}
+
+}
@@ -29,4 +29,11 @@ public class InventoryQuery {
 
 	String zoneName;
 	String portName;
+
+	// global event position the answer must reflect at least, null to answer right away
+	Long atLeastPosition;
+
+	public InventoryQuery(String zoneName, String portName) {
+		this(zoneName, portName, null);
+	}
 }
@@ -0,0 +1,307 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.inventory;
+
+import io.agilehandy.eventstore.TrackingTokens;
+import lombok.extern.slf4j.Slf4j;
+import org.axonframework.common.AxonThreadFactory;
+import org.axonframework.common.transaction.TransactionManager;
+import org.axonframework.config.EventProcessingConfiguration;
+import org.axonframework.eventhandling.EventTrackerStatus;
+import org.axonframework.eventhandling.ReplayToken;
+import org.axonframework.eventhandling.TrackingEventProcessor;
+import org.axonframework.eventhandling.TrackingToken;
+import org.axonframework.eventhandling.tokenstore.TokenStore;
+import org.axonframework.eventhandling.tokenstore.UnableToClaimTokenException;
+import org.axonframework.eventsourcing.eventstore.EventStore;
+import org.axonframework.springboot.EventProcessorProperties;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Replay mode of the inventory projection.
+ *
+ * While a replay runs, every committed batch is counted against rows held in
+ * memory instead of RTI_MT, the same way the upserts would count it. Once all
+ * segments of the processor have caught up, the rows are inserted in one pass
+ * and the batches after that are written one by one again. Queries asking for
+ * an event position wait for the rows to be loaded.
+ *
+ * A replay starts when the processor's tokens are reset, and on start when
+ * RTI_MT is empty, as after every restart with create-drop. A restart midway
+ * through a replay loses the rows held so far, so tokens found past the start
+ * next to an empty RTI_MT are moved back to the first event before the
+ * processor runs, rather than loading only the counts of the events after them.
+ * The in-memory store has no round trips to save, so its replays only report
+ * their progress.
+ *
+ * The rows are only loaded once the segments replayed here make up the whole
+ * stream. With the processor's segments split across several instances, each
+ * holds rows for part of the stream only and none ever finishes; replays of
+ * the inventory are meant for a single instance.
+ *
+ * @author Haytham Mohamed
+ **/
+@Component
+@ManagedResource(objectName = "io.agilehandy:type=InventoryReplay")
+@Slf4j
+public class InventoryReplay {
+
+	private final InventoryRepository repository;
+	private final InventoryStore store;
+	private final InventoryUpdatePublisher updates;
+	private final EventProcessingConfiguration eventProcessing;
+	private final EventProcessorProperties processors;
+	private final EventStore eventStore;
+	private final TokenStore tokenStore;
+	private final TransactionManager transactionManager;
+	private final boolean bulkLoad;
+	private final long checkMillis;
+	private final long progressMillis;
+
+	// the zone/ports counted so far, guarded by itself
+	private final Map<InventoryKey, Inventory> rows = new HashMap<>();
+	private volatile boolean replaying;
+
+	private final LongAdder events = new LongAdder();
+	private volatile long startedAt;
+	private volatile long lastProgressAt;
+	private volatile long targetPosition;
+	private volatile double eventsPerSecond;
+
+	private final ScheduledExecutorService scheduler =
+			Executors.newSingleThreadScheduledExecutor(new AxonThreadFactory("inventory-replay"));
+	private ScheduledFuture<?> check;
+
+	public InventoryReplay(InventoryRepository repository, InventoryStore store, InventoryUpdatePublisher updates,
+	                       EventProcessingConfiguration eventProcessing, EventProcessorProperties processors,
+	                       EventStore eventStore, TokenStore tokenStore, TransactionManager transactionManager,
+	                       InventoryProperties properties) {
+		this.repository = repository;
+		this.store = store;
+		this.updates = updates;
+		this.eventProcessing = eventProcessing;
+		this.processors = processors;
+		this.eventStore = eventStore;
+		this.tokenStore = tokenStore;
+		this.transactionManager = transactionManager;
+		this.bulkLoad = properties.getReplay().isBulkLoad() && properties.getStore() == InventoryProperties.Store.JPA;
+		this.checkMillis = properties.getReplay().getCheckInterval().toMillis();
+		this.progressMillis = properties.getReplay().getProgressInterval().toMillis();
+	}
+
+	// a tracking processor finding no rows rebuilds them all, which is a replay as well
+	@PostConstruct
+	public void startIfEmpty() {
+		EventProcessorProperties.ProcessorSettings settings = processors.getProcessors().get(InventoryProcessorLag.PROCESSOR);
+		if (bulkLoad && settings != null && settings.getMode() == EventProcessorProperties.Mode.TRACKING
+				&& repository.count() == 0) {
+			restartTokens();
+			start();
+		}
+	}
+
+	// tokens of a replay that stopped midway, as with a persistent token store, would load only the rest of the counts
+	private void restartTokens() {
+		String processor = InventoryProcessorLag.PROCESSOR;
+		int[] segments = tokenStore.fetchSegments(processor);
+		try {
+			int restarted = transactionManager.fetchInTransaction(() -> {
+				int past = 0;
+				for (int segment : segments) {
+					if (tokenStore.fetchToken(processor, segment) != null) {
+						tokenStore.storeToken(null, processor, segment);
+						past++;
+					}
+					tokenStore.releaseClaim(processor, segment);
+				}
+				return past;
+			});
+			if (restarted > 0) {
+				log.warn("RTI_MT is empty but {} of {} {} segments were past the first event, replaying them from it",
+						restarted, segments.length, processor);
+			}
+		} catch (UnableToClaimTokenException e) {
+			log.warn("could not move the {} tokens back to the first event, another instance holds them", processor, e);
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		scheduler.shutdown();
+	}
+
+	public void start() {
+		synchronized (rows) {
+			if (replaying) {
+				return;
+			}
+			rows.clear();
+			events.reset();
+			startedAt = System.currentTimeMillis();
+			lastProgressAt = startedAt;
+			targetPosition = -1L;
+			replaying = true;
+			check = scheduler.scheduleWithFixedDelay(this::check, checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+		}
+		log.info("replaying the inventory{}", bulkLoad ? ", loading RTI_MT once caught up" : "");
+	}
+
+	// every event handled by the projection
+	void handled() {
+		if (replaying) {
+			events.increment();
+		}
+	}
+
+	// whether committed batches are to be handed to defer instead of the store
+	boolean isDeferring() {
+		return bulkLoad && replaying;
+	}
+
+	// counts a committed batch towards the rows of the replay, false once the rows have been loaded
+	boolean defer(Map<InventoryKey, InventoryDelta> changes, LocalDateTime lastUpdated) {
+		synchronized (rows) {
+			if (!isDeferring()) {
+				return false;
+			}
+			changes.forEach((key, delta) -> {
+				Inventory row = rows.get(key);
+				if (row == null) {
+					if (!delta.createsRow()) {
+						return;
+					}
+					row = new Inventory(key, 0, 0, lastUpdated);
+					rows.put(key, row);
+				}
+				row.setAvailableContainers(Math.max(row.getAvailableContainers() + delta.getAvailable(), 0));
+				row.setForecastContainers(row.getForecastContainers() + delta.getForecast());
+				row.setLastUpdated(lastUpdated);
+			});
+			return true;
+		}
+	}
+
+	private void check() {
+		try {
+			Map<Integer, EventTrackerStatus> status = eventProcessing
+					.eventProcessor(InventoryProcessorLag.PROCESSOR, TrackingEventProcessor.class)
+					.map(TrackingEventProcessor::processingStatus)
+					.orElse(Collections.emptyMap());
+			long now = System.currentTimeMillis();
+			eventsPerSecond = events.sum() * 1000d / Math.max(now - startedAt, 1L);
+			// the replay is only over once every part of the stream has been replayed, not just the segments seen here
+			if (InventoryProcessorLag.spansAllSegments(status.values())
+					&& status.values().stream().allMatch(InventoryReplay::replayed)) {
+				finish(now);
+			} else if (now - lastProgressAt >= progressMillis) {
+				lastProgressAt = now;
+				if (targetPosition < 0) {
+					targetPosition = TrackingTokens.position(eventStore.createHeadToken());
+				}
+				log.info("replaying the inventory: {} events handled, {} of {} events read, {} events/s",
+						events.sum(), getPosition(status), targetPosition, Math.round(eventsPerSecond));
+				if (!status.isEmpty() && !InventoryProcessorLag.spansAllSegments(status.values())) {
+					log.warn("only {} segments are replayed here, the replay finishes once this instance claims them all",
+							status.size());
+				}
+			}
+		} catch (RuntimeException e) {
+			// a failed load is tried again on the next check
+			log.warn("could not complete the inventory replay", e);
+		}
+	}
+
+	private void finish(long now) {
+		long loadStart = System.currentTimeMillis();
+		Set<InventoryKey> loaded;
+		synchronized (rows) {
+			Collection<Inventory> inventories = rows.values();
+			if (bulkLoad && !inventories.isEmpty()) {
+				transactionManager.executeInTransaction(() -> repository.insertAll(inventories));
+			}
+			loaded = new HashSet<>(rows.keySet());
+			rows.clear();
+			replaying = false;
+			check.cancel(false);
+		}
+		store.committed(loaded);
+		updates.changed(loaded);
+		log.info("replayed the inventory: {} events in {} ms, {} events/s, {} zone/ports loaded in {} ms",
+				events.sum(), now - startedAt, Math.round(eventsPerSecond),
+				loaded.size(), System.currentTimeMillis() - loadStart);
+	}
+
+	// a replay token only gives way to the next event after the reset, which may be a while
+	private static boolean replayed(EventTrackerStatus status) {
+		if (!status.isCaughtUp()) {
+			return false;
+		}
+		TrackingToken token = status.getTrackingToken();
+		if (!(token instanceof ReplayToken)) {
+			return true;
+		}
+		ReplayToken replay = (ReplayToken) token;
+		return TrackingTokens.position(replay.getCurrentToken()) >= TrackingTokens.position(replay.getTokenAtReset());
+	}
+
+	private static long getPosition(Map<Integer, EventTrackerStatus> status) {
+		return status.values().stream()
+				.mapToLong(s -> TrackingTokens.position(s.getTrackingToken()))
+				.min().orElse(-1L);
+	}
+
+	@ManagedAttribute
+	public boolean isReplaying() {
+		return replaying;
+	}
+
+	@ManagedAttribute
+	public long getReplayedEvents() {
+		return events.sum();
+	}
+
+	@ManagedAttribute
+	public double getEventsPerSecond() {
+		return eventsPerSecond;
+	}
+
+	@ManagedAttribute
+	public long getHeldZonePorts() {
+		synchronized (rows) {
+			return rows.size();
+		}
+	}
+
+}
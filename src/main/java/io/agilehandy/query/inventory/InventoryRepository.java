@@ -17,10 +17,37 @@
 
 package io.agilehandy.query.inventory;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
 
 /**
  * @author Haytham Mohamed
  **/
-public interface InventoryRepository extends CrudRepository<Inventory, InventoryKey> {
+public interface InventoryRepository extends CrudRepository<Inventory, InventoryKey>, InventoryRepositoryCustom {
+
+	// the primary key leads with the port name, so these go through rti_mt_zone
+	@Query("select i from Inventory i where i.key.zoneName = :zoneName and i.key.portName > :afterPortName "
+			+ "order by i.key.portName")
+	List<Inventory> findZonePage(@Param("zoneName") String zoneName,
+	                             @Param("afterPortName") String afterPortName,
+	                             Pageable page);
+
+	// every column in the same direction, or the database sorts instead of walking rti_mt_ranked
+	@Query("select i from Inventory i "
+			+ "order by i.availableContainers desc, i.key.zoneName desc, i.key.portName desc")
+	List<Inventory> findRankedPage(Pageable page);
+
+	@Query("select i from Inventory i where i.availableContainers < :available "
+			+ "or (i.availableContainers = :available and (i.key.zoneName < :zoneName "
+			+ "or (i.key.zoneName = :zoneName and i.key.portName < :portName))) "
+			+ "order by i.availableContainers desc, i.key.zoneName desc, i.key.portName desc")
+	List<Inventory> findRankedPageAfter(@Param("available") int available,
+	                                    @Param("zoneName") String zoneName,
+	                                    @Param("portName") String portName,
+	                                    Pageable page);
+
 }
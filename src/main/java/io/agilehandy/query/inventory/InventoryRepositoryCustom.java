@@ -0,0 +1,41 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.inventory;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Counter updates done in the database, so concurrent writers of the same
+ * zone/port never overwrite each other.
+ *
+ * @author Haytham Mohamed
+ **/
+public interface InventoryRepositoryCustom {
+
+	// adds the deltas to the counts in place, creating the rows of zone/ports that see their first container
+	void applyDeltas(Map<InventoryKey, InventoryDelta> deltas, LocalDateTime lastUpdated);
+
+	// inserts the rows as they are, in batches, into a table that has none of them yet
+	void insertAll(Collection<Inventory> inventories);
+
+	// empties the table in one statement
+	void deleteAllRows();
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.inventory;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies inventory deltas as batched {@code MERGE} and {@code UPDATE ... SET x = x + ?}
+ * statements on the RTI_MT table, running in the caller's transaction.
+ *
+ * A delta that creates no containers is dropped for a zone/port without a
+ * row. Its update finds no data, which the database reports as a warning on
+ * the connection; that one warning is cleared, any other is left for the
+ * transaction to log.
+ *
+ * @author Haytham Mohamed
+ **/
+@Slf4j
+class InventoryRepositoryCustomImpl implements InventoryRepositoryCustom {
+
+	private static final String UPSERT =
+			"merge into rti_mt t"
+			+ " using (values (cast(? as varchar(255)), cast(? as varchar(255)))) as d (zone_name, port_name)"
+			+ " on t.zone_name = d.zone_name and t.port_name = d.port_name"
+			+ " when matched then update set"
+			+ " t.available_containers = greatest(t.available_containers + ?, 0),"
+			+ " t.forecast_containers = t.forecast_containers + ?,"
+			+ " t.last_updated = ?"
+			+ " when not matched then insert"
+			+ " (zone_name, port_name, available_containers, forecast_containers, last_updated)"
+			+ " values (d.zone_name, d.port_name, greatest(?, 0), ?, ?)";
+
+	private static final String UPDATE =
+			"update rti_mt set"
+			+ " available_containers = greatest(available_containers + ?, 0),"
+			+ " forecast_containers = forecast_containers + ?,"
+			+ " last_updated = ?"
+			+ " where zone_name = ? and port_name = ?";
+
+	private static final String INSERT =
+			"insert into rti_mt (zone_name, port_name, available_containers, forecast_containers, last_updated)"
+			+ " values (?, ?, ?, ?, ?)";
+
+	// rows are always locked in the same order, so concurrent batches can't deadlock on each other
+	// the SQLSTATE of an update that matched no rows
+	private static final String NO_DATA = "02000";
+
+	private static final Comparator<InventoryKey> LOCK_ORDER =
+			Comparator.comparing(InventoryKey::getZoneName).thenComparing(InventoryKey::getPortName);
+
+	private final JdbcTemplate jdbcTemplate;
+
+	InventoryRepositoryCustomImpl(JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	@Override
+	public void applyDeltas(Map<InventoryKey, InventoryDelta> deltas, LocalDateTime lastUpdated) {
+		Timestamp timestamp = Timestamp.valueOf(lastUpdated);
+		List<Map.Entry<InventoryKey, InventoryDelta>> ordered = new ArrayList<>(deltas.entrySet());
+		ordered.sort(Map.Entry.comparingByKey(LOCK_ORDER));
+
+		// every row in key order, each run of keys taking the same statement sent as one JDBC batch
+		String statement = null;
+		List<Object[]> run = new ArrayList<>();
+		for (Map.Entry<InventoryKey, InventoryDelta> entry : ordered) {
+			InventoryKey key = entry.getKey();
+			InventoryDelta delta = entry.getValue();
+			// a zone/port without containers created yet has no row to count against
+			String next = delta.createsRow() ? UPSERT : UPDATE;
+			if (!next.equals(statement)) {
+				flush(statement, run);
+				statement = next;
+			}
+			if (delta.createsRow()) {
+				run.add(new Object[] {key.getZoneName(), key.getPortName(),
+						delta.getAvailable(), delta.getForecast(), timestamp,
+						delta.getAvailable(), delta.getForecast(), timestamp});
+			} else {
+				run.add(new Object[] {delta.getAvailable(), delta.getForecast(), timestamp,
+						key.getZoneName(), key.getPortName()});
+			}
+		}
+		flush(statement, run);
+	}
+
+	private void flush(String statement, List<Object[]> run) {
+		if (run.isEmpty()) {
+			return;
+		}
+		int[] counts = jdbcTemplate.batchUpdate(statement, run);
+		if (UPDATE.equals(statement)) {
+			int missing = (int) Arrays.stream(counts).filter(count -> count == 0).count();
+			if (missing > 0) {
+				log.debug("dropped the deltas of {} zone/ports without containers", missing);
+				jdbcTemplate.execute((ConnectionCallback<Void>) InventoryRepositoryCustomImpl::clearNoData);
+			}
+		}
+		run.clear();
+	}
+
+	// clears the warnings of the connection only when all of them are the expected no data ones
+	private static Void clearNoData(Connection connection) throws SQLException {
+		for (SQLWarning warning = connection.getWarnings(); warning != null; warning = warning.getNextWarning()) {
+			if (!NO_DATA.equals(warning.getSQLState())) {
+				return null;
+			}
+		}
+		connection.clearWarnings();
+		return null;
+	}
+
+	@Override
+	public void insertAll(Collection<Inventory> inventories) {
+		List<Object[]> rows = new ArrayList<>(inventories.size());
+		for (Inventory inventory : inventories) {
+			rows.add(new Object[] {inventory.getKey().getZoneName(), inventory.getKey().getPortName(),
+					inventory.getAvailableContainers(), inventory.getForecastContainers(),
+					Timestamp.valueOf(inventory.getLastUpdated())});
+		}
+		jdbcTemplate.batchUpdate(INSERT, rows);
+	}
+
+	@Override
+	public void deleteAllRows() {
+		jdbcTemplate.update("delete from rti_mt");
+	}
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.inventory;
+
+import io.agilehandy.command.api.evt.ContainerCreated;
+import io.agilehandy.command.api.evt.ContainerOpReserved;
+import org.axonframework.eventhandling.EventMessage;
+import org.axonframework.eventhandling.async.SequencingPolicy;
+import org.axonframework.eventhandling.async.SequentialPerAggregatePolicy;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the inventory events of a zone/port in order on one segment.
+ *
+ * A created container counts towards its zone/port and a reservation is
+ * taken from its origin, so those are the keys events are sequenced on.
+ * The forecast at the destination is bumped in place and needs no order.
+ *
+ * @author Haytham Mohamed
+ **/
+@Component("inventorySequencingPolicy")
+public class InventorySequencingPolicy implements SequencingPolicy<EventMessage<?>> {
+
+	private final SequentialPerAggregatePolicy fallback = SequentialPerAggregatePolicy.instance();
+
+	@Override
+	public Object getSequenceIdentifierFor(EventMessage<?> event) {
+		Object payload = event.getPayload();
+		if (payload instanceof ContainerCreated) {
+			ContainerCreated created = (ContainerCreated) payload;
+			return key(created.getCurrentZoneName(), created.getCurrentPortName(), event);
+		}
+		if (payload instanceof ContainerOpReserved) {
+			ContainerOpReserved reserved = (ContainerOpReserved) payload;
+			return key(reserved.getOrigZoneName(), reserved.getOrigPortName(), event);
+		}
+		return fallback.getSequenceIdentifierFor(event);
+	}
+
+	private Object key(String zoneName, String portName, EventMessage<?> event) {
+		if (zoneName == null || portName == null) {
+			return fallback.getSequenceIdentifierFor(event);
+		}
+		return new InventoryKey(zoneName, portName);
+	}
+
+}
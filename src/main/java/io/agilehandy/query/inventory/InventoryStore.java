@@ -0,0 +1,52 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.inventory;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Where the inventory read model keeps its counts and answers
+ * {@link InventoryQuery}s from: the RTI_MT table or an in-memory table.
+ *
+ * @author Haytham Mohamed
+ **/
+public interface InventoryStore {
+
+	// counts the changes of a processing batch towards their zone/ports, called as the batch prepares to commit
+	void apply(Map<InventoryKey, InventoryDelta> deltas, LocalDateTime lastUpdated);
+
+	// drops every count, ahead of a replay of all events
+	void clear();
+
+	// the changes of these zone/ports have been committed
+	default void committed(Collection<InventoryKey> keys) {
+	}
+
+	// the inventory of a zone/port, or null before its first container is created
+	Inventory find(InventoryKey key);
+
+	// up to limit inventories of a zone by port name, after the given port or from the first one when null
+	List<Inventory> findByZone(String zoneName, String afterPortName, int limit);
+
+	// up to limit inventories by most available containers, ranked after the given one or from the top when null
+	List<Inventory> findRanked(Inventory after, int limit);
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.inventory;
+
+import lombok.extern.slf4j.Slf4j;
+import org.axonframework.common.AxonThreadFactory;
+import org.axonframework.messaging.Message;
+import org.axonframework.queryhandling.QueryUpdateEmitter;
+import org.axonframework.queryhandling.SimpleQueryUpdateEmitter;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Pushes the inventory of changed zone/ports to the subscription queries on
+ * them.
+ *
+ * The projection reports the zone/ports it wrote once their batch has
+ * committed. Reports arriving within the coalescing window are merged per
+ * zone/port, so a burst of batches results in one update carrying the
+ * latest counts, and zone/ports nobody subscribed to are never read.
+ *
+ * @author Haytham Mohamed
+ **/
+@Component
+@Slf4j
+public class InventoryUpdatePublisher {
+
+	private final QueryUpdateEmitter emitter;
+	private final InventoryStore store;
+	private final long windowMillis;
+
+	private final Set<InventoryKey> changed = ConcurrentHashMap.newKeySet();
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+	private final ScheduledExecutorService scheduler =
+			Executors.newSingleThreadScheduledExecutor(new AxonThreadFactory("inventory-updates"));
+
+	public InventoryUpdatePublisher(QueryUpdateEmitter emitter, InventoryStore store,
+	                                InventoryProperties properties) {
+		this.emitter = emitter;
+		this.store = store;
+		this.windowMillis = properties.getUpdates().getCoalesceWindow().toMillis();
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		scheduler.shutdown();
+	}
+
+	public void changed(Collection<InventoryKey> keys) {
+		changed.addAll(keys);
+		if (scheduled.compareAndSet(false, true)) {
+			scheduler.schedule(this::publish, windowMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private void publish() {
+		// changes reported from here on are picked up by this run or the next one
+		scheduled.set(false);
+		Set<InventoryKey> subscribed = subscribedKeys();
+		for (Iterator<InventoryKey> it = changed.iterator(); it.hasNext(); ) {
+			InventoryKey key = it.next();
+			it.remove();
+			if (subscribed != null && !subscribed.contains(key)) {
+				continue;
+			}
+			try {
+				Inventory inventory = store.find(key);
+				if (inventory != null) {
+					emitter.emit(InventoryQuery.class, query -> key.equals(keyOf(query)), inventory);
+				}
+			} catch (RuntimeException e) {
+				log.warn("could not push the inventory of {}", key, e);
+			}
+		}
+	}
+
+	// the zone/ports with a subscription, or null when the emitter can't tell
+	private Set<InventoryKey> subscribedKeys() {
+		if (!(emitter instanceof SimpleQueryUpdateEmitter)) {
+			return null;
+		}
+		return ((SimpleQueryUpdateEmitter) emitter).activeSubscriptions().stream()
+				.map(Message::getPayload)
+				.filter(InventoryQuery.class::isInstance)
+				.map(query -> keyOf((InventoryQuery) query))
+				.collect(Collectors.toSet());
+	}
+
+	private static InventoryKey keyOf(InventoryQuery query) {
+		return new InventoryKey(query.getZoneName(), query.getPortName());
+	}
+
+}
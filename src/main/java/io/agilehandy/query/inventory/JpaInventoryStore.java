@@ -0,0 +1,79 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.inventory;
+
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The counts kept in the RTI_MT table, read through the {@link InventoryCache}.
+ *
+ * @author Haytham Mohamed
+ **/
+class JpaInventoryStore implements InventoryStore {
+
+	private final InventoryRepository repository;
+	private final InventoryCache cache;
+
+	JpaInventoryStore(InventoryRepository repository, InventoryCache cache) {
+		this.repository = repository;
+		this.cache = cache;
+	}
+
+	@Override
+	public void apply(Map<InventoryKey, InventoryDelta> deltas, LocalDateTime lastUpdated) {
+		repository.applyDeltas(deltas, lastUpdated);
+	}
+
+	@Override
+	public void clear() {
+		repository.deleteAllRows();
+		cache.clear();
+	}
+
+	// cached queries only see the new counts once they are committed
+	@Override
+	public void committed(Collection<InventoryKey> keys) {
+		cache.invalidate(keys);
+	}
+
+	@Override
+	public Inventory find(InventoryKey key) {
+		return cache.get(key, repository::findById);
+	}
+
+	// pages go to the database uncached, they change with every count in them
+	@Override
+	public List<Inventory> findByZone(String zoneName, String afterPortName, int limit) {
+		return repository.findZonePage(zoneName, afterPortName == null ? "" : afterPortName, PageRequest.of(0, limit));
+	}
+
+	@Override
+	public List<Inventory> findRanked(Inventory after, int limit) {
+		if (after == null) {
+			return repository.findRankedPage(PageRequest.of(0, limit));
+		}
+		return repository.findRankedPageAfter(after.getAvailableContainers(),
+				after.getKey().getZoneName(), after.getKey().getPortName(), PageRequest.of(0, limit));
+	}
+
+}
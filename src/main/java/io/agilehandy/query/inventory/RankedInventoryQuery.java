@@ -0,0 +1,53 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.inventory;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+/**
+ * A page of the inventories across all zone/ports with the most available
+ * containers first, ties broken by zone and port name in descending order.
+ *
+ * @author Haytham Mohamed
+ **/
+@Value
+@AllArgsConstructor
+public class RankedInventoryQuery {
+
+	// where the previous page ended, all null for the first page
+	Integer afterAvailableContainers;
+	String afterZoneName;
+	String afterPortName;
+
+	int limit;
+
+	public RankedInventoryQuery(int limit) {
+		this(null, null, null, limit);
+	}
+
+	// the page following one that ended with this inventory
+	public RankedInventoryQuery next(Inventory last) {
+		return new RankedInventoryQuery(last.getAvailableContainers(),
+				last.getKey().getZoneName(), last.getKey().getPortName(), limit);
+	}
+
+	boolean isFirstPage() {
+		return afterAvailableContainers == null;
+	}
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.inventory;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+/**
+ * A page of the inventories of every port in a zone, ordered by port name.
+ *
+ * @author Haytham Mohamed
+ **/
+@Value
+@AllArgsConstructor
+public class ZoneInventoryQuery {
+
+	String zoneName;
+
+	// port name the previous page ended with, null for the first page
+	String afterPortName;
+
+	int limit;
+
+	public ZoneInventoryQuery(String zoneName, int limit) {
+		this(zoneName, null, limit);
+	}
+
+	// the page following one that ended with this inventory
+	public ZoneInventoryQuery next(Inventory last) {
+		return new ZoneInventoryQuery(zoneName, last.getKey().getPortName(), limit);
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.movement;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One step of a container on its way, as streamed to the yard and vessel
+ * dashboards. The zone/port is where the container is at that step, the
+ * destination where it is headed once reserved.
+ *
+ * @author Haytham Mohamed
+ **/
+@Value
+@AllArgsConstructor
+public class ContainerMovement {
+
+	public enum Type {
+		RESERVED,
+		LOADED,
+		OFF_LOADED,
+		RELEASED,
+		BOARDED,
+		DEPARTED,
+		ARRIVED
+	}
+
+	UUID id;
+	Type type;
+	String zoneName;
+	String portName;
+	String destZoneName;
+	String destPortName;
+	LocalDateTime timestamp;
+
+	// whether the container is at or headed to the zone, and the port when one is given
+	public boolean concerns(String zoneName, String portName) {
+		return at(this.zoneName, this.portName, zoneName, portName)
+				|| at(destZoneName, destPortName, zoneName, portName);
+	}
+
+	private static boolean at(String zoneName, String portName, String filterZoneName, String filterPortName) {
+		return filterZoneName.equals(zoneName) && (filterPortName == null || filterPortName.equals(portName));
+	}
+
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.movement;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.axonframework.common.AxonThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands the container movements out to the open streams.
+ *
+ * Publishing renders a movement once and adds it to the buffer of each
+ * subscriber that wants it, found through an index by zone, so the
+ * processor never waits on a client. Writing to the clients is left to a
+ * few sender threads; an open stream between movements holds no thread at
+ * all, which is what lets thousands of them stay open. A client that stops
+ * reading is evicted once a write to it outlasts the write timeout, see
+ * {@link MovementSender}.
+ *
+ * @author Haytham Mohamed
+ **/
+@Component
+@Slf4j
+public class ContainerMovementBroker {
+
+	private final ObjectMapper objectMapper;
+	private final ContainerMovementProperties properties;
+
+	// subscribers to every movement, and the others by the zone they follow
+	private final Set<MovementSubscriber> everywhere = ConcurrentHashMap.newKeySet();
+	private final Map<String, Set<MovementSubscriber>> byZone = new ConcurrentHashMap<>();
+	private final AtomicInteger subscribers = new AtomicInteger();
+	private final Counter dropped;
+
+	private final MovementSender sender;
+	private final ScheduledExecutorService heartbeats =
+			Executors.newSingleThreadScheduledExecutor(new AxonThreadFactory("container-movements-heartbeat"));
+
+	public ContainerMovementBroker(ObjectMapper objectMapper, ContainerMovementProperties properties,
+	                               MeterRegistry registry) {
+		this.objectMapper = objectMapper;
+		this.properties = properties;
+		this.sender = new MovementSender(properties.getSenderThreads(), properties.getWriteTimeout(),
+				registry.counter("acme.movements.evicted"));
+		this.dropped = registry.counter("acme.movements.dropped");
+		registry.gauge("acme.movements.subscribers", subscribers);
+		long heartbeat = properties.getHeartbeat().toMillis();
+		heartbeats.scheduleWithFixedDelay(this::heartbeat, heartbeat, heartbeat, TimeUnit.MILLISECONDS);
+		// a stalled write is noticed within half the write timeout past it
+		long check = Math.max(1L, properties.getWriteTimeout().toMillis() / 2);
+		heartbeats.scheduleWithFixedDelay(this::checkWrites, check, check, TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		heartbeats.shutdown();
+		sender.shutdown();
+		everywhere.forEach(subscriber -> subscriber.getEmitter().complete());
+		byZone.values().forEach(zone -> zone.forEach(subscriber -> subscriber.getEmitter().complete()));
+	}
+
+	// a stream of the movements at or headed to the zone/port, null when there are as many streams as allowed
+	public SseEmitter subscribe(String zoneName, String portName) {
+		return subscribe(new SseEmitter(properties.getTimeout().toMillis()), zoneName, portName);
+	}
+
+	SseEmitter subscribe(SseEmitter emitter, String zoneName, String portName) {
+		if (subscribers.incrementAndGet() > properties.getMaxSubscribers()) {
+			subscribers.decrementAndGet();
+			return null;
+		}
+		MovementSubscriber subscriber = new MovementSubscriber(emitter, zoneName, portName,
+				properties.getBufferSize(), properties.getOverflow(), sender, this::unsubscribe);
+		emitter.onCompletion(subscriber::close);
+		emitter.onTimeout(subscriber::close);
+		emitter.onError(e -> subscriber.close());
+		subscribers(zoneName).add(subscriber);
+		return emitter;
+	}
+
+	private void unsubscribe(MovementSubscriber subscriber) {
+		if (subscribers(subscriber.getZoneName()).remove(subscriber)) {
+			subscribers.decrementAndGet();
+		}
+	}
+
+	private Set<MovementSubscriber> subscribers(String zoneName) {
+		return zoneName == null ? everywhere : byZone.computeIfAbsent(zoneName, z -> ConcurrentHashMap.newKeySet());
+	}
+
+	public int getSubscriberCount() {
+		return subscribers.get();
+	}
+
+	public void publish(ContainerMovement movement) {
+		if (subscribers.get() == 0) {
+			return;
+		}
+		MovementSubscriber.Frame frame = new MovementSubscriber.Frame(movement.getId(), movement.getType().name(),
+				json(movement));
+		offer(everywhere, movement, frame);
+		if (movement.getZoneName() != null) {
+			offer(byZone.get(movement.getZoneName()), movement, frame);
+		}
+		if (movement.getDestZoneName() != null && !movement.getDestZoneName().equals(movement.getZoneName())) {
+			offer(byZone.get(movement.getDestZoneName()), movement, frame);
+		}
+	}
+
+	private void offer(Collection<MovementSubscriber> candidates, ContainerMovement movement,
+	                   MovementSubscriber.Frame frame) {
+		if (candidates == null) {
+			return;
+		}
+		int lost = 0;
+		for (MovementSubscriber subscriber : candidates) {
+			if (subscriber.wants(movement)) {
+				lost += subscriber.offer(frame);
+			}
+		}
+		if (lost > 0) {
+			dropped.increment(lost);
+		}
+	}
+
+	private String json(ContainerMovement movement) {
+		try {
+			return objectMapper.writeValueAsString(movement);
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException("could not render " + movement, e);
+		}
+	}
+
+	private void checkWrites() {
+		try {
+			sender.check();
+		} catch (RuntimeException e) {
+			log.warn("could not check the movement stream writes", e);
+		}
+	}
+
+	private void heartbeat() {
+		try {
+			everywhere.forEach(MovementSubscriber::heartbeat);
+			byZone.values().forEach(zone -> zone.forEach(MovementSubscriber::heartbeat));
+		} catch (RuntimeException e) {
+			log.warn("could not send the movement stream heartbeats", e);
+		}
+	}
+
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.movement;
+
+import org.axonframework.config.EventProcessingConfigurer;
+import org.axonframework.eventhandling.tokenstore.inmemory.InMemoryTokenStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Wiring of the container movement stream.
+ *
+ * @author Haytham Mohamed
+ **/
+@Configuration
+@EnableConfigurationProperties(ContainerMovementProperties.class)
+public class ContainerMovementConfig {
+
+	// a live feed has nobody to replay history to, so its processor keeps its token in memory and starts at the head
+	@Autowired
+	public void registerHeadTokenStore(EventProcessingConfigurer eventProcessing) {
+		eventProcessing.registerTokenStore(ContainerMovementProjection.PROCESSOR, c -> {
+			InMemoryTokenStore tokens = new InMemoryTokenStore();
+			tokens.initializeTokenSegments(ContainerMovementProjection.PROCESSOR, 1, c.eventStore().createHeadToken());
+			return tokens;
+		});
+	}
+
+}
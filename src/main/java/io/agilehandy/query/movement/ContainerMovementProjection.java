@@ -0,0 +1,174 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.movement;
+
+import io.agilehandy.command.api.evt.ContainerCreated;
+import io.agilehandy.command.api.evt.ContainerOpLoaded;
+import io.agilehandy.command.api.evt.ContainerOpOffLoaded;
+import io.agilehandy.command.api.evt.ContainerOpReleased;
+import io.agilehandy.command.api.evt.ContainerOpReserved;
+import io.agilehandy.command.api.evt.ContainerTransArrived;
+import io.agilehandy.command.api.evt.ContainerTransBoarded;
+import io.agilehandy.command.api.evt.ContainerTransDeparted;
+import io.agilehandy.query.container.ContainerStatus;
+import io.agilehandy.query.container.ContainerStatusRepository;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.axonframework.config.ProcessingGroup;
+import org.axonframework.eventhandling.EventHandler;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Turns the container events into movements for the live stream.
+ *
+ * Most events only carry the container id, so the processor remembers
+ * where the containers it has seen most recently are and are headed, up to
+ * a maximum count. It starts at the newest event on every start, see
+ * {@link ContainerMovementConfig}; a container not seen since, or forgotten
+ * to make room, is looked up once in the container status read model.
+ *
+ * @author Haytham Mohamed
+ **/
+@Component
+@ProcessingGroup(ContainerMovementProjection.PROCESSOR)
+@Slf4j
+public class ContainerMovementProjection {
+
+	public static final String PROCESSOR = "container-movements";
+
+	private static final Location UNKNOWN = new Location(null, null, null, null);
+
+	private final ContainerMovementBroker broker;
+	private final ContainerStatusRepository statuses;
+
+	// the containers seen most recently, the one untouched longest goes first; guarded by itself
+	private final Map<UUID, Location> locations;
+
+	public ContainerMovementProjection(ContainerMovementBroker broker, ContainerStatusRepository statuses,
+	                                   ContainerMovementProperties properties) {
+		this.broker = broker;
+		this.statuses = statuses;
+		int maxLocations = properties.getMaxLocations();
+		this.locations = new LinkedHashMap<UUID, Location>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<UUID, Location> eldest) {
+				return size() > maxLocations;
+			}
+		};
+	}
+
+	@EventHandler
+	public void on(ContainerCreated event) {
+		remember(event.getId(), new Location(event.getCurrentZoneName(), event.getCurrentPortName(), null, null));
+	}
+
+	@EventHandler
+	public void on(ContainerOpReserved event) {
+		Location at = locate(event.getId());
+		Location reserved = event.getOrigZoneName() == null
+				? new Location(at.zoneName, at.portName, event.getDestZoneName(), event.getDestPortName())
+				: new Location(event.getOrigZoneName(), event.getOrigPortName(),
+						event.getDestZoneName(), event.getDestPortName());
+		remember(event.getId(), reserved);
+		publish(event.getId(), ContainerMovement.Type.RESERVED, reserved, event.getTimestamp());
+	}
+
+	@EventHandler
+	public void on(ContainerOpLoaded event) {
+		publish(event.getId(), ContainerMovement.Type.LOADED, locate(event.getId()), event.getTimestamp());
+	}
+
+	@EventHandler
+	public void on(ContainerOpOffLoaded event) {
+		publish(event.getId(), ContainerMovement.Type.OFF_LOADED, locate(event.getId()), event.getTimestamp());
+	}
+
+	@EventHandler
+	public void on(ContainerOpReleased event) {
+		publish(event.getId(), ContainerMovement.Type.RELEASED, locate(event.getId()), event.getTimestamp());
+	}
+
+	@EventHandler
+	public void on(ContainerTransBoarded event) {
+		publish(event.getId(), ContainerMovement.Type.BOARDED, locate(event.getId()), event.getTimestamp());
+	}
+
+	@EventHandler
+	public void on(ContainerTransDeparted event) {
+		publish(event.getId(), ContainerMovement.Type.DEPARTED, locate(event.getId()), event.getTimestamp());
+	}
+
+	// now at its destination
+	@EventHandler
+	public void on(ContainerTransArrived event) {
+		Location at = locate(event.getId());
+		Location arrived = at.destZoneName == null ? at : new Location(at.destZoneName, at.destPortName, null, null);
+		if (arrived != UNKNOWN) {
+			remember(event.getId(), arrived);
+		}
+		publish(event.getId(), ContainerMovement.Type.ARRIVED, arrived, event.getTimestamp());
+	}
+
+	private void publish(UUID id, ContainerMovement.Type type, Location at, LocalDateTime timestamp) {
+		broker.publish(new ContainerMovement(id, type, at.zoneName, at.portName,
+				at.destZoneName, at.destPortName, timestamp));
+	}
+
+	private Location locate(UUID id) {
+		Location at;
+		synchronized (locations) {
+			at = locations.get(id);
+		}
+		if (at != null) {
+			return at;
+		}
+		at = statuses.findById(id).map(Location::of).orElse(UNKNOWN);
+		if (at == UNKNOWN) {
+			log.debug("no location known for container {}", id);
+		} else {
+			remember(id, at);
+		}
+		return at;
+	}
+
+	private void remember(UUID id, Location at) {
+		synchronized (locations) {
+			locations.put(id, at);
+		}
+	}
+
+	@Value
+	private static class Location {
+
+		String zoneName;
+		String portName;
+		String destZoneName;
+		String destPortName;
+
+		static Location of(ContainerStatus status) {
+			return new Location(status.getZoneName(), status.getPortName(),
+					status.getDestZoneName(), status.getDestPortName());
+		}
+	}
+
+}
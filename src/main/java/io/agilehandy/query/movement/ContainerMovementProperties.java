@@ -0,0 +1,69 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.movement;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Tuning knobs of the container movement stream.
+ *
+ * @author Haytham Mohamed
+ **/
+@Data
+@ConfigurationProperties(prefix = "acme.container-movements")
+public class ContainerMovementProperties {
+
+	// movements held for a subscriber not keeping up before the overflow policy kicks in
+	private int bufferSize = 256;
+
+	private Overflow overflow = Overflow.DROP_OLDEST;
+
+	// subscribers streamed to at once, more are turned away
+	private int maxSubscribers = 10000;
+
+	// threads writing buffered movements out to the subscribers, a client with a full socket holds one while it lasts
+	private int senderThreads = 4;
+
+	// a write to a client taking longer than this evicts it, and another thread stands in for the one it holds
+	private Duration writeTimeout = Duration.ofSeconds(10);
+
+	// an idle stream gets a comment this often, so closed connections are noticed and proxies keep it open
+	private Duration heartbeat = Duration.ofSeconds(15);
+
+	// a stream is ended after this long, browsers reconnect on their own
+	private Duration timeout = Duration.ofMinutes(30);
+
+	// containers whose location the projection keeps, the others are looked up in the container status read model
+	private int maxLocations = 100000;
+
+	public enum Overflow {
+
+		// make room by discarding the movement buffered longest
+		DROP_OLDEST,
+
+		// discard the movement that doesn't fit
+		DROP_NEWEST,
+
+		// hold only the latest movement of each container, the oldest one goes when the buffer is still full
+		CONFLATE
+	}
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.movement;
+
+import io.micrometer.core.instrument.Counter;
+import org.axonframework.common.AxonThreadFactory;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The sender threads writing buffered movements out to the subscribers,
+ * and a watch on how long each write takes.
+ *
+ * Writing to a client that stopped reading blocks the sender thread until
+ * the socket gives up. A subscriber whose write takes longer than the write
+ * timeout is evicted, so it takes no more movements, and the pool gets a
+ * thread in place of the one its write holds, until that write returns.
+ * However many clients stall, the others keep as many sender threads.
+ *
+ * @author Haytham Mohamed
+ **/
+class MovementSender {
+
+	private final int threads;
+	private final long writeTimeoutNanos;
+	private final Counter evicted;
+	private final ThreadPoolExecutor pool;
+
+	// writes under way, by subscriber
+	private final Map<MovementSubscriber, Write> writing = new ConcurrentHashMap<>();
+
+	// threads added in place of ones held by stalled writes, guarded by this
+	private int standIns;
+
+	MovementSender(int threads, Duration writeTimeout, Counter evicted) {
+		this.threads = Math.max(1, threads);
+		this.writeTimeoutNanos = writeTimeout.toNanos();
+		this.evicted = evicted;
+		this.pool = new ThreadPoolExecutor(this.threads, this.threads, 0L, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<>(), new AxonThreadFactory("container-movements"));
+	}
+
+	void execute(Runnable round) {
+		pool.execute(round);
+	}
+
+	void shutdown() {
+		pool.shutdown();
+	}
+
+	// called before each write, the deadline runs from here
+	void writing(MovementSubscriber subscriber) {
+		long now = System.nanoTime();
+		writing.compute(subscriber, (s, write) -> {
+			if (write == null) {
+				return new Write(now);
+			}
+			write.since = now;
+			return write;
+		});
+	}
+
+	// called once a round of writes is over, however it ended
+	void written(MovementSubscriber subscriber) {
+		Write write = writing.remove(subscriber);
+		if (write != null && write.stalled) {
+			resize(-1);
+		}
+	}
+
+	// evicts the subscribers whose write has taken longer than the timeout
+	void check() {
+		long now = System.nanoTime();
+		for (Map.Entry<MovementSubscriber, Write> entry : writing.entrySet()) {
+			if (now - entry.getValue().since > writeTimeoutNanos && stall(entry.getKey())) {
+				evicted.increment();
+				// the emitter is left alone, the stalled write holds it until it returns
+				entry.getKey().evict();
+			}
+		}
+	}
+
+	int getStandIns() {
+		synchronized (this) {
+			return standIns;
+		}
+	}
+
+	// whether the write was still under way and not yet taken as stalled
+	private boolean stall(MovementSubscriber subscriber) {
+		AtomicBoolean stalled = new AtomicBoolean();
+		writing.computeIfPresent(subscriber, (s, write) -> {
+			if (!write.stalled) {
+				write.stalled = true;
+				stalled.set(true);
+				resize(1);
+			}
+			return write;
+		});
+		return stalled.get();
+	}
+
+	// the core size can't go past the maximum, so the pool grows maximum first and shrinks core first
+	private synchronized void resize(int delta) {
+		standIns += delta;
+		int size = threads + standIns;
+		if (delta > 0) {
+			pool.setMaximumPoolSize(size);
+			pool.setCorePoolSize(size);
+		} else {
+			pool.setCorePoolSize(size);
+			pool.setMaximumPoolSize(size);
+		}
+	}
+
+	private static class Write {
+
+		volatile long since;
+
+		// guarded by the map entry, only changed inside compute
+		boolean stalled;
+
+		Write(long since) {
+			this.since = since;
+		}
+	}
+
+}
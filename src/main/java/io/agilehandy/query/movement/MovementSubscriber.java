@@ -0,0 +1,230 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.movement;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * One open movement stream with its own bounded buffer.
+ *
+ * The processor only ever adds to the buffer, which never holds more than
+ * its capacity: a full buffer loses movements by the overflow policy. At
+ * most one sender thread at a time writes the buffered movements out, and
+ * gives its thread back after each round so other subscribers get their
+ * turn. The subscriber is told how many movements it missed before the
+ * next ones. A subscriber whose client stops reading is closed by the
+ * {@link MovementSender} once a write takes longer than the write timeout.
+ *
+ * @author Haytham Mohamed
+ **/
+class MovementSubscriber {
+
+	// a movement rendered once for all of its subscribers
+	static final class Frame {
+
+		final UUID id;
+		final String name;
+		final String json;
+
+		Frame(UUID id, String name, String json) {
+			this.id = id;
+			this.name = name;
+			this.json = json;
+		}
+	}
+
+	private final SseEmitter emitter;
+	private final String zoneName;
+	private final String portName;
+	private final int capacity;
+	private final ContainerMovementProperties.Overflow overflow;
+	private final MovementSender sender;
+	private final Consumer<MovementSubscriber> onClosed;
+
+	// keyed by the container when conflating, otherwise by a key of its own per movement
+	private final Map<Object, Frame> buffer = new LinkedHashMap<>();
+	private long dropped;
+	private boolean heartbeatDue;
+	private boolean sending;
+	private boolean closed;
+	private boolean evicted;
+
+	MovementSubscriber(SseEmitter emitter, String zoneName, String portName, int capacity,
+	                   ContainerMovementProperties.Overflow overflow, MovementSender sender,
+	                   Consumer<MovementSubscriber> onClosed) {
+		this.emitter = emitter;
+		this.zoneName = zoneName;
+		this.portName = portName;
+		this.capacity = Math.max(1, capacity);
+		this.overflow = overflow;
+		this.sender = sender;
+		this.onClosed = onClosed;
+	}
+
+	String getZoneName() {
+		return zoneName;
+	}
+
+	SseEmitter getEmitter() {
+		return emitter;
+	}
+
+	boolean wants(ContainerMovement movement) {
+		return zoneName == null || movement.concerns(zoneName, portName);
+	}
+
+	// the movements lost to make it fit, 0 or 1
+	int offer(Frame frame) {
+		int lost = 0;
+		synchronized (this) {
+			if (closed) {
+				return 0;
+			}
+			Object key = overflow == ContainerMovementProperties.Overflow.CONFLATE ? frame.id : new Object();
+			if (overflow == ContainerMovementProperties.Overflow.CONFLATE && buffer.remove(key) != null) {
+				lost = 1;
+			} else if (buffer.size() >= capacity) {
+				lost = 1;
+				if (overflow == ContainerMovementProperties.Overflow.DROP_NEWEST) {
+					dropped++;
+					return lost;
+				}
+				Iterator<Frame> oldest = buffer.values().iterator();
+				oldest.next();
+				oldest.remove();
+			}
+			dropped += lost;
+			buffer.put(key, frame);
+			if (sending) {
+				return lost;
+			}
+			sending = true;
+		}
+		schedule();
+		return lost;
+	}
+
+	void heartbeat() {
+		synchronized (this) {
+			if (closed || sending) {
+				return;
+			}
+			heartbeatDue = true;
+			sending = true;
+		}
+		schedule();
+	}
+
+	// closed for a write that outlasted the write timeout, the emitter is completed once that write returns
+	void evict() {
+		synchronized (this) {
+			evicted = true;
+		}
+		close();
+	}
+
+	void close() {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			buffer.clear();
+		}
+		onClosed.accept(this);
+	}
+
+	private void schedule() {
+		try {
+			sender.execute(this::send);
+		} catch (RejectedExecutionException e) {
+			// shutting down
+			close();
+		}
+	}
+
+	private void write(SseEmitter.SseEventBuilder event) throws IOException {
+		synchronized (this) {
+			if (closed) {
+				throw new IllegalStateException("movement stream closed");
+			}
+		}
+		sender.writing(this);
+		emitter.send(event);
+	}
+
+	// one round of whatever is buffered, handed on to the next round while more comes in
+	private void send() {
+		List<Frame> frames;
+		long missed;
+		boolean ping;
+		synchronized (this) {
+			frames = new ArrayList<>(buffer.values());
+			buffer.clear();
+			missed = dropped;
+			dropped = 0;
+			ping = heartbeatDue && frames.isEmpty() && missed == 0;
+			heartbeatDue = false;
+		}
+		try {
+			if (missed > 0) {
+				write(SseEmitter.event().name("dropped").data(missed));
+			}
+			for (Frame frame : frames) {
+				write(SseEmitter.event().name(frame.name).data(frame.json));
+			}
+			if (ping) {
+				write(SseEmitter.event().comment("heartbeat"));
+			}
+		} catch (IOException | IllegalStateException e) {
+			// the client went away, the stream was completed meanwhile, or it was evicted during a write
+			close();
+			emitter.completeWithError(e);
+			return;
+		} finally {
+			sender.written(this);
+		}
+		boolean evictedMeanwhile;
+		synchronized (this) {
+			evictedMeanwhile = evicted;
+			if (closed || (buffer.isEmpty() && dropped == 0)) {
+				sending = false;
+				if (!evictedMeanwhile) {
+					return;
+				}
+			}
+		}
+		if (evictedMeanwhile) {
+			emitter.completeWithError(new TimeoutException("movement stream evicted, a write to it took too long"));
+			return;
+		}
+		schedule();
+	}
+
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.serialization;
+
+import org.axonframework.serialization.Converter;
+import org.axonframework.serialization.SerializationException;
+import org.axonframework.serialization.SerializedObject;
+import org.axonframework.serialization.SerializedType;
+import org.axonframework.serialization.Serializer;
+import org.axonframework.serialization.SimpleSerializedObject;
+import org.axonframework.serialization.SimpleSerializedType;
+
+import java.beans.ConstructorProperties;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Compact binary serializer for the container commands and events.
+ *
+ * Each registered class is written as its constructor arguments, in the
+ * order of its {@link ConstructorProperties}: a bitmap of the null ones,
+ * then UUIDs as two longs, floats as four bytes, timestamps as epoch
+ * seconds and nanos, enums by ordinal and zone/port names by their index in
+ * the {@link NameDictionary}. Anything else, meta-data and snapshots
+ * included, is handed to the delegate serializer.
+ *
+ * The binary form starts with a marker byte an XML document never starts
+ * with, so events stored by the delegate before still read back.
+ *
+ * @author Haytham Mohamed
+ **/
+public class ContainerBinarySerializer implements Serializer {
+
+	static final byte MARKER = (byte) 0xC1;
+
+	private final Serializer delegate;
+	private final NameDictionary names;
+	private final Map<Class<?>, Codec> codecsByClass = new HashMap<>();
+	private final Map<String, Codec> codecsByName = new HashMap<>();
+
+	public ContainerBinarySerializer(Serializer delegate, NameDictionary names, Collection<Class<?>> types) {
+		this.delegate = delegate;
+		this.names = names;
+		for (Class<?> type : types) {
+			Codec codec = new Codec(type);
+			codecsByClass.put(type, codec);
+			codecsByName.put(type.getName(), codec);
+		}
+	}
+
+	public Serializer getDelegate() {
+		return delegate;
+	}
+
+	@Override
+	public <T> SerializedObject<T> serialize(Object object, Class<T> expectedRepresentation) {
+		Codec codec = object == null ? null : codecsByClass.get(object.getClass());
+		// text representations can't carry the binary form, those get the delegate's
+		if (codec == null || !isBinary(expectedRepresentation)) {
+			return delegate.serialize(object, expectedRepresentation);
+		}
+		byte[] bytes = codec.write(object);
+		return getConverter().convert(new SimpleSerializedObject<>(bytes, byte[].class, codec.type),
+				expectedRepresentation);
+	}
+
+	private static boolean isBinary(Class<?> representation) {
+		return representation == byte[].class || representation == InputStream.class;
+	}
+
+	@Override
+	public <T> boolean canSerializeTo(Class<T> expectedRepresentation) {
+		return delegate.canSerializeTo(expectedRepresentation);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <S, T> T deserialize(SerializedObject<S> serializedObject) {
+		Codec codec = codecsByName.get(serializedObject.getType().getName());
+		if (codec == null) {
+			return delegate.deserialize(serializedObject);
+		}
+		byte[] bytes = getConverter().convert(serializedObject.getData(), serializedObject.getContentType(), byte[].class);
+		if (bytes.length == 0 || bytes[0] != MARKER) {
+			return delegate.deserialize(serializedObject);
+		}
+		return (T) codec.read(bytes);
+	}
+
+	@Override
+	public Class classForType(SerializedType type) {
+		Codec codec = codecsByName.get(type.getName());
+		return codec != null ? codec.javaType : delegate.classForType(type);
+	}
+
+	@Override
+	public SerializedType typeForClass(Class type) {
+		Codec codec = codecsByClass.get(type);
+		return codec != null ? codec.type : delegate.typeForClass(type);
+	}
+
+	@Override
+	public Converter getConverter() {
+		return delegate.getConverter();
+	}
+
+	private enum Kind {
+		UUID, FLOAT, NAME, TIMESTAMP, ENUM
+	}
+
+	// reads and writes one class through its all-arguments constructor
+	private final class Codec {
+
+		final Class<?> javaType;
+		final SerializedType type;
+		final Constructor<?> constructor;
+		final Field[] fields;
+		final Kind[] kinds;
+
+		Codec(Class<?> javaType) {
+			this.javaType = javaType;
+			this.type = new SimpleSerializedType(javaType.getName(), null);
+			this.constructor = propertiesConstructor(javaType);
+			String[] properties = constructor.getAnnotation(ConstructorProperties.class).value();
+			Class<?>[] parameterTypes = constructor.getParameterTypes();
+			this.fields = new Field[properties.length];
+			this.kinds = new Kind[properties.length];
+			for (int i = 0; i < properties.length; i++) {
+				try {
+					fields[i] = javaType.getDeclaredField(properties[i]);
+				} catch (NoSuchFieldException e) {
+					throw new IllegalArgumentException("No field for constructor property " + properties[i], e);
+				}
+				fields[i].setAccessible(true);
+				kinds[i] = kindOf(parameterTypes[i]);
+			}
+		}
+
+		byte[] write(Object object) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+			try (DataOutputStream out = new DataOutputStream(bytes)) {
+				Object[] values = new Object[fields.length];
+				long nulls = 0;
+				for (int i = 0; i < fields.length; i++) {
+					values[i] = fields[i].get(object);
+					if (values[i] == null) {
+						nulls |= 1L << i;
+					}
+				}
+				out.writeByte(MARKER);
+				writeVarLong(out, nulls);
+				for (int i = 0; i < fields.length; i++) {
+					if (values[i] != null) {
+						writeValue(out, kinds[i], values[i]);
+					}
+				}
+			} catch (IOException | IllegalAccessException e) {
+				throw new SerializationException("Unable to serialize " + javaType.getName(), e);
+			}
+			return bytes.toByteArray();
+		}
+
+		Object read(byte[] bytes) {
+			try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 1, bytes.length - 1))) {
+				long nulls = readVarLong(in);
+				Object[] arguments = new Object[fields.length];
+				for (int i = 0; i < fields.length; i++) {
+					if ((nulls & (1L << i)) == 0) {
+						arguments[i] = readValue(in, kinds[i], fields[i].getType());
+					}
+				}
+				return constructor.newInstance(arguments);
+			} catch (Exception e) {
+				throw new SerializationException("Unable to deserialize " + javaType.getName(), e);
+			}
+		}
+
+		private void writeValue(DataOutputStream out, Kind kind, Object value) throws IOException {
+			switch (kind) {
+				case UUID:
+					out.writeLong(((UUID) value).getMostSignificantBits());
+					out.writeLong(((UUID) value).getLeastSignificantBits());
+					break;
+				case FLOAT:
+					out.writeFloat((Float) value);
+					break;
+				case NAME:
+					int index = names.indexOf((String) value);
+					// 0 is followed by the name itself, otherwise the dictionary index plus one
+					writeVarLong(out, index + 1);
+					if (index < 0) {
+						out.writeUTF((String) value);
+					}
+					break;
+				case TIMESTAMP:
+					LocalDateTime timestamp = (LocalDateTime) value;
+					writeVarLong(out, timestamp.toEpochSecond(ZoneOffset.UTC));
+					writeVarLong(out, timestamp.getNano());
+					break;
+				default:
+					writeVarLong(out, ((Enum<?>) value).ordinal());
+			}
+		}
+
+		private Object readValue(DataInputStream in, Kind kind, Class<?> javaType) throws IOException {
+			switch (kind) {
+				case UUID:
+					return new UUID(in.readLong(), in.readLong());
+				case FLOAT:
+					return in.readFloat();
+				case NAME:
+					int code = (int) readVarLong(in);
+					return code == 0 ? in.readUTF() : names.nameAt(code - 1);
+				case TIMESTAMP:
+					long seconds = readVarLong(in);
+					return LocalDateTime.ofEpochSecond(seconds, (int) readVarLong(in), ZoneOffset.UTC);
+				default:
+					return javaType.getEnumConstants()[(int) readVarLong(in)];
+			}
+		}
+	}
+
+	private static Constructor<?> propertiesConstructor(Class<?> type) {
+		for (Constructor<?> constructor : type.getDeclaredConstructors()) {
+			if (constructor.isAnnotationPresent(ConstructorProperties.class)) {
+				constructor.setAccessible(true);
+				return constructor;
+			}
+		}
+		throw new IllegalArgumentException(type.getName() + " has no constructor with @ConstructorProperties");
+	}
+
+	private static Kind kindOf(Class<?> type) {
+		if (type == UUID.class) {
+			return Kind.UUID;
+		} else if (type == Float.class || type == float.class) {
+			return Kind.FLOAT;
+		} else if (type == String.class) {
+			return Kind.NAME;
+		} else if (type == LocalDateTime.class) {
+			return Kind.TIMESTAMP;
+		} else if (type.isEnum()) {
+			return Kind.ENUM;
+		}
+		throw new IllegalArgumentException("No binary encoding for " + type.getName());
+	}
+
+	// seven bits at a time, small values take a single byte
+	private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	private static long readVarLong(DataInputStream in) throws IOException {
+		long value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = in.readByte();
+			value |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.serialization;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The zone and port names written as a small index instead of their text.
+ *
+ * Indexes are positions in the configured list, so the list may only ever
+ * grow at its end: events already stored refer to names by position. Names
+ * not in the list are written out in full.
+ *
+ * @author Haytham Mohamed
+ **/
+public class NameDictionary {
+
+	private final String[] names;
+	private final Map<String, Integer> indexes = new HashMap<>();
+
+	public NameDictionary(List<String> names) {
+		this.names = names.toArray(new String[0]);
+		for (int i = 0; i < this.names.length; i++) {
+			indexes.putIfAbsent(this.names[i], i);
+		}
+	}
+
+	// -1 for a name outside the dictionary
+	public int indexOf(String name) {
+		Integer index = indexes.get(name);
+		return index == null ? -1 : index;
+	}
+
+	public String nameAt(int index) {
+		if (index < 0 || index >= names.length) {
+			throw new IllegalArgumentException("No name at index " + index + " of the dictionary");
+		}
+		return names[index];
+	}
+
+	public int size() {
+		return names.length;
+	}
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.serialization;
+
+import io.agilehandy.command.api.ContainerCommandType;
+import io.agilehandy.command.api.cmd.ContainerCreateCommand;
+import io.agilehandy.command.api.cmd.ContainerOpReserveAnyCommand;
+import io.agilehandy.command.api.evt.ContainerCreated;
+import io.agilehandy.command.api.evt.ContainerOpLoaded;
+import io.agilehandy.command.api.evt.ContainerOpOffLoaded;
+import io.agilehandy.command.api.evt.ContainerOpReleased;
+import io.agilehandy.command.api.evt.ContainerOpReserved;
+import io.agilehandy.command.api.evt.ContainerTransArrived;
+import io.agilehandy.command.api.evt.ContainerTransBoarded;
+import io.agilehandy.command.api.evt.ContainerTransDeparted;
+import io.agilehandy.command.api.evt.ContainerTransOffBoarded;
+import lombok.extern.slf4j.Slf4j;
+import org.axonframework.serialization.Serializer;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Puts the {@link ContainerBinarySerializer} in front of the default
+ * serializer for events and messages.
+ *
+ * @author Haytham Mohamed
+ **/
+@Configuration
+@EnableConfigurationProperties(SerializationProperties.class)
+@ConditionalOnProperty(prefix = "acme.serialization", name = "binary", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class SerializationConfig {
+
+	private final NameDictionary names;
+
+	public SerializationConfig(SerializationProperties properties) {
+		this.names = new NameDictionary(properties.getNames());
+		log.info("serializing container messages in binary, {} zone/port names in the dictionary", names.size());
+	}
+
+	@Bean
+	@Qualifier("eventSerializer")
+	public Serializer eventSerializer(Serializer serializer) {
+		return new ContainerBinarySerializer(serializer, names, containerMessageTypes());
+	}
+
+	@Bean
+	@Qualifier("messageSerializer")
+	public Serializer messageSerializer(Serializer serializer) {
+		return new ContainerBinarySerializer(serializer, names, containerMessageTypes());
+	}
+
+	public static List<Class<?>> containerMessageTypes() {
+		List<Class<?>> types = new ArrayList<>(Arrays.asList(
+				ContainerCreated.class,
+				ContainerOpReserved.class,
+				ContainerOpLoaded.class,
+				ContainerTransBoarded.class,
+				ContainerTransDeparted.class,
+				ContainerTransArrived.class,
+				ContainerTransOffBoarded.class,
+				ContainerOpOffLoaded.class,
+				ContainerOpReleased.class,
+				ContainerCreateCommand.class,
+				ContainerOpReserveAnyCommand.class));
+		Arrays.stream(ContainerCommandType.values())
+				.map(ContainerCommandType::getCommandType)
+				.forEach(types::add);
+		return types;
+	}
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.web;
+
+import org.axonframework.commandhandling.CommandExecutionException;
+import org.axonframework.common.AxonException;
+import org.axonframework.messaging.RemoteHandlingException;
+import org.axonframework.modelling.command.AggregateNotFoundException;
+import org.axonframework.modelling.command.ConcurrencyException;
+import org.axonframework.queryhandling.QueryExecutionException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Maps the failures of commands and queries onto HTTP statuses, answering
+ * the failure's message as the body.
+ *
+ * A handler on another node, as over Axon Server, fails the command or query
+ * with a {@link CommandExecutionException} or {@link QueryExecutionException}
+ * instead, carrying only the descriptions of the original failure. The
+ * {@link FailureDescribingInterceptor} puts the original's class name in
+ * those, so that it gets the status it would have had locally.
+ *
+ * @author Haytham Mohamed
+ **/
+@RestControllerAdvice
+public class ApiExceptionHandler {
+
+	// the statuses of the handlers below, by the failures they take, for failures known only by their class name
+	private static final Map<Class<? extends Throwable>, HttpStatus> STATUSES = new LinkedHashMap<>();
+
+	static {
+		STATUSES.put(IllegalStateException.class, HttpStatus.CONFLICT);
+		STATUSES.put(ConcurrencyException.class, HttpStatus.CONFLICT);
+		STATUSES.put(IllegalArgumentException.class, HttpStatus.BAD_REQUEST);
+		STATUSES.put(AggregateNotFoundException.class, HttpStatus.NOT_FOUND);
+		STATUSES.put(RejectedExecutionException.class, HttpStatus.SERVICE_UNAVAILABLE);
+		STATUSES.put(TimeoutException.class, HttpStatus.GATEWAY_TIMEOUT);
+	}
+
+	// the container's state doesn't allow the command
+	@ExceptionHandler(IllegalStateException.class)
+	@ResponseStatus(HttpStatus.CONFLICT)
+	public String rejected(IllegalStateException e) {
+		return e.getMessage();
+	}
+
+	// another command changed the container meanwhile, or a create repeated an existing id
+	@ExceptionHandler(ConcurrencyException.class)
+	@ResponseStatus(HttpStatus.CONFLICT)
+	public String conflict(ConcurrencyException e) {
+		return e.getMessage();
+	}
+
+	@ExceptionHandler(IllegalArgumentException.class)
+	@ResponseStatus(HttpStatus.BAD_REQUEST)
+	public String invalid(IllegalArgumentException e) {
+		return e.getMessage();
+	}
+
+	@ExceptionHandler(AggregateNotFoundException.class)
+	@ResponseStatus(HttpStatus.NOT_FOUND)
+	public String notFound(AggregateNotFoundException e) {
+		return e.getMessage();
+	}
+
+	// a command worker's queue is full, the caller should back off
+	@ExceptionHandler(RejectedExecutionException.class)
+	@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+	public String overloaded(RejectedExecutionException e) {
+		return "Too many commands waiting, try again later";
+	}
+
+	// the query side didn't reach the asked position in time
+	@ExceptionHandler(TimeoutException.class)
+	@ResponseStatus(HttpStatus.GATEWAY_TIMEOUT)
+	public String timedOut(TimeoutException e) {
+		return e.getMessage();
+	}
+
+	// a failure wrapped by the handling side, a remote one described as "<class name>: <message>" first
+	@ExceptionHandler({CommandExecutionException.class, QueryExecutionException.class})
+	public ResponseEntity<String> failedRemotely(AxonException e) {
+		Throwable cause = e.getCause();
+		if (cause instanceof RemoteHandlingException) {
+			List<String> descriptions = ((RemoteHandlingException) cause).getExceptionDescriptions();
+			String description = descriptions.isEmpty() ? "" : descriptions.get(0);
+			int colon = description.indexOf(": ");
+			Class<?> failure = colon < 0 ? null : failureNamed(description.substring(0, colon));
+			if (failure != null) {
+				return ResponseEntity.status(statusOf(failure)).body(description.substring(colon + 2));
+			}
+		} else if (cause instanceof FailureDescribingInterceptor.DescribedFailure) {
+			return ResponseEntity.status(statusOf(cause.getCause().getClass())).body(cause.getCause().getMessage());
+		} else if (cause != null) {
+			return ResponseEntity.status(statusOf(cause.getClass())).body(cause.getMessage());
+		}
+		return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(e.getMessage());
+	}
+
+	private static Class<?> failureNamed(String className) {
+		try {
+			Class<?> failure = Class.forName(className, false, ApiExceptionHandler.class.getClassLoader());
+			return Throwable.class.isAssignableFrom(failure) ? failure : null;
+		} catch (ClassNotFoundException | LinkageError e) {
+			return null;
+		}
+	}
+
+	private static HttpStatus statusOf(Class<?> failure) {
+		return STATUSES.entrySet().stream()
+				.filter(status -> status.getKey().isAssignableFrom(failure))
+				.map(Map.Entry::getValue)
+				.findFirst()
+				.orElse(HttpStatus.INTERNAL_SERVER_ERROR);
+	}
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.web;
+
+import io.agilehandy.command.api.cmd.ContainerCreateCommand;
+import io.agilehandy.command.batch.ContainerBatchCreator;
+import io.agilehandy.command.batch.ContainerCreateResult;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * @author Haytham Mohamed
+ **/
+@RestController
+@RequestMapping("/containers")
+public class ContainerBatchController {
+
+	private final ContainerBatchCreator batchCreator;
+
+	public ContainerBatchController(ContainerBatchCreator batchCreator) {
+		this.batchCreator = batchCreator;
+	}
+
+	@PostMapping("/batch")
+	public CompletableFuture<List<ContainerCreateResult>> create(@RequestBody List<ContainerCreateCommand> commands) {
+		return batchCreator.create(commands);
+	}
+
+}
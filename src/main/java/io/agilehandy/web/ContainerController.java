@@ -0,0 +1,140 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.web;
+
+import io.agilehandy.command.api.CommandResult;
+import io.agilehandy.command.api.TransmitType;
+import io.agilehandy.command.api.cmd.ContainerCreateCommand;
+import io.agilehandy.command.api.cmd.ContainerOpLoadCommand;
+import io.agilehandy.command.api.cmd.ContainerOpOffLoadCommand;
+import io.agilehandy.command.api.cmd.ContainerOpReleasedCommand;
+import io.agilehandy.command.api.cmd.ContainerOpReserveAnyCommand;
+import io.agilehandy.command.api.cmd.ContainerOpReserveCommand;
+import io.agilehandy.command.api.cmd.ContainerTransArriveCommand;
+import io.agilehandy.command.api.cmd.ContainerTransBoardCommand;
+import io.agilehandy.command.api.cmd.ContainerTransDepartCommand;
+import io.agilehandy.command.api.cmd.ContainerTransOffBoardCommand;
+import io.agilehandy.command.gateway.ContainerReservations;
+import io.agilehandy.command.gateway.PositionedCommandGateway;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The container commands over HTTP. Every answer is the command's pending
+ * result, so the servlet thread goes back to the pool as soon as the command
+ * is dispatched. The position in the answer can be handed to the inventory
+ * endpoints to read the command's own effects.
+ *
+ * A caller retrying after a timeout or a dropped connection sends the same
+ * {@value #IDEMPOTENCY_KEY} header as the first attempt. The key becomes the
+ * command id, so a command that went through already, or is still being
+ * handled, is not handled again and its result is answered instead.
+ *
+ * @author Haytham Mohamed
+ **/
+@RestController
+@RequestMapping("/containers")
+public class ContainerController {
+
+	// a request sent again with the same key is answered with the first one's result, not handled twice
+	static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
+	private final PositionedCommandGateway gateway;
+	private final ContainerReservations reservations;
+
+	public ContainerController(PositionedCommandGateway gateway, ContainerReservations reservations) {
+		this.gateway = gateway;
+		this.reservations = reservations;
+	}
+
+	// the caller picks the id, so a retried create is answered by the first one
+	@PostMapping
+	public CompletableFuture<CommandResult<UUID>> create(@RequestBody ContainerCreateCommand command,
+	                                                     @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String key) {
+		return gateway.send(command, key);
+	}
+
+	@PostMapping("/{id}/reserve")
+	public CompletableFuture<CommandResult<UUID>> reserve(@PathVariable UUID id,
+	                                                      @RequestParam UUID shipmentId,
+	                                                      @RequestParam(defaultValue = "STANDARD") TransmitType transitType,
+	                                                      @RequestParam String destZoneName,
+	                                                      @RequestParam String destPortName,
+	                                                      @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String key) {
+		return gateway.send(new ContainerOpReserveCommand(id, shipmentId, transitType, destZoneName, destPortName),
+				key);
+	}
+
+	// answers the id of the container that got reserved
+	@PostMapping("/reservations")
+	public CompletableFuture<CommandResult<UUID>> reserveAny(@RequestBody ContainerOpReserveAnyCommand command,
+	                                                         @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String key) {
+		return reservations.reserveAny(command, key);
+	}
+
+	@PostMapping("/{id}/load")
+	public CompletableFuture<CommandResult<Void>> load(@PathVariable UUID id, @RequestParam Float usedSize,
+	                                                   @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String key) {
+		return gateway.send(new ContainerOpLoadCommand(id, usedSize), key);
+	}
+
+	@PostMapping("/{id}/board")
+	public CompletableFuture<CommandResult<Void>> board(@PathVariable UUID id,
+	                                                    @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String key) {
+		return gateway.send(new ContainerTransBoardCommand(id), key);
+	}
+
+	@PostMapping("/{id}/depart")
+	public CompletableFuture<CommandResult<Void>> depart(@PathVariable UUID id,
+	                                                     @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String key) {
+		return gateway.send(new ContainerTransDepartCommand(id), key);
+	}
+
+	@PostMapping("/{id}/arrive")
+	public CompletableFuture<CommandResult<Void>> arrive(@PathVariable UUID id,
+	                                                     @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String key) {
+		return gateway.send(new ContainerTransArriveCommand(id), key);
+	}
+
+	@PostMapping("/{id}/off-board")
+	public CompletableFuture<CommandResult<Void>> offBoard(@PathVariable UUID id,
+	                                                       @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String key) {
+		return gateway.send(new ContainerTransOffBoardCommand(id), key);
+	}
+
+	@PostMapping("/{id}/off-load")
+	public CompletableFuture<CommandResult<Void>> offLoad(@PathVariable UUID id,
+	                                                      @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String key) {
+		return gateway.send(new ContainerOpOffLoadCommand(id), key);
+	}
+
+	@PostMapping("/{id}/release")
+	public CompletableFuture<CommandResult<Void>> release(@PathVariable UUID id,
+	                                                      @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String key) {
+		return gateway.send(new ContainerOpReleasedCommand(id), key);
+	}
+
+}
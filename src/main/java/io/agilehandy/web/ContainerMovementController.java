@@ -0,0 +1,61 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.web;
+
+import io.agilehandy.query.movement.ContainerMovementBroker;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * The live container movements as server-sent events, one event per
+ * movement named after its type. A "dropped" event tells a client that
+ * couldn't keep up how many movements it missed.
+ *
+ * @author Haytham Mohamed
+ **/
+@RestController
+@RequestMapping("/containers/movements")
+public class ContainerMovementController {
+
+	private final ContainerMovementBroker broker;
+
+	public ContainerMovementController(ContainerMovementBroker broker) {
+		this.broker = broker;
+	}
+
+	// every movement, or those at or headed to the zone, and its port when given
+	@GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public ResponseEntity<SseEmitter> movements(@RequestParam(required = false) String zoneName,
+	                                            @RequestParam(required = false) String portName) {
+		if (zoneName == null && portName != null) {
+			throw new IllegalArgumentException("A port is only followed within its zone");
+		}
+		SseEmitter emitter = broker.subscribe(zoneName, portName);
+		if (emitter == null) {
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+		}
+		return ResponseEntity.ok(emitter);
+	}
+
+}
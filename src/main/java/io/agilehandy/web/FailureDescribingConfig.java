@@ -0,0 +1,56 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.web;
+
+import lombok.extern.slf4j.Slf4j;
+import org.axonframework.axonserver.connector.command.AxonServerCommandBus;
+import org.axonframework.axonserver.connector.query.AxonServerQueryBus;
+import org.axonframework.commandhandling.CommandBus;
+import org.axonframework.commandhandling.CommandExecutionException;
+import org.axonframework.commandhandling.CommandMessage;
+import org.axonframework.queryhandling.QueryBus;
+import org.axonframework.queryhandling.QueryExecutionException;
+import org.axonframework.queryhandling.QueryMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Describes the failures of handlers that Axon Server may have been asked by
+ * another node, leaving the local buses of the other profiles alone.
+ *
+ * @author Haytham Mohamed
+ **/
+@Configuration
+@Slf4j
+public class FailureDescribingConfig {
+
+	@Autowired
+	public void describeFailures(CommandBus commandBus, QueryBus queryBus) {
+		if (commandBus instanceof AxonServerCommandBus) {
+			log.info("describing command failures for their senders on other nodes");
+			commandBus.registerHandlerInterceptor(new FailureDescribingInterceptor<CommandMessage<?>>(
+					CommandExecutionException::new, CommandExecutionException.class));
+		}
+		if (queryBus instanceof AxonServerQueryBus) {
+			log.info("describing query failures for their senders on other nodes");
+			queryBus.registerHandlerInterceptor(new FailureDescribingInterceptor<QueryMessage<?, ?>>(
+					QueryExecutionException::new, QueryExecutionException.class));
+		}
+	}
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.web;
+
+import org.axonframework.common.AxonException;
+import org.axonframework.messaging.InterceptorChain;
+import org.axonframework.messaging.Message;
+import org.axonframework.messaging.MessageHandlerInterceptor;
+import org.axonframework.messaging.unitofwork.UnitOfWork;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.BiFunction;
+
+/**
+ * Wraps a handler's failure in one describing it by its class name and
+ * message, before Axon Server passes it to the sender. The connector only
+ * passes on the messages of the failure's cause and the cause's cause, which
+ * would leave the {@link ApiExceptionHandler} of the sender no way to tell a
+ * rejected command from a broken one.
+ *
+ * @author Haytham Mohamed
+ **/
+public class FailureDescribingInterceptor<T extends Message<?>> implements MessageHandlerInterceptor<T> {
+
+	// the failure of the handled message's kind, taking a message and a cause
+	private final BiFunction<String, Throwable, ? extends AxonException> wrapper;
+	private final Class<? extends AxonException> wrapperType;
+
+	public FailureDescribingInterceptor(BiFunction<String, Throwable, ? extends AxonException> wrapper,
+	                                    Class<? extends AxonException> wrapperType) {
+		this.wrapper = wrapper;
+		this.wrapperType = wrapperType;
+	}
+
+	@Override
+	public Object handle(UnitOfWork<? extends T> unitOfWork, InterceptorChain chain) throws Exception {
+		Object result;
+		try {
+			result = chain.proceed();
+		} catch (Exception e) {
+			throw describe(e);
+		}
+		if (result instanceof CompletionStage) {
+			CompletableFuture<Object> described = new CompletableFuture<>();
+			((CompletionStage<?>) result).whenComplete((answer, error) -> {
+				if (error == null) {
+					described.complete(answer);
+				} else {
+					described.completeExceptionally(describe(
+							error instanceof CompletionException && error.getCause() != null ? error.getCause() : error));
+				}
+			});
+			return described;
+		}
+		return result;
+	}
+
+	private Exception describe(Throwable failure) {
+		if (wrapperType.isInstance(failure)) {
+			return (Exception) failure;
+		}
+		return wrapper.apply(failure.getMessage(), new DescribedFailure(failure));
+	}
+
+	// the cause the connector passes on, its message being "<class name>: <message>" of the original
+	static class DescribedFailure extends RuntimeException {
+
+		DescribedFailure(Throwable original) {
+			super(original.toString(), original);
+		}
+	}
+
+}
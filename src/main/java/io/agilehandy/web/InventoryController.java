@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.web;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.agilehandy.query.inventory.Inventory;
+import io.agilehandy.query.inventory.InventoryPages;
+import io.agilehandy.query.inventory.InventoryProperties;
+import io.agilehandy.query.inventory.InventoryQuery;
+import io.agilehandy.query.inventory.RankedInventoryQuery;
+import org.axonframework.messaging.responsetypes.ResponseTypes;
+import org.axonframework.queryhandling.QueryGateway;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * @author Haytham Mohamed
+ **/
+@RestController
+@RequestMapping("/inventory")
+public class InventoryController {
+
+	private final QueryGateway queryGateway;
+	private final ObjectMapper objectMapper;
+	private final InventoryProperties properties;
+
+	public InventoryController(QueryGateway queryGateway, ObjectMapper objectMapper, InventoryProperties properties) {
+		this.queryGateway = queryGateway;
+		this.objectMapper = objectMapper;
+		this.properties = properties;
+	}
+
+	// one zone/port, once the inventory reflects the given event position when there is one
+	@GetMapping("/zones/{zoneName}/ports/{portName}")
+	public CompletableFuture<ResponseEntity<Inventory>> port(@PathVariable String zoneName,
+	                                                         @PathVariable String portName,
+	                                                         @RequestParam(required = false) Long atLeastPosition) {
+		return queryGateway.query(new InventoryQuery(zoneName, portName, atLeastPosition),
+				ResponseTypes.instanceOf(Inventory.class))
+				.thenApply(inventory -> inventory == null
+						? ResponseEntity.notFound().build()
+						: ResponseEntity.ok(inventory));
+	}
+
+	// every port of the zone as one JSON array, written out page by page
+	@GetMapping("/zones/{zoneName}")
+	public ResponseEntity<StreamingResponseBody> zone(@PathVariable String zoneName,
+	                                                  @RequestParam(defaultValue = "100") int pageSize) {
+		// no bigger than the handler answers, or its first page would read as the last
+		int size = Math.min(pageSize, properties.getPaging().getMaxSize());
+		StreamingResponseBody body = out -> {
+			try (Stream<Inventory> inventories = InventoryPages.zone(queryGateway, zoneName, size);
+			     JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+				json.writeStartArray();
+				for (Iterator<Inventory> it = inventories.iterator(); it.hasNext(); ) {
+					json.writeObject(it.next());
+				}
+				json.writeEndArray();
+			}
+		};
+		return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON_UTF8).body(body);
+	}
+
+	// one page of the zone/ports with the most available containers, the next one starts after its last entry
+	@GetMapping("/ranked")
+	public CompletableFuture<List<Inventory>> ranked(@RequestParam(defaultValue = "10") int limit,
+	                                                 @RequestParam(required = false) Integer afterAvailableContainers,
+	                                                 @RequestParam(required = false) String afterZoneName,
+	                                                 @RequestParam(required = false) String afterPortName) {
+		return queryGateway.query(
+				new RankedInventoryQuery(afterAvailableContainers, afterZoneName, afterPortName, limit),
+				ResponseTypes.multipleInstancesOf(Inventory.class));
+	}
+
+}
@@ -0,0 +1,6 @@
+-- Indexes of the embedded event store, run by Hibernate once it created the schema.
+-- Sourcing an aggregate and finding its last sequence number both go through the
+-- unique (aggregate_identifier, sequence_number) constraint Axon declares, and
+-- snapshots through their (aggregate_identifier, sequence_number, type) key.
+-- Opening a tracking token at a point in time filters on the timestamp.
+CREATE INDEX domain_event_entry_time_stamp ON domain_event_entry (time_stamp);
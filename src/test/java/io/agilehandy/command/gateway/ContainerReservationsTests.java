@@ -0,0 +1,169 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.command.gateway;
+
+import io.agilehandy.command.api.CommandResult;
+import io.agilehandy.command.api.TransmitType;
+import io.agilehandy.command.api.cmd.ContainerOpReserveAnyCommand;
+import io.agilehandy.command.api.cmd.ContainerOpReserveCommand;
+import io.agilehandy.command.api.evt.ContainerCreated;
+import io.agilehandy.command.impl.CommandDeduplicationInterceptor;
+import io.agilehandy.command.impl.ContainerCapacityIndex;
+import org.axonframework.commandhandling.SimpleCommandBus;
+import org.axonframework.commandhandling.gateway.DefaultCommandGateway;
+import org.axonframework.eventhandling.GlobalSequenceTrackingToken;
+import org.axonframework.eventsourcing.eventstore.EventStore;
+import org.axonframework.modelling.command.AggregateNotFoundException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * A reservation of any container sends a reserve command for the container it
+ * claimed, moves on to the next one when a container turns it down, and gives
+ * its claim back when the command fails otherwise or repeats an earlier one.
+ *
+ * @author Haytham Mohamed
+ **/
+public class ContainerReservationsTests {
+
+	final ContainerCapacityIndex index = new ContainerCapacityIndex();
+
+	// what the containers do with their reserve commands
+	final Set<UUID> turningDown = Collections.synchronizedSet(new HashSet<>());
+	final Set<UUID> missing = Collections.synchronizedSet(new HashSet<>());
+	final List<UUID> reserved = Collections.synchronizedList(new ArrayList<>());
+
+	PositionedCommandGateway gateway;
+	ContainerReservations reservations;
+
+	@Before
+	public void setUp() {
+		SimpleCommandBus commandBus = SimpleCommandBus.builder().build();
+		commandBus.registerHandlerInterceptor(
+				new CommandDeduplicationInterceptor(Duration.ofMinutes(1), Duration.ofSeconds(10), 1000));
+		commandBus.subscribe(ContainerOpReserveCommand.class.getName(), command -> {
+			UUID id = ((ContainerOpReserveCommand) command.getPayload()).getId();
+			if (missing.contains(id)) {
+				throw new AggregateNotFoundException(id.toString(), "no container " + id);
+			}
+			if (turningDown.contains(id)) {
+				throw new IllegalStateException("Container is not available to reserve");
+			}
+			reserved.add(id);
+			return id;
+		});
+		EventStore eventStore = mock(EventStore.class);
+		when(eventStore.createHeadToken()).thenReturn(new GlobalSequenceTrackingToken(3));
+		gateway = new PositionedCommandGateway(DefaultCommandGateway.builder().commandBus(commandBus).build(),
+				eventStore);
+		reservations = new ContainerReservations(index, gateway);
+	}
+
+	@After
+	public void tearDown() {
+		gateway.shutdown();
+	}
+
+	@Test
+	public void bestFitReservedByItsOwnCommand() {
+		create(800f);
+		UUID fits = create(500f);
+
+		CommandResult<UUID> result = reservations.reserveAny(reserveAny(), null).join();
+
+		assertEquals(fits, result.getResult());
+		assertEquals(Collections.singletonList(fits), reserved);
+		assertEquals(3L, result.getPosition());
+	}
+
+	@Test
+	public void containerTurningDownIsSkipped() {
+		UUID behind = create(500f);
+		UUID next = create(600f);
+		turningDown.add(behind);
+
+		assertEquals(next, reservations.reserveAny(reserveAny(), null).join().getResult());
+		assertEquals(0, index.freeContainers("zone-1", "port-1"));
+	}
+
+	@Test
+	public void failedReservationGivesTheContainerBack() {
+		UUID id = create(500f);
+		missing.add(id);
+		try {
+			reservations.reserveAny(reserveAny(), null).join();
+			fail("the repository failure should come through");
+		} catch (CompletionException expected) {
+			assertTrue(expected.getCause() instanceof AggregateNotFoundException);
+			assertEquals(1, index.freeContainers("zone-1", "port-1"));
+		}
+	}
+
+	@Test
+	public void noneLeftIsRejected() {
+		try {
+			reservations.reserveAny(reserveAny(), null).join();
+			fail("there is no container to reserve");
+		} catch (CompletionException expected) {
+			assertTrue(expected.getCause() instanceof IllegalStateException);
+		}
+	}
+
+	@Test
+	public void repeatIsAnsweredWithTheFirstContainer() {
+		UUID first = create(500f);
+		UUID other = create(500f);
+
+		UUID reservedFirst = reservations.reserveAny(reserveAny(), "key-1").join().getResult();
+		UUID reservedAgain = reservations.reserveAny(reserveAny(), "key-1").join().getResult();
+
+		assertEquals(reservedFirst, reservedAgain);
+		assertEquals(1, reserved.size());
+		assertEquals(1, index.freeContainers("zone-1", "port-1"));
+		assertTrue(reservedFirst.equals(first) || reservedFirst.equals(other));
+	}
+
+	private static ContainerOpReserveAnyCommand reserveAny() {
+		return new ContainerOpReserveAnyCommand("zone-1", "port-1", 500f, UUID.randomUUID(),
+				TransmitType.STANDARD, "zone-2", "port-2");
+	}
+
+	private UUID create(float size) {
+		UUID id = UUID.randomUUID();
+		index.on(new ContainerCreated(id, size, "zone-1", "port-1", LocalDateTime.now()));
+		return id;
+	}
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.command.gateway;
+
+import io.agilehandy.command.api.CommandResult;
+import io.agilehandy.command.api.cmd.ContainerTransBoardCommand;
+import io.agilehandy.command.impl.CommandDeduplicationInterceptor;
+import org.axonframework.commandhandling.SimpleCommandBus;
+import org.axonframework.commandhandling.gateway.DefaultCommandGateway;
+import org.axonframework.eventhandling.GlobalSequenceTrackingToken;
+import org.axonframework.eventsourcing.eventstore.EventStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * A command sent again under its command id, as a retried request with the
+ * same idempotency key is, is answered without being handled again. The
+ * event store's head is asked for off the thread that handled the command.
+ *
+ * @author Haytham Mohamed
+ **/
+public class PositionedCommandGatewayTests {
+
+	final AtomicInteger boarded = new AtomicInteger();
+	final AtomicReference<Thread> handledOn = new AtomicReference<>();
+	final AtomicReference<Thread> headAskedOn = new AtomicReference<>();
+
+	PositionedCommandGateway gateway;
+
+	@Before
+	public void setUp() {
+		SimpleCommandBus commandBus = SimpleCommandBus.builder().build();
+		commandBus.registerHandlerInterceptor(new CommandDeduplicationInterceptor(Duration.ofMinutes(1), Duration.ofSeconds(10), 1000));
+		commandBus.subscribe(ContainerTransBoardCommand.class.getName(), command -> {
+			handledOn.set(Thread.currentThread());
+			return boarded.incrementAndGet();
+		});
+		EventStore eventStore = mock(EventStore.class);
+		when(eventStore.createHeadToken()).thenAnswer(invocation -> {
+			headAskedOn.set(Thread.currentThread());
+			return new GlobalSequenceTrackingToken(42);
+		});
+		gateway = new PositionedCommandGateway(DefaultCommandGateway.builder().commandBus(commandBus).build(),
+				eventStore);
+	}
+
+	@After
+	public void tearDown() {
+		gateway.shutdown();
+	}
+
+	@Test
+	public void sameCommandIdHandledOnce() {
+		ContainerTransBoardCommand board = new ContainerTransBoardCommand(UUID.randomUUID());
+		CommandResult<Integer> first = gateway.<Integer>send(board, "key-1").join();
+		CommandResult<Integer> retried = gateway.<Integer>send(board, "key-1").join();
+
+		assertEquals(1, boarded.get());
+		assertEquals(first.getResult(), retried.getResult());
+		assertEquals(42L, retried.getPosition());
+	}
+
+	@Test
+	public void withoutCommandIdHandledEachTime() {
+		ContainerTransBoardCommand board = new ContainerTransBoardCommand(UUID.randomUUID());
+		gateway.send(board).join();
+		gateway.send(board, null).join();
+
+		assertEquals(2, boarded.get());
+	}
+
+	@Test
+	public void otherCommandIdsHandledEach() {
+		ContainerTransBoardCommand board = new ContainerTransBoardCommand(UUID.randomUUID());
+		gateway.send(board, "key-2").join();
+		gateway.send(board, "key-3").join();
+
+		assertEquals(2, boarded.get());
+	}
+
+	@Test
+	public void headAskedOffTheHandlingThread() {
+		gateway.send(new ContainerTransBoardCommand(UUID.randomUUID())).join();
+
+		assertNotEquals(handledOn.get(), headAskedOn.get());
+	}
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.command.impl;
+
+import io.agilehandy.command.api.cmd.ContainerTransBoardCommand;
+import org.axonframework.commandhandling.GenericCommandMessage;
+import org.axonframework.commandhandling.SimpleCommandBus;
+import org.junit.Test;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Shutting the {@link AggregateAffineCommandBus} down lets the commands
+ * already queued on its workers be handled before it returns.
+ *
+ * @author Haytham Mohamed
+ **/
+public class AggregateAffineCommandBusTests {
+
+	@Test
+	public void shutdownWaitsForQueuedCommands() {
+		AtomicInteger handled = new AtomicInteger();
+		SimpleCommandBus localSegment = SimpleCommandBus.builder().build();
+		localSegment.subscribe(ContainerTransBoardCommand.class.getName(), command -> {
+			Thread.sleep(20);
+			return handled.incrementAndGet();
+		});
+		AggregateAffineCommandBus commandBus = new AggregateAffineCommandBus(localSegment, 2, 100);
+		UUID id = UUID.randomUUID();
+		for (int i = 0; i < 10; i++) {
+			commandBus.dispatch(GenericCommandMessage.asCommandMessage(new ContainerTransBoardCommand(id)));
+		}
+
+		commandBus.shutdown();
+
+		assertEquals(10, handled.get());
+	}
+
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.command.impl;
+
+import io.agilehandy.client.ContainerClient;
+import io.agilehandy.command.api.cmd.ContainerCreateCommand;
+import org.axonframework.commandhandling.SimpleCommandBus;
+import org.axonframework.commandhandling.gateway.CommandGateway;
+import org.axonframework.common.transaction.NoTransactionManager;
+import org.axonframework.common.transaction.TransactionManager;
+import org.axonframework.config.AggregateConfigurer;
+import org.axonframework.config.Configuration;
+import org.axonframework.config.Configurer;
+import org.axonframework.config.DefaultConfigurer;
+import org.axonframework.disruptor.commandhandling.DisruptorCommandBus;
+import org.axonframework.eventsourcing.EventSourcingRepository;
+import org.axonframework.eventsourcing.GenericAggregateFactory;
+import org.axonframework.eventsourcing.eventstore.inmemory.InMemoryEventStorageEngine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the {@link ContainerClient} lifecycle for many containers through the
+ * default command bus and through the Disruptor command bus, and reports
+ * commands/sec and latency percentiles for each.
+ *
+ * Run the main method; optional arguments are the number of containers and
+ * the number of concurrent clients.
+ *
+ * @author Haytham Mohamed
+ **/
+public class CommandBusBenchmark {
+
+	public enum Bus { SIMPLE, DISRUPTOR }
+
+	public static void main(String[] args) throws Exception {
+		int containers = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+		int clients = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+
+		for (Bus bus : Bus.values()) {
+			run(bus, containers / 4, clients); // warm up
+			long[] latencies = run(bus, containers, clients);
+			report(bus, latencies);
+		}
+	}
+
+	static long[] run(Bus bus, int containers, int clients) throws Exception {
+		Configuration configuration = configure(bus).buildConfiguration();
+		configuration.start();
+		CommandGateway gateway = configuration.commandGateway();
+		ExecutorService executor = Executors.newFixedThreadPool(clients);
+		try {
+			// the clients wait at the start line, so none of their work happens before the clock runs
+			CountDownLatch start = new CountDownLatch(1);
+			List<Future<long[]>> results = new ArrayList<>();
+			for (int c = 0; c < clients; c++) {
+				int share = containers / clients;
+				results.add(executor.submit(() -> {
+					start.await();
+					return drive(gateway, share);
+				}));
+			}
+			long started = System.nanoTime();
+			start.countDown();
+			List<long[]> all = new ArrayList<>();
+			for (Future<long[]> result : results) {
+				all.add(result.get());
+			}
+			long elapsed = System.nanoTime() - started;
+			long[] latencies = all.stream().flatMapToLong(Arrays::stream).toArray();
+			latencies = Arrays.copyOf(latencies, latencies.length + 1);
+			latencies[latencies.length - 1] = elapsed; // total run time rides along at the end
+			return latencies;
+		} finally {
+			executor.shutdown();
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+			configuration.shutdown();
+		}
+	}
+
+	// create containers one after another and walk each through its lifecycle, timing every command
+	static long[] drive(CommandGateway gateway, int containers) {
+		long[] latencies = new long[containers * 9];
+		int n = 0;
+		for (int i = 0; i < containers; i++) {
+			long start = System.nanoTime();
+			UUID id = UUID.randomUUID();
+			gateway.sendAndWait(new ContainerCreateCommand(id, 500f, "zone-1", "port-1"));
+			latencies[n++] = System.nanoTime() - start;
+			for (Object command : ContainerClient.lifecycle(id, "zone-2", "port-2")) {
+				start = System.nanoTime();
+				gateway.sendAndWait(command);
+				latencies[n++] = System.nanoTime() - start;
+			}
+		}
+		return latencies;
+	}
+
+	static Configurer configure(Bus bus) {
+		Configurer configurer = DefaultConfigurer.defaultConfiguration()
+				.configureEmbeddedEventStore(c -> new InMemoryEventStorageEngine());
+		AggregateConfigurer<Container> aggregate = AggregateConfigurer.defaultConfiguration(Container.class);
+
+		if (bus == Bus.DISRUPTOR) {
+			configurer.configureCommandBus(c -> DisruptorCommandBus.builder()
+					.transactionManager(c.getComponent(TransactionManager.class, () -> NoTransactionManager.INSTANCE))
+					.cache(new ContainerCache(10_000, ContainerCache.EvictionPolicy.LRU))
+					.build());
+			aggregate.configureRepository(c -> ((DisruptorCommandBus) c.commandBus())
+					.createRepository(c.eventStore(), new GenericAggregateFactory<>(Container.class)));
+		} else {
+			configurer.configureCommandBus(c -> SimpleCommandBus.builder().build());
+			aggregate.configureRepository(c -> EventSourcingRepository.builder(Container.class)
+					.eventStore(c.eventStore())
+					.cache(new ContainerCache(10_000, ContainerCache.EvictionPolicy.LRU))
+					.build());
+		}
+		return configurer.configureAggregate(aggregate);
+	}
+
+	static void report(Bus bus, long[] run) {
+		long elapsed = run[run.length - 1];
+		long[] latencies = Arrays.copyOf(run, run.length - 1);
+		Arrays.sort(latencies);
+		System.out.printf("%-10s commands=%d  throughput=%.0f cmd/s  p50=%.1f us  p99=%.1f us  max=%.1f us%n",
+				bus, latencies.length,
+				latencies.length / (elapsed / 1e9),
+				percentile(latencies, 0.50) / 1e3,
+				percentile(latencies, 0.99) / 1e3,
+				latencies[latencies.length - 1] / 1e3);
+	}
+
+	static long percentile(long[] sorted, double p) {
+		return sorted[(int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)];
+	}
+
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.command.impl;
+
+import io.agilehandy.command.api.cmd.ContainerOpLoadCommand;
+import org.axonframework.commandhandling.CommandMessage;
+import org.axonframework.commandhandling.GenericCommandMessage;
+import org.axonframework.messaging.InterceptorChain;
+import org.axonframework.messaging.unitofwork.DefaultUnitOfWork;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Repeats of a command, while it is still being handled and after it has
+ * been, get the first attempt's result without being handled again, or fail
+ * once the first attempt takes longer than they wait.
+ *
+ * @author Haytham Mohamed
+ **/
+public class CommandDeduplicationInterceptorTests {
+
+	final CommandDeduplicationInterceptor interceptor =
+			new CommandDeduplicationInterceptor(Duration.ofMinutes(1), Duration.ofMillis(500), 1000);
+
+	@Test
+	public void repeatAfterCommitGetsTheFirstResult() throws Exception {
+		CommandMessage<?> command = load("retry-1");
+		AtomicInteger handled = new AtomicInteger();
+		UUID result = UUID.randomUUID();
+
+		assertEquals(result, handle(command, () -> {
+			handled.incrementAndGet();
+			return result;
+		}));
+		assertEquals(result, handle(command, () -> {
+			handled.incrementAndGet();
+			return UUID.randomUUID();
+		}));
+		assertEquals(1, handled.get());
+		assertEquals(1, interceptor.getDuplicates());
+	}
+
+	@Test
+	public void repeatWhileInFlightWaitsForTheFirstResult() throws Exception {
+		CommandMessage<?> command = load("retry-2");
+		CountDownLatch firstStarted = new CountDownLatch(1);
+		CountDownLatch firstMayFinish = new CountDownLatch(1);
+		AtomicInteger handled = new AtomicInteger();
+
+		CompletableFuture<Object> first = CompletableFuture.supplyAsync(() -> handleUnchecked(command, () -> {
+			handled.incrementAndGet();
+			firstStarted.countDown();
+			firstMayFinish.await();
+			return "first";
+		}));
+		firstStarted.await(10, TimeUnit.SECONDS);
+		CompletableFuture<Object> repeat = CompletableFuture.supplyAsync(() -> handleUnchecked(command, () -> {
+			handled.incrementAndGet();
+			return "repeat";
+		}));
+		// the repeat can't finish before the first attempt does
+		Thread.sleep(100);
+		assertEquals(false, repeat.isDone());
+		firstMayFinish.countDown();
+
+		assertEquals("first", first.get(10, TimeUnit.SECONDS));
+		assertEquals("first", repeat.get(10, TimeUnit.SECONDS));
+		assertEquals(1, handled.get());
+	}
+
+	@Test
+	public void repeatWaitsNoLongerThanTheWaitTimeout() throws Exception {
+		CommandMessage<?> command = load("retry-4");
+		CountDownLatch firstStarted = new CountDownLatch(1);
+		CountDownLatch firstMayFinish = new CountDownLatch(1);
+
+		CompletableFuture<Object> first = CompletableFuture.supplyAsync(() -> handleUnchecked(command, () -> {
+			firstStarted.countDown();
+			firstMayFinish.await();
+			return "first";
+		}));
+		firstStarted.await(10, TimeUnit.SECONDS);
+		long started = System.nanoTime();
+		try {
+			handle(command, () -> "repeat");
+			fail("the repeat should fail while the first attempt is still being handled");
+		} catch (TimeoutException expected) {
+			// the first attempt goes on
+		}
+		assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(5));
+		firstMayFinish.countDown();
+		assertEquals("first", first.get(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void repeatOfAFailedCommandIsHandled() throws Exception {
+		CommandMessage<?> command = load("retry-3");
+		try {
+			handle(command, () -> {
+				throw new IllegalStateException("not now");
+			});
+		} catch (IllegalStateException expected) {
+			// the first attempt is rolled back
+		}
+		assertEquals("second", handle(command, () -> "second"));
+		assertEquals(0, interceptor.getInFlight());
+	}
+
+	@Test
+	public void commandsWithoutIdAreAlwaysHandled() throws Exception {
+		CommandMessage<?> command = GenericCommandMessage.asCommandMessage(new ContainerOpLoadCommand(UUID.randomUUID(), 1f));
+		AtomicInteger handled = new AtomicInteger();
+		handle(command, handled::incrementAndGet);
+		handle(command, handled::incrementAndGet);
+		assertEquals(2, handled.get());
+	}
+
+	@Test
+	public void recentIdsMatchAMapOverManyAddsAndEvictions() {
+		int capacity = 64;
+		RecentCommandIds ids = new RecentCommandIds(capacity, Long.MAX_VALUE);
+		Map<UUID, Object> expected = new LinkedHashMap<>();
+		Random random = new Random(42);
+		UUID[] pool = new UUID[200];
+		for (int i = 0; i < pool.length; i++) {
+			pool[i] = UUID.nameUUIDFromBytes(("id-" + i).getBytes());
+		}
+		for (int i = 0; i < 10_000; i++) {
+			UUID id = pool[random.nextInt(pool.length)];
+			Object result = random.nextBoolean() ? null : random.nextBoolean() ? UUID.randomUUID() : "r" + i;
+			ids.add(id, 0L, result);
+			if (!expected.containsKey(id)) {
+				if (expected.size() == capacity) {
+					expected.remove(expected.keySet().iterator().next());
+				}
+				expected.put(id, result);
+			}
+			for (UUID any : pool) {
+				Object held = ids.get(any, 0L);
+				if (expected.containsKey(any)) {
+					assertEquals(expected.get(any), held);
+				} else {
+					assertSame(RecentCommandIds.UNKNOWN, held);
+				}
+			}
+		}
+		assertEquals(capacity, ids.size());
+	}
+
+	@Test
+	public void recentIdsExpireAfterTheWindow() {
+		RecentCommandIds ids = new RecentCommandIds(10, 1000L);
+		UUID id = UUID.randomUUID();
+		ids.add(id, 0L, null);
+		assertNull(ids.get(id, 1000L));
+		assertSame(RecentCommandIds.UNKNOWN, ids.get(id, 1001L));
+		assertEquals(0, ids.size());
+	}
+
+	private static CommandMessage<?> load(String commandId) {
+		return GenericCommandMessage.asCommandMessage(new ContainerOpLoadCommand(UUID.randomUUID(), 100f))
+				.andMetaData(Collections.singletonMap(CommandDeduplicationInterceptor.COMMAND_ID, commandId));
+	}
+
+	private Object handle(CommandMessage<?> command, InterceptorChain chain) throws Exception {
+		DefaultUnitOfWork<CommandMessage<?>> unitOfWork = DefaultUnitOfWork.startAndGet(command);
+		Object result;
+		try {
+			result = interceptor.handle(unitOfWork, chain);
+		} catch (Exception e) {
+			unitOfWork.rollback(e);
+			throw e;
+		}
+		unitOfWork.commit();
+		return result;
+	}
+
+	private Object handleUnchecked(CommandMessage<?> command, InterceptorChain chain) {
+		try {
+			return handle(command, chain);
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
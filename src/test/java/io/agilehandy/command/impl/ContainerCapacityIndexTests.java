@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.command.impl;
+
+import io.agilehandy.command.api.TransmitType;
+import io.agilehandy.command.api.evt.ContainerCreated;
+import io.agilehandy.command.api.evt.ContainerOpLoaded;
+import io.agilehandy.command.api.evt.ContainerOpReserved;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Claims take the best fitting free container, an exact fit included, and
+ * what a container has left once loaded.
+ *
+ * @author Haytham Mohamed
+ **/
+public class ContainerCapacityIndexTests {
+
+	final ContainerCapacityIndex index = new ContainerCapacityIndex();
+
+	@Test
+	public void exactFitIsClaimed() {
+		UUID id = create(500f);
+		assertEquals(Optional.of(id), index.claim("zone-1", "port-1", 500f));
+		assertEquals(0, index.freeContainers("zone-1", "port-1"));
+	}
+
+	@Test
+	public void smallestFittingContainerIsClaimedFirst() {
+		create(300f);
+		UUID fits = create(500f);
+		UUID larger = create(600f);
+		assertEquals(Optional.of(fits), index.claim("zone-1", "port-1", 400f));
+		assertEquals(Optional.of(larger), index.claim("zone-1", "port-1", 400f));
+		assertFalse(index.claim("zone-1", "port-1", 400f).isPresent());
+	}
+
+	@Test
+	public void loadedContainerOffersWhatIsLeft() {
+		UUID id = create(500f);
+		index.on(new ContainerOpReserved(id, LocalDateTime.now(), UUID.randomUUID(), TransmitType.STANDARD,
+				"zone-1", "port-1", "zone-1", "port-1"));
+		index.on(new ContainerOpLoaded(id, 200f, LocalDateTime.now()));
+		index.unclaim(id);
+		assertFalse(index.claim("zone-1", "port-1", 301f).isPresent());
+		assertEquals(Optional.of(id), index.claim("zone-1", "port-1", 300f));
+	}
+
+	private UUID create(float size) {
+		UUID id = UUID.randomUUID();
+		index.on(new ContainerCreated(id, size, "zone-1", "port-1", LocalDateTime.now()));
+		return id;
+	}
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.command.impl;
+
+import io.agilehandy.client.ContainerClient;
+import io.agilehandy.command.api.cmd.ContainerCreateCommand;
+import org.axonframework.commandhandling.gateway.CommandGateway;
+import org.axonframework.config.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Container} command handling on the in-memory event store: a
+ * container created and walked through its lifecycle, one command after the
+ * other, on the default and on the Disruptor command bus. Scores are
+ * commands per second.
+ *
+ * @author Haytham Mohamed
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContainerCommandBenchmark {
+
+	// the create command and the eight of the lifecycle
+	static final int COMMANDS = 9;
+
+	@Param({"SIMPLE", "DISRUPTOR"})
+	CommandBusBenchmark.Bus bus;
+
+	Configuration configuration;
+	CommandGateway gateway;
+
+	// a fresh event store every iteration, so the streams of earlier ones don't pile up
+	@Setup(Level.Iteration)
+	public void start() {
+		configuration = CommandBusBenchmark.configure(bus).buildConfiguration();
+		configuration.start();
+		gateway = configuration.commandGateway();
+	}
+
+	@TearDown(Level.Iteration)
+	public void stop() {
+		configuration.shutdown();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(COMMANDS)
+	public void lifecycle() {
+		UUID id = UUID.randomUUID();
+		gateway.sendAndWait(new ContainerCreateCommand(id, 500f, "zone-1", "port-1"));
+		for (Object command : ContainerClient.lifecycle(id, "zone-2", "port-2")) {
+			gateway.sendAndWait(command);
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(ContainerCommandBenchmark.class.getSimpleName())
+				.build()).run();
+	}
+
+}
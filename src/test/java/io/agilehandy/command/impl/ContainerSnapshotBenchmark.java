@@ -0,0 +1,160 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.command.impl;
+
+import io.agilehandy.command.api.TransmitType;
+import io.agilehandy.command.api.evt.ContainerCreated;
+import io.agilehandy.command.api.evt.ContainerOpLoaded;
+import io.agilehandy.command.api.evt.ContainerOpOffLoaded;
+import io.agilehandy.command.api.evt.ContainerOpReleased;
+import io.agilehandy.command.api.evt.ContainerOpReserved;
+import io.agilehandy.command.api.evt.ContainerTransArrived;
+import io.agilehandy.command.api.evt.ContainerTransBoarded;
+import io.agilehandy.command.api.evt.ContainerTransDeparted;
+import io.agilehandy.command.api.evt.ContainerTransOffBoarded;
+import org.axonframework.eventhandling.DomainEventMessage;
+import org.axonframework.eventhandling.GenericDomainEventMessage;
+import org.axonframework.eventsourcing.AggregateSnapshotter;
+import org.axonframework.eventsourcing.EventSourcingRepository;
+import org.axonframework.eventsourcing.GenericAggregateFactory;
+import org.axonframework.eventsourcing.eventstore.EmbeddedEventStore;
+import org.axonframework.eventsourcing.eventstore.inmemory.InMemoryEventStorageEngine;
+import org.axonframework.messaging.unitofwork.DefaultUnitOfWork;
+import org.axonframework.messaging.unitofwork.UnitOfWork;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to load a {@link Container} against the length of its event stream,
+ * with and without a snapshot in the store.
+ *
+ * @author Haytham Mohamed
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContainerSnapshotBenchmark {
+
+	// events per reserve -> load -> board -> depart -> arrive -> off-board -> off-load -> release cycle
+	private static final int CYCLE = 8;
+
+	@Param({"100", "1000", "5000"})
+	int streamLength;
+
+	@Param({"false", "true"})
+	boolean snapshot;
+
+	EmbeddedEventStore eventStore;
+	EventSourcingRepository<Container> repository;
+	String aggregateId;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		eventStore = EmbeddedEventStore.builder()
+				.storageEngine(new InMemoryEventStorageEngine())
+				.build();
+		repository = EventSourcingRepository.builder(Container.class)
+				.eventStore(eventStore)
+				.build();
+
+		UUID id = UUID.randomUUID();
+		aggregateId = id.toString();
+		eventStore.publish(stream(id, streamLength));
+
+		if (snapshot) {
+			AggregateSnapshotter.builder()
+					.eventStore(eventStore)
+					.aggregateFactories(new GenericAggregateFactory<>(Container.class))
+					.build()
+					.scheduleSnapshot(Container.class, aggregateId);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		eventStore.shutDown();
+	}
+
+	@Benchmark
+	public Container load() {
+		UnitOfWork<?> uow = DefaultUnitOfWork.startAndGet(null);
+		try {
+			return repository.load(aggregateId).invoke(container -> container);
+		} finally {
+			uow.rollback();
+		}
+	}
+
+	static List<DomainEventMessage<?>> stream(UUID id, int length) {
+		List<DomainEventMessage<?>> events = new ArrayList<>(length);
+		events.add(message(id, 0, new ContainerCreated(id, 500f, "zone-1", "port-1", LocalDateTime.now())));
+		for (int seq = 1; seq < length; seq++) {
+			events.add(message(id, seq, cycleEvent(id, (seq - 1) % CYCLE)));
+		}
+		return events;
+	}
+
+	private static Object cycleEvent(UUID id, int step) {
+		LocalDateTime now = LocalDateTime.now();
+		switch (step) {
+			case 0: return new ContainerOpReserved(id, now, UUID.randomUUID(), TransmitType.STANDARD,
+					"zone-2", "port-2", "zone-1", "port-1");
+			case 1: return new ContainerOpLoaded(id, 80f, now);
+			case 2: return new ContainerTransBoarded(id, now);
+			case 3: return new ContainerTransDeparted(id, now);
+			case 4: return new ContainerTransArrived(id, now);
+			case 5: return new ContainerTransOffBoarded(id, now);
+			case 6: return new ContainerOpOffLoaded(id, now);
+			default: return new ContainerOpReleased(id, now);
+		}
+	}
+
+	private static DomainEventMessage<?> message(UUID id, long seq, Object payload) {
+		return new GenericDomainEventMessage<>(Container.class.getSimpleName(), id.toString(), seq, payload);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(ContainerSnapshotBenchmark.class.getSimpleName())
+				.build()).run();
+	}
+
+}
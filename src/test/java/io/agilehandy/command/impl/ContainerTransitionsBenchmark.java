@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.command.impl;
+
+import io.agilehandy.command.api.ContainerCommandType;
+import io.agilehandy.command.api.OpStatus;
+import io.agilehandy.command.api.TransmitStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every command guard against every container state, through the compiled
+ * {@link ContainerTransitions} table and through the former string compares.
+ *
+ * @author Haytham Mohamed
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContainerTransitionsBenchmark {
+
+	final OpStatus[] opStatuses = OpStatus.values();
+	final TransmitStatus[] transmitStatuses = TransmitStatus.values();
+	final ContainerCommandType[] commands = ContainerCommandType.values();
+
+	@Benchmark
+	public void table(Blackhole bh) {
+		for (OpStatus op : opStatuses) {
+			for (TransmitStatus trans : transmitStatuses) {
+				for (ContainerCommandType command : commands) {
+					bh.consume(ContainerTransitions.allows(op, trans, command));
+				}
+			}
+		}
+	}
+
+	@Benchmark
+	public void stringCompare(Blackhole bh) {
+		for (OpStatus op : opStatuses) {
+			for (TransmitStatus trans : transmitStatuses) {
+				for (ContainerCommandType command : commands) {
+					bh.consume(stringGuard(op, trans, command));
+				}
+			}
+		}
+	}
+
+	// the guards as Container evaluated them before the transition table
+	static boolean stringGuard(OpStatus op, TransmitStatus trans, ContainerCommandType command) {
+		switch (command) {
+			case RESERVE:
+				return trans.getValue().equals(TransmitStatus.OFF_BOARDED.getValue())
+						&& op.getValue().equals(OpStatus.RELEASED.getValue());
+			case LOAD:
+				return op.getValue().equals(OpStatus.RESERVED.getValue())
+						&& trans.getValue().equals(TransmitStatus.OFF_BOARDED.getValue());
+			case BOARD:
+			case OFF_LOAD:
+				return op.getValue().equals(OpStatus.LOADED.getValue())
+						&& trans.getValue().equals(TransmitStatus.OFF_BOARDED.getValue());
+			case DEPART:
+				return op.getValue().equals(OpStatus.LOADED.getValue())
+						&& trans.getValue().equals(TransmitStatus.BOARDED.getValue());
+			case ARRIVE:
+				return op.getValue().equals(OpStatus.LOADED.getValue())
+						&& trans.getValue().equals(TransmitStatus.DEPARTED.getValue());
+			case OFF_BOARD:
+				return op.getValue().equals(OpStatus.LOADED.getValue())
+						&& trans.getValue().equals(TransmitStatus.ARRIVED.getValue());
+			default:
+				return op.getValue().equals(OpStatus.OFF_LOADED.getValue())
+						&& trans.getValue().equals(TransmitStatus.OFF_BOARDED.getValue());
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(ContainerTransitionsBenchmark.class.getSimpleName())
+				.build()).run();
+	}
+
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.eventstore;
+
+import io.agilehandy.command.api.evt.ContainerCreated;
+import io.agilehandy.command.api.evt.ContainerOpLoaded;
+import org.axonframework.common.transaction.TransactionManager;
+import org.axonframework.eventhandling.DomainEventMessage;
+import org.axonframework.eventhandling.GenericDomainEventMessage;
+import org.axonframework.eventsourcing.eventstore.DomainEventStream;
+import org.axonframework.eventsourcing.eventstore.EventStorageEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends and aggregate reads against the embedded JPA/HSQLDB event store,
+ * as wired by the embedded profile. Append scores are units of work per
+ * second, each appending {@code eventsPerUnitOfWork} events to a new
+ * container; read scores are containers sourced per second.
+ *
+ * @author Haytham Mohamed
+ **/
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 3)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmbeddedEventStoreBenchmark {
+
+	// the event store and nothing else of the application, so no client runs on start
+	@Configuration
+	@EnableAutoConfiguration
+	@Import(EmbeddedEventStoreConfig.class)
+	static class EventStoreOnly {
+	}
+
+	@State(Scope.Benchmark)
+	public static class Store {
+
+		ConfigurableApplicationContext context;
+		EventStorageEngine engine;
+		TransactionManager transactionManager;
+
+		@Setup(Level.Trial)
+		public void start() {
+			context = new SpringApplicationBuilder(EventStoreOnly.class)
+					.profiles("embedded")
+					.web(WebApplicationType.NONE)
+					.properties("logging.level.root=WARN")
+					.run();
+			engine = context.getBean(EventStorageEngine.class);
+			transactionManager = context.getBean(TransactionManager.class);
+		}
+
+		@TearDown(Level.Trial)
+		public void stop() {
+			context.close();
+		}
+
+		void append(List<DomainEventMessage<?>> events) {
+			transactionManager.executeInTransaction(() -> engine.appendEvents(events));
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Appends {
+
+		@Param({"1", "10", "100"})
+		int eventsPerUnitOfWork;
+	}
+
+	@State(Scope.Benchmark)
+	public static class Streams {
+
+		@Param({"10", "100"})
+		int streamLength;
+
+		// containers read round robin, so reads don't all hit the same rows
+		final List<String> ids = new ArrayList<>();
+		int next;
+
+		@Setup(Level.Trial)
+		public void fill(Store store) {
+			for (int i = 0; i < 1000; i++) {
+				UUID id = UUID.randomUUID();
+				store.append(stream(id, streamLength));
+				ids.add(id.toString());
+			}
+		}
+
+		String nextId() {
+			next = (next + 1) % ids.size();
+			return ids.get(next);
+		}
+	}
+
+	@Benchmark
+	public void append(Store store, Appends appends) {
+		store.append(stream(UUID.randomUUID(), appends.eventsPerUnitOfWork));
+	}
+
+	@Benchmark
+	public void readAggregate(Store store, Streams streams, Blackhole bh) {
+		store.transactionManager.executeInTransaction(() -> {
+			DomainEventStream stream = store.engine.readEvents(streams.nextId());
+			while (stream.hasNext()) {
+				bh.consume(stream.next().getPayload());
+			}
+		});
+	}
+
+	// a created container followed by loads, as one unit of work would apply them
+	static List<DomainEventMessage<?>> stream(UUID id, int length) {
+		List<DomainEventMessage<?>> events = new ArrayList<>(length);
+		events.add(new GenericDomainEventMessage<>("Container", id.toString(), 0,
+				new ContainerCreated(id, 500f, "zone-1", "port-1", LocalDateTime.now())));
+		for (int seq = 1; seq < length; seq++) {
+			events.add(new GenericDomainEventMessage<>("Container", id.toString(), seq,
+					new ContainerOpLoaded(id, (float) seq, LocalDateTime.now())));
+		}
+		return events;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(EmbeddedEventStoreBenchmark.class.getSimpleName())
+				.build()).run();
+	}
+
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.metrics;
+
+import org.axonframework.common.stream.BlockingStream;
+import org.axonframework.config.EventProcessingConfiguration;
+import org.axonframework.eventhandling.EventTrackerStatus;
+import org.axonframework.eventhandling.GenericEventMessage;
+import org.axonframework.eventhandling.GenericTrackedEventMessage;
+import org.axonframework.eventhandling.GlobalSequenceTrackingToken;
+import org.axonframework.eventhandling.Segment;
+import org.axonframework.eventhandling.TrackedEventMessage;
+import org.axonframework.eventhandling.TrackingEventProcessor;
+import org.axonframework.eventsourcing.eventstore.EmbeddedEventStore;
+import org.axonframework.eventsourcing.eventstore.EventStore;
+import org.axonframework.eventsourcing.eventstore.inmemory.InMemoryEventStorageEngine;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The lag in seconds of {@link ProcessorLagMetrics} is the age of the oldest
+ * event a processor has yet to handle, also when the event store streams its
+ * events some time after the stream is opened, as Axon Server does. Scrapes
+ * read the value of the last refresh.
+ *
+ * @author Haytham Mohamed
+ **/
+public class ProcessorLagMetricsTests {
+
+	static final String PROCESSOR = "inventory";
+
+	final EventProcessingConfiguration eventProcessing = mock(EventProcessingConfiguration.class);
+	final EventTrackerStatus slowest = mock(EventTrackerStatus.class);
+
+	@Before
+	public void setUp() {
+		TrackingEventProcessor processor = mock(TrackingEventProcessor.class);
+		when(processor.processingStatus()).thenReturn(Collections.singletonMap(0, slowest));
+		when(eventProcessing.eventProcessor(PROCESSOR, TrackingEventProcessor.class)).thenReturn(Optional.of(processor));
+		when(slowest.getSegment()).thenReturn(Segment.ROOT_SEGMENT);
+	}
+
+	@After
+	public void tearDown() {
+		GenericEventMessage.clock = Clock.systemUTC();
+	}
+
+	@Test
+	public void ageOfTheOldestUnhandledEvent() {
+		EmbeddedEventStore eventStore = EmbeddedEventStore.builder()
+				.storageEngine(new InMemoryEventStorageEngine())
+				.build();
+		try {
+			Instant now = Instant.now();
+			GenericEventMessage.clock = Clock.fixed(now.minusSeconds(60), ZoneOffset.UTC);
+			eventStore.publish(GenericEventMessage.asEventMessage("handled"));
+			GenericEventMessage.clock = Clock.fixed(now.minusSeconds(20), ZoneOffset.UTC);
+			eventStore.publish(GenericEventMessage.asEventMessage("oldest unhandled"));
+			GenericEventMessage.clock = Clock.fixed(now.minusSeconds(5), ZoneOffset.UTC);
+			eventStore.publish(GenericEventMessage.asEventMessage("unhandled"));
+
+			when(slowest.getTrackingToken()).thenReturn(new GlobalSequenceTrackingToken(0));
+			double seconds = metrics(eventStore).seconds(PROCESSOR);
+			assertTrue(String.valueOf(seconds), seconds >= 20 && seconds < 25);
+		} finally {
+			eventStore.shutDown();
+		}
+	}
+
+	@Test
+	public void caughtUpOpensNoStream() {
+		EventStore eventStore = mock(EventStore.class);
+		when(eventStore.createHeadToken()).thenReturn(new GlobalSequenceTrackingToken(7));
+		when(slowest.getTrackingToken()).thenReturn(new GlobalSequenceTrackingToken(7));
+
+		assertEquals(0d, metrics(eventStore).seconds(PROCESSOR), 0d);
+		verify(eventStore, never()).openStream(any());
+	}
+
+	// nothing is buffered when the stream opens; the event arrives a little later
+	@Test
+	public void eventStreamedAfterTheStreamOpens() {
+		Instant timestamp = Instant.now().minusSeconds(30);
+		EventStore eventStore = remote(timestamp, 100);
+		when(slowest.getTrackingToken()).thenReturn(new GlobalSequenceTrackingToken(3));
+
+		double seconds = metrics(eventStore).seconds(PROCESSOR);
+		assertTrue(String.valueOf(seconds), seconds >= 30 && seconds < 35);
+	}
+
+	@Test
+	public void eventNotStreamedInTimeIsUnknown() {
+		EventStore eventStore = remote(Instant.now(), 5_000);
+		when(slowest.getTrackingToken()).thenReturn(new GlobalSequenceTrackingToken(3));
+
+		assertTrue(Double.isNaN(metrics(eventStore).seconds(PROCESSOR)));
+	}
+
+	// a scrape reads what the last refresh worked out, without going to the event store
+	@Test
+	public void gaugeReadsTheLastRefresh() {
+		EventStore eventStore = remote(Instant.now().minusSeconds(30), 0);
+		when(slowest.getTrackingToken()).thenReturn(new GlobalSequenceTrackingToken(3));
+		ProcessorLagMetrics metrics = metrics(eventStore);
+		assertTrue(Double.isNaN(metrics.lastSeconds(PROCESSOR)));
+
+		metrics.refresh();
+		double seconds = metrics.lastSeconds(PROCESSOR);
+		assertTrue(String.valueOf(seconds), seconds >= 30 && seconds < 35);
+		assertEquals(seconds, metrics.lastSeconds(PROCESSOR), 0d);
+		verify(eventStore, times(1)).openStream(any());
+	}
+
+	private ProcessorLagMetrics metrics(EventStore eventStore) {
+		return new ProcessorLagMetrics(eventProcessing, eventStore, Collections.singleton(PROCESSOR),
+				Duration.ofMillis(500), Duration.ofHours(1));
+	}
+
+	// an event store ahead of the processor, whose stream delivers the next event some millis after opening
+	private static EventStore remote(Instant timestamp, long delayMillis) {
+		EventStore eventStore = mock(EventStore.class);
+		when(eventStore.createHeadToken()).thenReturn(new GlobalSequenceTrackingToken(10));
+		GenericEventMessage.clock = Clock.fixed(timestamp, ZoneOffset.UTC);
+		TrackedEventMessage<?> next = new GenericTrackedEventMessage<>(new GlobalSequenceTrackingToken(4),
+				GenericEventMessage.asEventMessage("next"));
+		GenericEventMessage.clock = Clock.systemUTC();
+		when(eventStore.openStream(any()))
+				.thenAnswer(invocation -> new LateStream(next, System.currentTimeMillis() + delayMillis));
+		return eventStore;
+	}
+
+	private static class LateStream implements BlockingStream<TrackedEventMessage<?>> {
+
+		final TrackedEventMessage<?> event;
+		final long availableAt;
+
+		LateStream(TrackedEventMessage<?> event, long availableAt) {
+			this.event = event;
+			this.availableAt = availableAt;
+		}
+
+		@Override
+		public Optional<TrackedEventMessage<?>> peek() {
+			return System.currentTimeMillis() >= availableAt ? Optional.of(event) : Optional.empty();
+		}
+
+		@Override
+		public boolean hasNextAvailable(int timeout, TimeUnit unit) throws InterruptedException {
+			long wait = Math.min(unit.toMillis(timeout), availableAt - System.currentTimeMillis());
+			if (wait > 0) {
+				Thread.sleep(wait);
+			}
+			return peek().isPresent();
+		}
+
+		@Override
+		public TrackedEventMessage<?> nextAvailable() {
+			return event;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+}
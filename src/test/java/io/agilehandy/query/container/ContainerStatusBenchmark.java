@@ -0,0 +1,227 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.container;
+
+import io.agilehandy.command.api.OpStatus;
+import io.agilehandy.command.api.TransmitStatus;
+import io.agilehandy.command.api.TransmitType;
+import io.agilehandy.command.api.evt.ContainerCreated;
+import io.agilehandy.command.api.evt.ContainerOpLoaded;
+import io.agilehandy.command.api.evt.ContainerOpOffLoaded;
+import io.agilehandy.command.api.evt.ContainerOpReleased;
+import io.agilehandy.command.api.evt.ContainerOpReserved;
+import io.agilehandy.command.api.evt.ContainerTransArrived;
+import io.agilehandy.command.api.evt.ContainerTransBoarded;
+import io.agilehandy.command.api.evt.ContainerTransDeparted;
+import io.agilehandy.command.api.evt.ContainerTransOffBoarded;
+import org.axonframework.common.transaction.TransactionManager;
+import org.axonframework.eventhandling.AnnotationEventHandlerAdapter;
+import org.axonframework.eventhandling.EventMessage;
+import org.axonframework.eventhandling.GenericEventMessage;
+import org.axonframework.messaging.unitofwork.BatchingUnitOfWork;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups on the container status read model holding a million containers
+ * spread over 64 zone/ports, a quarter at each stage from just created to
+ * back from a full trip. Containers are fed in as their events, through the
+ * projection, before measuring.
+ *
+ * @author Haytham Mohamed
+ **/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 3)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class ContainerStatusBenchmark {
+
+	static final int ZONES = 8;
+	static final int PORTS = 8;
+	static final int PAGE = 50;
+	static final int SAMPLES = 1024;
+
+	// the container status read model and nothing else of the application, so no client runs on start
+	@Configuration
+	@EnableAutoConfiguration
+	@Import({ContainerStatusConfig.class, ContainerStatusProjection.class})
+	static class ContainerStatusOnly {
+	}
+
+	@State(Scope.Benchmark)
+	public static class Statuses {
+
+		@Param({"1000000"})
+		int containers;
+
+		ConfigurableApplicationContext context;
+		ContainerStatusProjection projection;
+
+		final UUID[] ids = new UUID[SAMPLES];
+		final ContainersInStateQuery[] stateCursors = new ContainersInStateQuery[SAMPLES];
+
+		@Setup(Level.Trial)
+		public void start() throws Exception {
+			context = new SpringApplicationBuilder(ContainerStatusOnly.class)
+					.profiles("embedded")
+					.web(WebApplicationType.NONE)
+					.properties("logging.level.root=WARN")
+					.run("--axon.eventhandling.processors.container-status.mode=subscribing");
+			projection = context.getBean(ContainerStatusProjection.class);
+			AnnotationEventHandlerAdapter adapter = new AnnotationEventHandlerAdapter(projection);
+			TransactionManager transactionManager = context.getBean(TransactionManager.class);
+
+			Random random = new Random(42);
+			List<EventMessage<?>> events = new ArrayList<>();
+			for (int i = 0; i < containers; i++) {
+				UUID id = new UUID(random.nextLong(), random.nextLong());
+				if (i < SAMPLES) {
+					ids[i] = id;
+					stateCursors[i] = new ContainersInStateQuery(OpStatus.LOADED, TransmitStatus.BOARDED, id, PAGE);
+				}
+				events.addAll(lifecycle(id, i, random));
+				if (events.size() >= 1000) {
+					handle(adapter, transactionManager, events);
+					events = new ArrayList<>();
+				}
+			}
+			handle(adapter, transactionManager, events);
+		}
+
+		@TearDown(Level.Trial)
+		public void stop() {
+			context.close();
+		}
+	}
+
+	// a page of the released containers at a zone/port with room for 200 more
+	@Benchmark
+	public List<ContainerStatus> atLocation(Statuses statuses) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		return statuses.projection.getContainersAtLocation(new ContainersAtLocationQuery(
+				"zone-" + random.nextInt(ZONES), "port-" + random.nextInt(PORTS), OpStatus.RELEASED, 200f, PAGE));
+	}
+
+	// the page after one ending half way through the containers that fit
+	@Benchmark
+	public List<ContainerStatus> atLocationAfter(Statuses statuses) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		return statuses.projection.getContainersAtLocation(new ContainersAtLocationQuery(
+				"zone-" + random.nextInt(ZONES), "port-" + random.nextInt(PORTS), OpStatus.RELEASED, 200f,
+				350d, statuses.ids[random.nextInt(SAMPLES)], PAGE));
+	}
+
+	// a page of the loaded containers on board, wherever they are
+	@Benchmark
+	public List<ContainerStatus> inState(Statuses statuses) {
+		return statuses.projection.getContainersInState(
+				new ContainersInStateQuery(OpStatus.LOADED, TransmitStatus.BOARDED, PAGE));
+	}
+
+	@Benchmark
+	public List<ContainerStatus> inStateAfter(Statuses statuses) {
+		return statuses.projection.getContainersInState(
+				statuses.stateCursors[ThreadLocalRandom.current().nextInt(SAMPLES)]);
+	}
+
+	@Benchmark
+	public ContainerStatus byId(Statuses statuses) {
+		return statuses.projection.getContainerStatus(
+				new ContainerStatusQuery(statuses.ids[ThreadLocalRandom.current().nextInt(SAMPLES)]));
+	}
+
+	static void handle(AnnotationEventHandlerAdapter adapter, TransactionManager transactionManager,
+	                   List<EventMessage<?>> events) throws Exception {
+		if (events.isEmpty()) {
+			return;
+		}
+		BatchingUnitOfWork<EventMessage<?>> batch = new BatchingUnitOfWork<>(events);
+		batch.attachTransaction(transactionManager);
+		batch.executeWithResult(() -> adapter.handle(batch.getMessage()));
+	}
+
+	// created, reserved, loaded and boarded, or all the way to the destination and released again
+	static List<EventMessage<?>> lifecycle(UUID id, int i, Random random) {
+		LocalDateTime now = LocalDateTime.now();
+		String zone = "zone-" + i % ZONES;
+		String port = "port-" + i / ZONES % PORTS;
+		String destZone = "zone-" + random.nextInt(ZONES);
+		String destPort = "port-" + random.nextInt(PORTS);
+		float size = 100f * (1 + random.nextInt(5));
+		int stage = i % 4;
+
+		List<Object> events = new ArrayList<>();
+		events.add(new ContainerCreated(id, size, zone, port, now));
+		if (stage > 0) {
+			events.add(new ContainerOpReserved(id, now, UUID.randomUUID(), TransmitType.STANDARD,
+					destZone, destPort, zone, port));
+		}
+		if (stage > 1) {
+			events.add(new ContainerOpLoaded(id, (float) random.nextInt((int) size), now));
+			events.add(new ContainerTransBoarded(id, now));
+		}
+		if (stage > 2) {
+			events.add(new ContainerTransDeparted(id, now));
+			events.add(new ContainerTransArrived(id, now));
+			events.add(new ContainerTransOffBoarded(id, now));
+			events.add(new ContainerOpOffLoaded(id, now));
+			events.add(new ContainerOpReleased(id, now));
+		}
+		List<EventMessage<?>> messages = new ArrayList<>(events.size());
+		for (Object event : events) {
+			messages.add(GenericEventMessage.asEventMessage(event));
+		}
+		return messages;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(ContainerStatusBenchmark.class.getSimpleName())
+				.build()).run();
+	}
+
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.container;
+
+import io.agilehandy.command.api.OpStatus;
+import io.agilehandy.command.api.TransmitStatus;
+import io.agilehandy.command.api.TransmitType;
+import io.agilehandy.command.api.evt.ContainerCreated;
+import io.agilehandy.command.api.evt.ContainerOpLoaded;
+import io.agilehandy.command.api.evt.ContainerOpReserved;
+import io.agilehandy.command.api.evt.ContainerTransArrived;
+import io.agilehandy.command.api.evt.ContainerTransBoarded;
+import io.agilehandy.command.api.evt.ContainerTransDeparted;
+import org.axonframework.eventhandling.AnnotationEventHandlerAdapter;
+import org.axonframework.eventhandling.GenericEventMessage;
+import org.axonframework.messaging.unitofwork.DefaultUnitOfWork;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The container statuses the {@link ContainerStatusProjection} writes with
+ * its batched statements, and the keyset pages it answers from them.
+ *
+ * @author Haytham Mohamed
+ **/
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ContainerStatusRepositoryTests {
+
+	static final String ZONE = "zone-1";
+	static final String PORT = "port-1";
+
+	@Autowired
+	ContainerStatusRepository repository;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	ContainerStatusProjection projection;
+	AnnotationEventHandlerAdapter handler;
+
+	// nothing here rolls back, so each test starts from an empty table
+	@Before
+	public void setUp() {
+		repository.deleteAllRows();
+		projection = new ContainerStatusProjection(repository, new ContainerStatusProperties());
+		handler = new AnnotationEventHandlerAdapter(projection);
+	}
+
+	// one batch of mixed changes, each type a statement of its own, run in event order
+	@Test
+	public void arrivedContainerIsAtItsDestination() {
+		UUID id = UUID.randomUUID();
+		LocalDateTime now = LocalDateTime.now();
+		batch(new ContainerCreated(id, 40f, ZONE, PORT, now),
+				reserved(id, now),
+				new ContainerTransBoarded(id, now),
+				new ContainerTransDeparted(id, now),
+				new ContainerTransArrived(id, now));
+
+		ContainerStatus status = repository.findById(id).orElseThrow(IllegalStateException::new);
+		assertEquals("zone-2", status.getZoneName());
+		assertEquals("port-2", status.getPortName());
+		assertEquals(OpStatus.RESERVED, status.getOpStatus());
+		assertEquals(TransmitStatus.ARRIVED, status.getTransmitStatus());
+	}
+
+	@Test
+	public void loadedContainerHasLessFreeSize() {
+		UUID id = UUID.randomUUID();
+		LocalDateTime now = LocalDateTime.now();
+		batch(new ContainerCreated(id, 40f, ZONE, PORT, now), reserved(id, now));
+		batch(new ContainerOpLoaded(id, 15.5f, now));
+
+		ContainerStatus status = repository.findById(id).orElseThrow(IllegalStateException::new);
+		assertEquals(OpStatus.LOADED, status.getOpStatus());
+		assertEquals(15.5f, status.getUsedSize(), 0f);
+		assertEquals(24.5d, status.getFreeSize(), 0d);
+		// the location query goes by the free size left, not the size
+		assertEquals(1, projection.getContainersAtLocation(
+				new ContainersAtLocationQuery(ZONE, PORT, OpStatus.LOADED, 24.5f, 10)).size());
+		assertEquals(0, projection.getContainersAtLocation(
+				new ContainersAtLocationQuery(ZONE, PORT, OpStatus.LOADED, 25f, 10)).size());
+	}
+
+	// free sizes repeat, so the cursor needs the id to go past the ties at a page's end
+	@Test
+	public void locationPagesFollowTheCursor() {
+		LocalDateTime now = LocalDateTime.now();
+		Set<UUID> expected = new HashSet<>();
+		List<Object> events = new ArrayList<>();
+		float[] sizes = {10f, 20f, 20f, 20f, 20f, 30f, 30f, 40f};
+		for (float size : sizes) {
+			UUID id = UUID.randomUUID();
+			events.add(new ContainerCreated(id, size, ZONE, PORT, now));
+			if (size >= 15f) {
+				expected.add(id);
+			}
+		}
+		// somewhere else, not to be answered
+		events.add(new ContainerCreated(UUID.randomUUID(), 20f, "zone-2", PORT, now));
+		batch(events.toArray());
+
+		List<ContainerStatus> found = new ArrayList<>();
+		ContainersAtLocationQuery query = new ContainersAtLocationQuery(ZONE, PORT, OpStatus.RELEASED, 15f, 3);
+		List<ContainerStatus> page = projection.getContainersAtLocation(query);
+		while (!page.isEmpty()) {
+			assertTrue(page.size() <= 3);
+			found.addAll(page);
+			page = projection.getContainersAtLocation(query = query.next(page.get(page.size() - 1)));
+		}
+
+		assertEquals(expected.size(), found.size());
+		assertEquals(expected, ids(found));
+		for (int i = 1; i < found.size(); i++) {
+			assertTrue(found.get(i - 1).getFreeSize() <= found.get(i).getFreeSize());
+		}
+	}
+
+	@Test
+	public void statePagesFollowTheCursor() {
+		LocalDateTime now = LocalDateTime.now();
+		Set<UUID> expected = new HashSet<>();
+		List<Object> events = new ArrayList<>();
+		for (int i = 0; i < 7; i++) {
+			UUID id = UUID.randomUUID();
+			events.add(new ContainerCreated(id, 20f, ZONE, PORT, now));
+			if (i % 3 == 0) {
+				// boarded, so no longer off-boarded
+				events.add(new ContainerTransBoarded(id, now));
+			} else {
+				expected.add(id);
+			}
+		}
+		batch(events.toArray());
+
+		List<ContainerStatus> found = new ArrayList<>();
+		ContainersInStateQuery query = new ContainersInStateQuery(OpStatus.RELEASED, TransmitStatus.OFF_BOARDED, 2);
+		List<ContainerStatus> page = projection.getContainersInState(query);
+		while (!page.isEmpty()) {
+			assertTrue(page.size() <= 2);
+			found.addAll(page);
+			page = projection.getContainersInState(query = query.next(page.get(page.size() - 1)));
+		}
+
+		assertEquals(expected.size(), found.size());
+		assertEquals(expected, ids(found));
+	}
+
+	// one processing batch, its changes written as it commits, as the tracking processor does
+	private void batch(Object... events) {
+		new TransactionTemplate(transactionManager).execute(status -> {
+			DefaultUnitOfWork<?> batch = DefaultUnitOfWork.startAndGet(GenericEventMessage.asEventMessage(events[0]));
+			try {
+				for (Object event : events) {
+					handler.handle(GenericEventMessage.asEventMessage(event));
+				}
+			} catch (Exception e) {
+				batch.rollback(e);
+				throw new IllegalStateException(e);
+			}
+			batch.commit();
+			return null;
+		});
+	}
+
+	private static ContainerOpReserved reserved(UUID id, LocalDateTime now) {
+		return new ContainerOpReserved(id, now, UUID.randomUUID(), TransmitType.STANDARD, "zone-2", "port-2",
+				ZONE, PORT);
+	}
+
+	private static Set<UUID> ids(List<ContainerStatus> statuses) {
+		return statuses.stream().map(ContainerStatus::getId).collect(Collectors.toSet());
+	}
+
+}
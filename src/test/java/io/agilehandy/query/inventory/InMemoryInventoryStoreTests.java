@@ -0,0 +1,224 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.inventory;
+
+import org.axonframework.common.transaction.NoTransactionManager;
+import org.axonframework.eventhandling.EventMessageHandler;
+import org.axonframework.eventhandling.GapAwareTrackingToken;
+import org.axonframework.eventhandling.GenericEventMessage;
+import org.axonframework.eventhandling.GlobalSequenceTrackingToken;
+import org.axonframework.eventhandling.SimpleEventHandlerInvoker;
+import org.axonframework.eventhandling.TrackingEventProcessor;
+import org.axonframework.eventhandling.TrackingToken;
+import org.axonframework.eventhandling.tokenstore.TokenStore;
+import org.axonframework.eventhandling.tokenstore.inmemory.InMemoryTokenStore;
+import org.axonframework.eventsourcing.eventstore.EmbeddedEventStore;
+import org.axonframework.eventsourcing.eventstore.EventStore;
+import org.axonframework.eventsourcing.eventstore.inmemory.InMemoryEventStorageEngine;
+import org.axonframework.messaging.unitofwork.DefaultUnitOfWork;
+import org.axonframework.serialization.xml.XStreamSerializer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * A snapshot of the {@link InMemoryInventoryStore} restores to the same
+ * counts and segment tokens, and one ahead of the event store, or with
+ * counts but no tokens, is dropped. The tokens come from the unit of work
+ * resources a tracking processor puts in every batch.
+ *
+ * @author Haytham Mohamed
+ **/
+public class InMemoryInventoryStoreTests {
+
+	static final int SEGMENTS = 2;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	final InventoryKey origin = new InventoryKey("zone-1", "port-1");
+	final InventoryKey destination = new InventoryKey("zone-2", "port-2");
+	// well past the millisecond precision a snapshot keeps, to check it is cut there and nowhere else
+	final LocalDateTime when = LocalDateTime.of(2019, 3, 1, 12, 30, 15, 123_000_000);
+
+	final TrackingToken first = GapAwareTrackingToken.newInstance(41, new TreeSet<>(Arrays.asList(38L, 40L)));
+	final TrackingToken second = new GlobalSequenceTrackingToken(42);
+
+	InventoryProperties.Memory memory;
+	InMemoryInventoryStore store;
+	InMemoryInventoryStore restored;
+
+	@Before
+	public void setUp() {
+		memory = new InventoryProperties.Memory();
+		memory.setInitialCapacity(16);
+		memory.getSnapshot().setFile(folder.getRoot().toPath().resolve("inventory.snapshot").toString());
+		store = new InMemoryInventoryStore(memory, XStreamSerializer.builder().build());
+		store.restore(eventStore(100), SEGMENTS);
+	}
+
+	@After
+	public void tearDown() {
+		memory.getSnapshot().setEnabled(false);
+		store.shutdown();
+		if (restored != null) {
+			restored.shutdown();
+		}
+	}
+
+	@Test
+	public void snapshotRestoresCountsAndTokens() throws Exception {
+		batch(0, first, origin, created(3, 1));
+		batch(1, second, destination, created(2, 0));
+		// more zone/ports than the initial capacity, so the restored table has to grow too
+		for (int i = 0; i < 40; i++) {
+			batch(i % SEGMENTS, i % SEGMENTS == 0 ? first : second, new InventoryKey("zone-3", "port-" + i),
+					created(i % 5 + 1, i % 2));
+		}
+		store.snapshot();
+
+		restored = new InMemoryInventoryStore(memory, XStreamSerializer.builder().build());
+		TokenStore tokens = restored.restore(eventStore(100), SEGMENTS);
+
+		assertEquals(first, tokens.fetchToken(InventoryProcessorLag.PROCESSOR, 0));
+		assertEquals(second, tokens.fetchToken(InventoryProcessorLag.PROCESSOR, 1));
+		List<Inventory> before = store.findRanked(null, 100);
+		assertEquals(42, before.size());
+		assertEquals(before, restored.findRanked(null, 100));
+		assertEquals(store.find(origin), restored.find(origin));
+		assertEquals(when, restored.find(origin).getLastUpdated());
+	}
+
+	@Test
+	public void snapshotAheadOfTheEventStoreIsDropped() throws Exception {
+		batch(0, first, origin, created(1, 0));
+		store.snapshot();
+
+		restored = new InMemoryInventoryStore(memory, XStreamSerializer.builder().build());
+		TokenStore tokens = restored.restore(eventStore(10), SEGMENTS);
+
+		assertNull(restored.find(origin));
+		assertEquals(Collections.emptyList(), restored.findRanked(null, 10));
+		assertEquals(0, tokens.fetchSegments(InventoryProcessorLag.PROCESSOR).length);
+	}
+
+	// counts applied outside a processor's batch have no token to resume from, so they'd be counted again
+	@Test
+	public void snapshotWithoutTokensIsDropped() throws Exception {
+		store.apply(Collections.singletonMap(origin, created(1, 0)), when);
+		store.snapshot();
+
+		restored = new InMemoryInventoryStore(memory, XStreamSerializer.builder().build());
+		TokenStore tokens = restored.restore(eventStore(100), SEGMENTS);
+
+		assertNull(restored.find(origin));
+		assertEquals(0, tokens.fetchSegments(InventoryProcessorLag.PROCESSOR).length);
+	}
+
+	// the segment and token resource keys are the processor's own, not something this store can set itself
+	@Test
+	public void trackingProcessorBatchesCarryTheirToken() throws Exception {
+		EmbeddedEventStore eventStore = EmbeddedEventStore.builder()
+				.storageEngine(new InMemoryEventStorageEngine())
+				.build();
+		TrackingEventProcessor processor = TrackingEventProcessor.builder()
+				.name(InventoryProcessorLag.PROCESSOR)
+				.eventHandlerInvoker(SimpleEventHandlerInvoker.builder()
+						.eventHandlers((EventMessageHandler) event -> {
+							store.apply(Collections.singletonMap(origin, created(1, 0)), when);
+							return null;
+						})
+						.build())
+				.messageSource(eventStore)
+				.tokenStore(new InMemoryTokenStore())
+				.transactionManager(NoTransactionManager.INSTANCE)
+				.build();
+		try {
+			eventStore.publish(GenericEventMessage.asEventMessage("first"), GenericEventMessage.asEventMessage("second"));
+			processor.start();
+			long deadline = System.currentTimeMillis() + 10_000;
+			while (!handledBoth() && System.currentTimeMillis() < deadline) {
+				Thread.sleep(20);
+			}
+			assertTrue(handledBoth());
+		} finally {
+			processor.shutDown();
+			eventStore.shutDown();
+		}
+		store.snapshot();
+
+		restored = new InMemoryInventoryStore(memory, XStreamSerializer.builder().build());
+		TokenStore tokens = restored.restore(eventStore(100), SEGMENTS);
+
+		assertNotNull(tokens.fetchToken(InventoryProcessorLag.PROCESSOR, 0));
+		assertEquals(store.find(origin), restored.find(origin));
+	}
+
+	// applied along with the batch's token, once the batch commits
+	private boolean handledBoth() {
+		Inventory inventory = store.find(origin);
+		return inventory != null && inventory.getAvailableContainers() == 2;
+	}
+
+	// one processing batch of a segment, committed with the token it reached
+	private void batch(int segment, TrackingToken token, InventoryKey key, InventoryDelta delta) {
+		DefaultUnitOfWork<?> batch = DefaultUnitOfWork.startAndGet(GenericEventMessage.asEventMessage("batch"));
+		batch.resources().put("Processor[" + InventoryProcessorLag.PROCESSOR + "]/SegmentId", segment);
+		batch.resources().put("Processor[" + InventoryProcessorLag.PROCESSOR + "]/Token", token);
+		Map<InventoryKey, InventoryDelta> deltas = new HashMap<>();
+		deltas.put(key, delta);
+		store.apply(deltas, when);
+		batch.commit();
+	}
+
+	private static InventoryDelta created(int containers, int reserved) {
+		InventoryDelta delta = new InventoryDelta();
+		for (int i = 0; i < containers; i++) {
+			delta.created();
+		}
+		for (int i = 0; i < reserved; i++) {
+			delta.reserved();
+			delta.forecast();
+		}
+		return delta;
+	}
+
+	private static EventStore eventStore(long head) {
+		EventStore eventStore = mock(EventStore.class);
+		when(eventStore.createHeadToken()).thenReturn(new GlobalSequenceTrackingToken(head));
+		return eventStore;
+	}
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.inventory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link InventoryKey} hashing and equality, alone and as the key of the
+ * per-batch delta map, over 1024 zone/ports. Lookups use equal keys rather
+ * than the same instances, as the projection builds a new key per event.
+ *
+ * @author Haytham Mohamed
+ **/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InventoryKeyBenchmark {
+
+	static final int KEYS = 1024;
+
+	final InventoryKey[] keys = new InventoryKey[KEYS];
+	final InventoryKey[] copies = new InventoryKey[KEYS];
+	final Map<InventoryKey, InventoryDelta> deltas = new HashMap<>();
+	int next;
+
+	@Setup
+	public void setUp() {
+		for (int i = 0; i < KEYS; i++) {
+			keys[i] = new InventoryKey("zone-" + i / 32, "port-" + i % 32);
+			copies[i] = new InventoryKey(new String(keys[i].getZoneName()), new String(keys[i].getPortName()));
+			deltas.put(keys[i], new InventoryDelta());
+		}
+	}
+
+	private int next() {
+		return next = (next + 1) & (KEYS - 1);
+	}
+
+	@Benchmark
+	public int hash() {
+		return copies[next()].hashCode();
+	}
+
+	@Benchmark
+	public boolean equalKeys() {
+		int i = next();
+		return keys[i].equals(copies[i]);
+	}
+
+	// same zone, another port: the strings only differ towards their end
+	@Benchmark
+	public boolean otherKeys() {
+		int i = next();
+		return keys[i].equals(copies[i ^ 1]);
+	}
+
+	@Benchmark
+	public InventoryDelta lookup() {
+		return deltas.get(copies[next()]);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(InventoryKeyBenchmark.class.getSimpleName())
+				.build()).run();
+	}
+
+}
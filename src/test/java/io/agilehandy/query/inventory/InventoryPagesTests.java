@@ -0,0 +1,109 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.inventory;
+
+import org.axonframework.messaging.responsetypes.ResponseType;
+import org.axonframework.queryhandling.QueryGateway;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@link InventoryPages} asks for the first page once the stream is read,
+ * and for no page after one short of the page size.
+ *
+ * @author Haytham Mohamed
+ **/
+public class InventoryPagesTests {
+
+	static final String ZONE = "zone-1";
+
+	final QueryGateway queryGateway = mock(QueryGateway.class);
+
+	@Test
+	public void nothingAskedForBeforeTheStreamIsRead() {
+		answering(3);
+
+		Stream<Inventory> inventories = InventoryPages.zone(queryGateway, ZONE, 2);
+
+		verify(queryGateway, never()).query(any(), any(ResponseType.class));
+		assertEquals(3, inventories.count());
+	}
+
+	@Test
+	public void shortPageIsTheLast() {
+		answering(5);
+
+		assertEquals(ports(5), InventoryPages.zone(queryGateway, ZONE, 2)
+				.map(inventory -> inventory.getKey().getPortName())
+				.collect(Collectors.toList()));
+		verify(queryGateway, times(3)).query(any(), any(ResponseType.class));
+	}
+
+	// a full last page can't tell there is nothing after it
+	@Test
+	public void fullPageIsFollowedByOneMore() {
+		answering(4);
+
+		assertEquals(4, InventoryPages.zone(queryGateway, ZONE, 2).count());
+		verify(queryGateway, times(3)).query(any(), any(ResponseType.class));
+	}
+
+	@Test
+	public void stoppingEarlyAsksForNoMore() {
+		answering(5);
+
+		assertEquals(2, InventoryPages.zone(queryGateway, ZONE, 2).limit(2).count());
+		verify(queryGateway, times(1)).query(any(), any(ResponseType.class));
+	}
+
+	// the zone's ports in order, a page at a time after the last port of the previous one
+	private void answering(int ports) {
+		List<String> names = ports(ports);
+		when(queryGateway.query(any(ZoneInventoryQuery.class), any(ResponseType.class))).thenAnswer(invocation -> {
+			ZoneInventoryQuery query = invocation.getArgument(0);
+			return CompletableFuture.completedFuture(names.stream()
+					.filter(name -> query.getAfterPortName() == null || name.compareTo(query.getAfterPortName()) > 0)
+					.limit(query.getLimit())
+					.map(name -> new Inventory(new InventoryKey(ZONE, name), 1, 0, LocalDateTime.now()))
+					.collect(Collectors.toList()));
+		});
+	}
+
+	private static List<String> ports(int count) {
+		List<String> names = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			names.add("port-" + i);
+		}
+		return names;
+	}
+
+}
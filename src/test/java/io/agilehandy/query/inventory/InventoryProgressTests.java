@@ -0,0 +1,131 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.inventory;
+
+import org.axonframework.config.EventProcessingConfiguration;
+import org.axonframework.eventhandling.EventTrackerStatus;
+import org.axonframework.eventhandling.GlobalSequenceTrackingToken;
+import org.axonframework.eventhandling.Segment;
+import org.axonframework.eventhandling.TrackingEventProcessor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@link InventoryProgress} only reports a position reached once the segments
+ * claimed here cover the whole event stream, not just the ones it happens to see.
+ *
+ * @author Haytham Mohamed
+ **/
+public class InventoryProgressTests {
+
+	final Map<Integer, EventTrackerStatus> claimed = new HashMap<>();
+
+	InventoryProgress progress;
+
+	@Before
+	public void setUp() {
+		TrackingEventProcessor processor = mock(TrackingEventProcessor.class);
+		when(processor.processingStatus()).thenReturn(claimed);
+		EventProcessingConfiguration eventProcessing = mock(EventProcessingConfiguration.class);
+		when(eventProcessing.eventProcessor(InventoryProcessorLag.PROCESSOR, TrackingEventProcessor.class))
+				.thenReturn(Optional.of(processor));
+
+		InventoryProperties properties = new InventoryProperties();
+		properties.getConsistency().setTimeout(Duration.ofMillis(200));
+		progress = new InventoryProgress(eventProcessing, mock(InventoryReplay.class), properties);
+	}
+
+	@After
+	public void tearDown() {
+		progress.shutdown();
+	}
+
+	@Test
+	public void allSegmentsPastThePosition() throws Exception {
+		for (Segment segment : Segment.splitBalanced(Segment.ROOT_SEGMENT, 3)) {
+			claim(segment, 10);
+		}
+		progress.reached(10).get(1, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void oneSegmentBehind() throws Exception {
+		List<Segment> segments = Segment.splitBalanced(Segment.ROOT_SEGMENT, 1);
+		claim(segments.get(0), 10);
+		claim(segments.get(1), 9);
+		assertTimesOut(progress.reached(10));
+	}
+
+	// another instance holds the other half of the stream, which may not have got there yet
+	@Test
+	public void segmentsClaimedElsewhere() throws Exception {
+		claim(Segment.ROOT_SEGMENT.split()[0], 10);
+		assertTimesOut(progress.reached(10));
+	}
+
+	// three of four quarters are claimed here, the last quarter by no one while its claim moves
+	@Test
+	public void unevenSegmentsWithOneUnclaimed() throws Exception {
+		Segment[] halves = Segment.ROOT_SEGMENT.split();
+		Segment[] quarters = halves[1].split();
+		claim(halves[0], 10);
+		claim(quarters[0], 10);
+		assertTimesOut(progress.reached(10));
+
+		claim(quarters[1], 10);
+		progress.reached(10).get(1, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void nothingClaimed() throws Exception {
+		assertTimesOut(progress.reached(0));
+	}
+
+	private void claim(Segment segment, long position) {
+		EventTrackerStatus status = mock(EventTrackerStatus.class);
+		when(status.getSegment()).thenReturn(segment);
+		when(status.getTrackingToken()).thenReturn(new GlobalSequenceTrackingToken(position));
+		claimed.put(segment.getSegmentId(), status);
+	}
+
+	private static void assertTimesOut(CompletableFuture<Void> reached) throws Exception {
+		try {
+			reached.get(1, TimeUnit.SECONDS);
+			fail("reported reached");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof TimeoutException);
+		}
+	}
+
+}
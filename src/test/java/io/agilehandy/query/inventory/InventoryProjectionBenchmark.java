@@ -0,0 +1,161 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.inventory;
+
+import io.agilehandy.command.api.TransmitType;
+import io.agilehandy.command.api.evt.ContainerCreated;
+import io.agilehandy.command.api.evt.ContainerOpReserved;
+import org.axonframework.common.transaction.TransactionManager;
+import org.axonframework.eventhandling.AnnotationEventHandlerAdapter;
+import org.axonframework.eventhandling.EventMessage;
+import org.axonframework.eventhandling.GenericEventMessage;
+import org.axonframework.messaging.unitofwork.BatchingUnitOfWork;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The inventory projection handling batches of created and reserved
+ * containers spread over 16 zone/ports on the embedded HSQLDB, each batch in
+ * one transaction as a tracking processor runs it. Scores are events
+ * projected per second, with the changes written behind once per batch or
+ * after every event.
+ *
+ * @author Haytham Mohamed
+ **/
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 3)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InventoryProjectionBenchmark {
+
+	static final int PORTS = 16;
+
+	// the inventory read model and nothing else of the application, so no client runs on start
+	@Configuration
+	@EnableAutoConfiguration
+	@Import({InventoryConfig.class, InventoryProjection.class, InventorySequencingPolicy.class,
+			InventoryUpdatePublisher.class, InventoryProgress.class, InventoryReplay.class})
+	static class InventoryOnly {
+	}
+
+	@State(Scope.Benchmark)
+	public static class Projection {
+
+		@Param({"1", "10", "100", "1000"})
+		int batchSize;
+
+		@Param({"true", "false"})
+		boolean writeBehind;
+
+		ConfigurableApplicationContext context;
+		AnnotationEventHandlerAdapter adapter;
+		TransactionManager transactionManager;
+
+		@Setup(Level.Trial)
+		public void start() {
+			context = new SpringApplicationBuilder(InventoryOnly.class)
+					.profiles("embedded")
+					.web(WebApplicationType.NONE)
+					.properties("logging.level.root=WARN")
+					// the batches are handed to the projection here, no tracking threads polling alongside
+					.run("--axon.eventhandling.processors.inventory.mode=subscribing",
+							"--acme.inventory.write-behind=" + writeBehind);
+			adapter = new AnnotationEventHandlerAdapter(context.getBean(InventoryProjection.class));
+			transactionManager = context.getBean(TransactionManager.class);
+		}
+
+		@TearDown(Level.Trial)
+		public void stop() {
+			context.close();
+		}
+	}
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Counters {
+
+		public long events;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			events = 0;
+		}
+	}
+
+	@Benchmark
+	public void handleBatch(Projection projection, Counters counters) throws Exception {
+		BatchingUnitOfWork<EventMessage<?>> batch = new BatchingUnitOfWork<>(batch(projection.batchSize));
+		batch.attachTransaction(projection.transactionManager);
+		batch.executeWithResult(() -> projection.adapter.handle(batch.getMessage()));
+		counters.events += projection.batchSize;
+	}
+
+	// every other container created is reserved away right after, towards the next zone/port
+	static List<EventMessage<?>> batch(int size) {
+		List<EventMessage<?>> events = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			int port = i / 2 % PORTS;
+			UUID id = UUID.randomUUID();
+			if (i % 2 == 0) {
+				events.add(GenericEventMessage.asEventMessage(
+						new ContainerCreated(id, 500f, "zone-" + port, "port-" + port, LocalDateTime.now())));
+			} else {
+				int dest = (port + 1) % PORTS;
+				events.add(GenericEventMessage.asEventMessage(
+						new ContainerOpReserved(id, LocalDateTime.now(), UUID.randomUUID(), TransmitType.STANDARD,
+								"zone-" + dest, "port-" + dest, "zone-" + port, "port-" + port)));
+			}
+		}
+		return events;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(InventoryProjectionBenchmark.class.getSimpleName())
+				.build()).run();
+	}
+
+}
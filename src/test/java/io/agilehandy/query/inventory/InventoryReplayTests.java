@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.inventory;
+
+import org.axonframework.common.transaction.NoTransactionManager;
+import org.axonframework.config.EventProcessingConfiguration;
+import org.axonframework.eventhandling.GlobalSequenceTrackingToken;
+import org.axonframework.eventhandling.TrackingEventProcessor;
+import org.axonframework.eventhandling.tokenstore.TokenStore;
+import org.axonframework.eventhandling.tokenstore.inmemory.InMemoryTokenStore;
+import org.axonframework.eventsourcing.eventstore.EventStore;
+import org.axonframework.springboot.EventProcessorProperties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * An empty RTI_MT next to tokens past the first event, as a replay stopped
+ * midway leaves them, replays the whole stream rather than loading only the
+ * counts of the events after the tokens.
+ *
+ * @author Haytham Mohamed
+ **/
+public class InventoryReplayTests {
+
+	static final int SEGMENTS = 4;
+
+	final TokenStore tokenStore = new InMemoryTokenStore();
+	final InventoryRepository repository = mock(InventoryRepository.class);
+
+	InventoryReplay replay;
+
+	@Before
+	public void setUp() {
+		EventProcessorProperties processors = new EventProcessorProperties();
+		EventProcessorProperties.ProcessorSettings settings = new EventProcessorProperties.ProcessorSettings();
+		settings.setMode(EventProcessorProperties.Mode.TRACKING);
+		processors.getProcessors().put(InventoryProcessorLag.PROCESSOR, settings);
+		EventProcessingConfiguration eventProcessing = mock(EventProcessingConfiguration.class);
+		when(eventProcessing.eventProcessor(InventoryProcessorLag.PROCESSOR, TrackingEventProcessor.class))
+				.thenReturn(Optional.empty());
+
+		replay = new InventoryReplay(repository, mock(InventoryStore.class), mock(InventoryUpdatePublisher.class),
+				eventProcessing, processors, mock(EventStore.class), tokenStore, NoTransactionManager.INSTANCE,
+				new InventoryProperties());
+	}
+
+	@After
+	public void tearDown() {
+		replay.shutdown();
+	}
+
+	@Test
+	public void tokensOfAnInterruptedReplayStartOver() {
+		tokenStore.initializeTokenSegments(InventoryProcessorLag.PROCESSOR, SEGMENTS);
+		tokenStore.storeToken(new GlobalSequenceTrackingToken(500), InventoryProcessorLag.PROCESSOR, 1);
+		tokenStore.storeToken(new GlobalSequenceTrackingToken(700), InventoryProcessorLag.PROCESSOR, 3);
+		when(repository.count()).thenReturn(0L);
+
+		replay.startIfEmpty();
+
+		assertTrue(replay.isReplaying());
+		assertEquals(SEGMENTS, tokenStore.fetchSegments(InventoryProcessorLag.PROCESSOR).length);
+		for (int segment : tokenStore.fetchSegments(InventoryProcessorLag.PROCESSOR)) {
+			assertNull(tokenStore.fetchToken(InventoryProcessorLag.PROCESSOR, segment));
+		}
+	}
+
+	@Test
+	public void tokensNextToLoadedRowsStay() {
+		tokenStore.initializeTokenSegments(InventoryProcessorLag.PROCESSOR, SEGMENTS);
+		tokenStore.storeToken(new GlobalSequenceTrackingToken(500), InventoryProcessorLag.PROCESSOR, 1);
+		when(repository.count()).thenReturn(12L);
+
+		replay.startIfEmpty();
+
+		assertEquals(false, replay.isReplaying());
+		assertEquals(new GlobalSequenceTrackingToken(500), tokenStore.fetchToken(InventoryProcessorLag.PROCESSOR, 1));
+	}
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.inventory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counter upserts from four writers at once, each its own transaction as the
+ * projection segments commit them, all on one hot zone/port or spread over
+ * several. Scores are transactions per second.
+ *
+ * @author Haytham Mohamed
+ **/
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 3)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class InventoryRepositoryBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class Repository {
+
+		@Param({"1", "16"})
+		int ports;
+
+		ConfigurableApplicationContext context;
+		InventoryRepository repository;
+		TransactionTemplate transaction;
+
+		@Setup(Level.Trial)
+		public void start() {
+			context = new SpringApplicationBuilder(InventoryProjectionBenchmark.InventoryOnly.class)
+					.profiles("embedded")
+					.web(WebApplicationType.NONE)
+					.properties("logging.level.root=WARN")
+					.run("--axon.eventhandling.processors.inventory.mode=subscribing");
+			repository = context.getBean(InventoryRepository.class);
+			transaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+		}
+
+		@TearDown(Level.Trial)
+		public void stop() {
+			context.close();
+		}
+	}
+
+	// a container created at one zone/port, whether or not its row exists already
+	@Benchmark
+	public void upsert(Repository repository) {
+		int port = ThreadLocalRandom.current().nextInt(repository.ports);
+		InventoryDelta delta = new InventoryDelta();
+		delta.created();
+		repository.transaction.execute(status -> {
+			repository.repository.applyDeltas(
+					Collections.singletonMap(new InventoryKey("zone-" + port, "port-" + port), delta),
+					LocalDateTime.now());
+			return null;
+		});
+	}
+
+	// a container reserved away from one zone/port and forecast at the next
+	@Benchmark
+	public void update(Repository repository) {
+		int origin = ThreadLocalRandom.current().nextInt(repository.ports);
+		int dest = (origin + 1) % repository.ports;
+		Map<InventoryKey, InventoryDelta> deltas = new HashMap<>();
+		deltas.computeIfAbsent(new InventoryKey("zone-" + origin, "port-" + origin), k -> new InventoryDelta()).reserved();
+		deltas.computeIfAbsent(new InventoryKey("zone-" + dest, "port-" + dest), k -> new InventoryDelta()).forecast();
+		repository.transaction.execute(status -> {
+			repository.repository.applyDeltas(deltas, LocalDateTime.now());
+			return null;
+		});
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(InventoryRepositoryBenchmark.class.getSimpleName())
+				.build()).run();
+	}
+
+}
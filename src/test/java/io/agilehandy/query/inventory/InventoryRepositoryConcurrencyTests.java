@@ -0,0 +1,190 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.inventory;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.sql.SQLWarning;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Many writers counting against the same zone/ports at once, each batch in
+ * its own transaction as the projection segments do, must not lose a count.
+ * Counts against a zone/port without a row are dropped without leaving a
+ * warning behind.
+ *
+ * @author Haytham Mohamed
+ **/
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class InventoryRepositoryConcurrencyTests {
+
+	static final int WRITERS = 8;
+	static final int BATCHES = 250;
+
+	final InventoryKey origin = new InventoryKey("zone-1", "port-1");
+	final InventoryKey destination = new InventoryKey("zone-2", "port-2");
+
+	@Autowired
+	InventoryRepository repository;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	// nothing here rolls back, so each test starts from an empty table
+	@Before
+	public void setUp() {
+		repository.deleteAllRows();
+	}
+
+	@Test
+	public void concurrentDeltasAreAllCounted() throws Exception {
+		runWriters(w -> batch());
+
+		int batches = WRITERS * BATCHES;
+		Inventory atOrigin = repository.findById(origin).orElseThrow(IllegalStateException::new);
+		Inventory atDestination = repository.findById(destination).orElseThrow(IllegalStateException::new);
+		assertEquals(batches, atOrigin.getAvailableContainers());
+		assertEquals(0, atOrigin.getForecastContainers());
+		assertEquals(batches, atDestination.getAvailableContainers());
+		assertEquals(batches, atDestination.getForecastContainers());
+	}
+
+	// half the writers upsert the origin and update the destination, the other half the other way round
+	@Test
+	public void crossedUpsertsAndUpdatesAreAllCounted() throws Exception {
+		// both rows exist up front, so only the deltas that create containers upsert
+		Map<InventoryKey, InventoryDelta> seed = new HashMap<>();
+		seed.put(origin, new InventoryDelta());
+		seed.put(destination, new InventoryDelta());
+		seed.values().forEach(InventoryDelta::created);
+		new TransactionTemplate(transactionManager).execute(status -> {
+			repository.applyDeltas(seed, LocalDateTime.now());
+			return null;
+		});
+		runWriters(this::crossed);
+
+		// each batch creates two at one end and forecasts one at the other
+		int perSide = (WRITERS / 2) * BATCHES;
+		Inventory atOrigin = repository.findById(origin).orElseThrow(IllegalStateException::new);
+		Inventory atDestination = repository.findById(destination).orElseThrow(IllegalStateException::new);
+		assertEquals(2 * perSide + 1, atOrigin.getAvailableContainers());
+		assertEquals(perSide, atOrigin.getForecastContainers());
+		assertEquals(2 * perSide + 1, atDestination.getAvailableContainers());
+		assertEquals(perSide, atDestination.getForecastContainers());
+	}
+
+	// a forecast ahead of the first container created at the zone/port
+	@Test
+	public void deltaWithoutARowIsDroppedQuietly() {
+		InventoryDelta forecast = new InventoryDelta();
+		forecast.forecast();
+		SQLWarning warnings = new TransactionTemplate(transactionManager).execute(status -> {
+			repository.applyDeltas(Collections.singletonMap(destination, forecast), LocalDateTime.now());
+			return jdbcTemplate.execute((ConnectionCallback<SQLWarning>) connection -> connection.getWarnings());
+		});
+
+		assertNull(warnings);
+		assertFalse(repository.findById(destination).isPresent());
+	}
+
+	private void runWriters(IntFunction<Map<InventoryKey, InventoryDelta>> batches) throws Exception {
+		TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+		ExecutorService writers = Executors.newFixedThreadPool(WRITERS);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<?>> done = new ArrayList<>();
+
+		for (int w = 0; w < WRITERS; w++) {
+			int writer = w;
+			done.add(writers.submit(() -> {
+				start.await();
+				for (int b = 0; b < BATCHES; b++) {
+					transaction.execute(status -> {
+						repository.applyDeltas(batches.apply(writer), LocalDateTime.now());
+						return null;
+					});
+				}
+				return null;
+			}));
+		}
+		start.countDown();
+		for (Future<?> writer : done) {
+			writer.get(1, TimeUnit.MINUTES);
+		}
+		writers.shutdown();
+	}
+
+	private Map<InventoryKey, InventoryDelta> crossed(int writer) {
+		Map<InventoryKey, InventoryDelta> deltas = new HashMap<>();
+		InventoryDelta created = new InventoryDelta();
+		created.created();
+		created.created();
+		InventoryDelta forecast = new InventoryDelta();
+		forecast.forecast();
+		deltas.put(writer % 2 == 0 ? origin : destination, created);
+		deltas.put(writer % 2 == 0 ? destination : origin, forecast);
+		return deltas;
+	}
+
+	// two containers created at the origin and one reserved away to the destination, where one is created too
+	private Map<InventoryKey, InventoryDelta> batch() {
+		Map<InventoryKey, InventoryDelta> deltas = new HashMap<>();
+		InventoryDelta atOrigin = new InventoryDelta();
+		atOrigin.created();
+		atOrigin.created();
+		atOrigin.reserved();
+		deltas.put(origin, atOrigin);
+
+		InventoryDelta atDestination = new InventoryDelta();
+		atDestination.created();
+		atDestination.forecast();
+		deltas.put(destination, atDestination);
+		return deltas;
+	}
+
+}
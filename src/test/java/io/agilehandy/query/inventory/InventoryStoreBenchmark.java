@@ -0,0 +1,170 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.inventory;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inventory queries against the RTI_MT table on the embedded HSQLDB, the same
+ * behind the inventory cache, and the in-memory store, over 1000 zone/ports.
+ * The footprint benchmarks report the heap taken per zone/port by the
+ * in-memory store and by a full inventory cache, the part of the JPA path
+ * held on the heap besides the database itself.
+ *
+ * @author Haytham Mohamed
+ **/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InventoryStoreBenchmark {
+
+	static final int ZONE_PORTS = 1000;
+	static final int FOOTPRINT_ZONE_PORTS = 100_000;
+
+	@State(Scope.Benchmark)
+	public static class Stores {
+
+		@Param({"jpa", "jpa-cached", "memory"})
+		String store;
+
+		ConfigurableApplicationContext context;
+		InventoryStore inventory;
+		InventoryKey[] keys;
+
+		@Setup(Level.Trial)
+		public void start() {
+			context = new SpringApplicationBuilder(InventoryProjectionBenchmark.InventoryOnly.class)
+					.profiles("embedded")
+					.web(WebApplicationType.NONE)
+					.properties("logging.level.root=WARN")
+					.run("--axon.eventhandling.processors.inventory.mode=subscribing",
+							"--acme.inventory.store=" + (store.equals("memory") ? "memory" : "jpa"),
+							"--acme.inventory.cache.enabled=" + store.equals("jpa-cached"),
+							"--acme.inventory.cache.max-size=" + ZONE_PORTS,
+							"--acme.inventory.memory.snapshot.enabled=false");
+			inventory = context.getBean(InventoryStore.class);
+			Map<InventoryKey, InventoryDelta> created = created(ZONE_PORTS);
+			inventory.apply(created, LocalDateTime.now());
+			keys = created.keySet().toArray(new InventoryKey[0]);
+		}
+
+		@TearDown(Level.Trial)
+		public void stop() {
+			context.close();
+		}
+	}
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Footprint {
+
+		public long bytesPerZonePort;
+	}
+
+	@Benchmark
+	public Inventory query(Stores stores) {
+		return stores.inventory.find(stores.keys[ThreadLocalRandom.current().nextInt(ZONE_PORTS)]);
+	}
+
+	// builds the whole structure every time, the counter holds the heap it retained
+	// and adds up over iterations, hence a single measured one
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 1, time = 1)
+	@Measurement(iterations = 1, time = 5)
+	public int footprintInMemoryStore(Footprint footprint) {
+		long before = usedHeap();
+		InventoryProperties.Memory memory = new InventoryProperties.Memory();
+		memory.getSnapshot().setEnabled(false);
+		InMemoryInventoryStore store = new InMemoryInventoryStore(memory, null);
+		store.apply(created(FOOTPRINT_ZONE_PORTS), LocalDateTime.now());
+		footprint.bytesPerZonePort = (usedHeap() - before) / FOOTPRINT_ZONE_PORTS;
+		store.shutdown();
+		return store.getZonePorts();
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 1, time = 1)
+	@Measurement(iterations = 1, time = 5)
+	public int footprintInventoryCache(Footprint footprint) {
+		long before = usedHeap();
+		InventoryCache cache = new InventoryCache(FOOTPRINT_ZONE_PORTS);
+		LocalDateTime now = LocalDateTime.now();
+		for (int port = 0; port < FOOTPRINT_ZONE_PORTS; port++) {
+			cache.get(new InventoryKey("zone-" + port, "port-" + port),
+					key -> Optional.of(new Inventory(key, 1, 0, now)));
+		}
+		footprint.bytesPerZonePort = (usedHeap() - before) / FOOTPRINT_ZONE_PORTS;
+		return cache.getSize();
+	}
+
+	// one container created at each zone/port
+	static Map<InventoryKey, InventoryDelta> created(int zonePorts) {
+		Map<InventoryKey, InventoryDelta> deltas = new HashMap<>();
+		for (int port = 0; port < zonePorts; port++) {
+			InventoryDelta delta = new InventoryDelta();
+			delta.created();
+			deltas.put(new InventoryKey("zone-" + port, "port-" + port), delta);
+		}
+		return deltas;
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(InventoryStoreBenchmark.class.getSimpleName())
+				.build()).run();
+	}
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.movement;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Publishing one movement to thousands of open streams, some of them on
+ * clients that take a millisecond per event. The processor's cost per
+ * movement should stay the same whichever share of the clients is slow,
+ * while their buffers stay at their size.
+ *
+ * Some clients may also stop reading altogether, their writes never
+ * returning. There are more of them than sender threads, so the events the
+ * other clients received, printed after each iteration, only keep coming
+ * if the stalled ones are evicted.
+ *
+ * @author Haytham Mohamed
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContainerMovementBrokerBenchmark {
+
+	static final int ZONES = 8;
+	static final int CONTAINERS = 1024;
+
+	@Param({"1000", "5000"})
+	int subscribers;
+
+	// one in this many subscribers is slow, 0 for none
+	@Param({"0", "10"})
+	int slowEvery;
+
+	@Param({"DROP_OLDEST", "CONFLATE"})
+	ContainerMovementProperties.Overflow overflow;
+
+	// subscribers whose writes block until the trial ends
+	@Param({"0", "8"})
+	int stalled;
+
+	ContainerMovementBroker broker;
+	final LongAdder delivered = new LongAdder();
+	final CountDownLatch release = new CountDownLatch(1);
+	long deliveredBefore;
+	long iterationStarted;
+	final UUID[] ids = new UUID[CONTAINERS];
+	int next;
+
+	// stands in for a client, writing an event takes as long as it is told, or until released when stalled
+	class Client extends SseEmitter {
+
+		private final long nanosPerEvent;
+		private final boolean stalls;
+
+		Client(long nanosPerEvent, boolean stalls) {
+			this.nanosPerEvent = nanosPerEvent;
+			this.stalls = stalls;
+		}
+
+		@Override
+		public void send(SseEventBuilder builder) throws IOException {
+			if (stalls) {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				throw new IOException("stalled client gone");
+			}
+			if (nanosPerEvent > 0) {
+				long until = System.nanoTime() + nanosPerEvent;
+				while (System.nanoTime() < until) {
+					Thread.yield();
+				}
+			}
+			delivered.increment();
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		ContainerMovementProperties properties = new ContainerMovementProperties();
+		properties.setOverflow(overflow);
+		properties.setMaxSubscribers(subscribers);
+		properties.setWriteTimeout(Duration.ofSeconds(1));
+		broker = new ContainerMovementBroker(new ObjectMapper().findAndRegisterModules(), properties,
+				new SimpleMeterRegistry());
+		for (int i = 0; i < subscribers; i++) {
+			long nanosPerEvent = slowEvery > 0 && i % slowEvery == 0 ? TimeUnit.MILLISECONDS.toNanos(1) : 0L;
+			// half follow a zone, a quarter a port of it, the rest everything
+			String zoneName = i % 4 < 2 ? "zone-" + i % ZONES : null;
+			String portName = i % 4 == 1 ? "port-" + i % 2 : null;
+			broker.subscribe(new Client(nanosPerEvent, i < stalled), zoneName, portName);
+		}
+		for (int i = 0; i < CONTAINERS; i++) {
+			ids[i] = UUID.randomUUID();
+		}
+	}
+
+	@Setup(Level.Iteration)
+	public void startCounting() {
+		deliveredBefore = delivered.sum();
+		iterationStarted = System.nanoTime();
+	}
+
+	@TearDown(Level.Iteration)
+	public void reportDelivered() {
+		double seconds = (System.nanoTime() - iterationStarted) / 1e9;
+		System.out.printf(" [delivered %.0f events/s, %d subscribers left]",
+				(delivered.sum() - deliveredBefore) / seconds, broker.getSubscriberCount());
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		release.countDown();
+		broker.shutdown();
+	}
+
+	@Benchmark
+	public void publish() {
+		int i = next = (next + 1) & (CONTAINERS - 1);
+		broker.publish(new ContainerMovement(ids[i], ContainerMovement.Type.DEPARTED,
+				"zone-" + i % ZONES, "port-" + i % 2, "zone-" + (i + 1) % ZONES, "port-" + (i + 1) % 2,
+				LocalDateTime.now()));
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(ContainerMovementBrokerBenchmark.class.getSimpleName())
+				.build()).run();
+	}
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.movement;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Clients that stop reading, more of them than there are sender threads,
+ * are evicted and don't keep the movements from the other clients.
+ *
+ * @author Haytham Mohamed
+ **/
+public class ContainerMovementBrokerTests {
+
+	static final int SENDER_THREADS = 2;
+
+	final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	final CountDownLatch release = new CountDownLatch(1);
+
+	ContainerMovementBroker broker;
+
+	@Before
+	public void setUp() {
+		ContainerMovementProperties properties = new ContainerMovementProperties();
+		properties.setSenderThreads(SENDER_THREADS);
+		properties.setWriteTimeout(Duration.ofMillis(50));
+		broker = new ContainerMovementBroker(new ObjectMapper().findAndRegisterModules(), properties, registry);
+	}
+
+	@After
+	public void tearDown() {
+		release.countDown();
+		broker.shutdown();
+	}
+
+	@Test
+	public void stalledClientsAreEvicted() throws Exception {
+		for (int i = 0; i < SENDER_THREADS + 1; i++) {
+			broker.subscribe(new Client(true), null, null);
+		}
+		Client healthy = new Client(false);
+		broker.subscribe(healthy, null, null);
+
+		long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+		while ((healthy.received.get() < 100 || broker.getSubscriberCount() > 1)
+				&& System.currentTimeMillis() < deadline) {
+			broker.publish(movement());
+			Thread.sleep(1);
+		}
+		assertTrue("received " + healthy.received.get(), healthy.received.get() >= 100);
+		assertEquals(1, broker.getSubscriberCount());
+		assertEquals(SENDER_THREADS + 1, registry.counter("acme.movements.evicted").count(), 0d);
+	}
+
+	@Test
+	public void slowClientWithinTheTimeoutStays() throws Exception {
+		Client slow = new Client(false) {
+			@Override
+			public void send(SseEventBuilder builder) throws IOException {
+				try {
+					Thread.sleep(5);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				super.send(builder);
+			}
+		};
+		broker.subscribe(slow, null, null);
+		for (int i = 0; i < 50; i++) {
+			broker.publish(movement());
+			Thread.sleep(1);
+		}
+		long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+		while (slow.received.get() < 50 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(50, slow.received.get());
+		assertEquals(1, broker.getSubscriberCount());
+	}
+
+	private static ContainerMovement movement() {
+		return new ContainerMovement(UUID.randomUUID(), ContainerMovement.Type.DEPARTED,
+				"zone-1", "port-1", "zone-2", "port-2", LocalDateTime.now());
+	}
+
+	// counts the events written to it, or blocks on every write until the test ends when stalled
+	class Client extends SseEmitter {
+
+		final AtomicInteger received = new AtomicInteger();
+		private final boolean stalls;
+
+		Client(boolean stalls) {
+			this.stalls = stalls;
+		}
+
+		@Override
+		public void send(SseEventBuilder builder) throws IOException {
+			if (stalls) {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				throw new IOException("stalled client gone");
+			}
+			received.incrementAndGet();
+		}
+	}
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.query.movement;
+
+import io.agilehandy.command.api.evt.ContainerCreated;
+import io.agilehandy.command.api.evt.ContainerTransBoarded;
+import io.agilehandy.query.container.ContainerStatus;
+import io.agilehandy.query.container.ContainerStatusRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The projection keeps the locations of the containers it saw most recently,
+ * up to its maximum, and looks up the others in the container status read
+ * model.
+ *
+ * @author Haytham Mohamed
+ **/
+public class ContainerMovementProjectionTests {
+
+	final ContainerMovementBroker broker = mock(ContainerMovementBroker.class);
+	final ContainerStatusRepository statuses = mock(ContainerStatusRepository.class);
+
+	ContainerMovementProjection projection;
+
+	@Before
+	public void setUp() {
+		ContainerMovementProperties properties = new ContainerMovementProperties();
+		properties.setMaxLocations(2);
+		projection = new ContainerMovementProjection(broker, statuses, properties);
+		when(statuses.findById(any())).thenReturn(Optional.empty());
+	}
+
+	@Test
+	public void leastRecentlySeenIsForgotten() {
+		UUID first = created("zone-1");
+		UUID second = created("zone-2");
+		// the first is seen again, so the second is the one to go
+		projection.on(new ContainerTransBoarded(first, LocalDateTime.now()));
+		created("zone-3");
+
+		projection.on(new ContainerTransBoarded(first, LocalDateTime.now()));
+		verify(statuses, never()).findById(first);
+
+		ContainerStatus status = new ContainerStatus();
+		status.setZoneName("zone-2");
+		status.setPortName("port-1");
+		when(statuses.findById(second)).thenReturn(Optional.of(status));
+		projection.on(new ContainerTransBoarded(second, LocalDateTime.now()));
+		projection.on(new ContainerTransBoarded(second, LocalDateTime.now()));
+		// looked up once, then remembered again
+		verify(statuses, times(1)).findById(second);
+
+		ArgumentCaptor<ContainerMovement> published = ArgumentCaptor.forClass(ContainerMovement.class);
+		verify(broker, times(4)).publish(published.capture());
+		assertEquals("zone-1", published.getAllValues().get(1).getZoneName());
+		assertEquals("zone-2", published.getAllValues().get(2).getZoneName());
+	}
+
+	private UUID created(String zoneName) {
+		UUID id = UUID.randomUUID();
+		projection.on(new ContainerCreated(id, 500f, zoneName, "port-1", LocalDateTime.now()));
+		return id;
+	}
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.serialization;
+
+import io.agilehandy.command.api.evt.ContainerCreated;
+import org.axonframework.serialization.SerializedObject;
+import org.axonframework.serialization.Serializer;
+import org.junit.Test;
+
+import java.beans.ConstructorProperties;
+import java.lang.reflect.Constructor;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Every container command and event written by the
+ * {@link ContainerBinarySerializer} reads back equal to what was written,
+ * with names in and outside the dictionary and with nulls, and events
+ * stored by the former serializer still read back.
+ *
+ * @author Haytham Mohamed
+ **/
+public class ContainerBinarySerializerTests {
+
+	final Serializer binary = ContainerSerializationBenchmark.binary();
+
+	@Test
+	public void everyEventRoundTrips() {
+		ContainerSerializationBenchmark.events().forEach((name, event) -> assertRoundTrip(event));
+	}
+
+	@Test
+	public void everyRegisteredTypeRoundTrips() throws Exception {
+		for (Class<?> type : SerializationConfig.containerMessageTypes()) {
+			// names in the dictionary, names outside it, and every field null
+			assertRoundTrip(instance(type, "zone-2"));
+			assertRoundTrip(instance(type, "yard-" + type.getSimpleName()));
+			assertRoundTrip(instance(type, null));
+		}
+	}
+
+	@Test
+	public void binaryFormStartsWithItsMarker() {
+		SerializedObject<byte[]> serialized = binary.serialize(
+				new ContainerCreated(UUID.randomUUID(), 500f, "zone-1", "port-1", LocalDateTime.now()), byte[].class);
+		assertEquals(ContainerBinarySerializer.MARKER, serialized.getData()[0]);
+	}
+
+	@Test
+	public void eventsOfTheFormerSerializerStillRead() {
+		Serializer xstream = ContainerSerializationBenchmark.xstream();
+		ContainerSerializationBenchmark.events().forEach((name, event) -> {
+			SerializedObject<byte[]> stored = xstream.serialize(event, byte[].class);
+			assertNotEquals(ContainerBinarySerializer.MARKER, stored.getData()[0]);
+			assertEquals(event, binary.deserialize(stored));
+		});
+	}
+
+	private void assertRoundTrip(Object message) {
+		SerializedObject<byte[]> serialized = binary.serialize(message, byte[].class);
+		assertEquals(ContainerBinarySerializer.MARKER, serialized.getData()[0]);
+		assertEquals(message, binary.deserialize(serialized));
+	}
+
+	// every constructor argument set from its type, null for all of them when no name is given
+	private static Object instance(Class<?> type, String name) throws Exception {
+		for (Constructor<?> constructor : type.getConstructors()) {
+			if (!constructor.isAnnotationPresent(ConstructorProperties.class)) {
+				continue;
+			}
+			Class<?>[] parameters = constructor.getParameterTypes();
+			Object[] args = new Object[parameters.length];
+			for (int i = 0; name != null && i < parameters.length; i++) {
+				args[i] = sample(parameters[i], name, i);
+			}
+			return constructor.newInstance(args);
+		}
+		throw new IllegalArgumentException(type + " has no constructor with @ConstructorProperties");
+	}
+
+	private static Object sample(Class<?> type, String name, int position) {
+		if (type == UUID.class) {
+			return UUID.randomUUID();
+		}
+		if (type == Float.class) {
+			return 100f * (position + 1) + 0.25f;
+		}
+		if (type == String.class) {
+			return name;
+		}
+		if (type == LocalDateTime.class) {
+			return LocalDateTime.of(2019, 3, 1, 12, 30, 15, 123_456_789);
+		}
+		if (type.isEnum()) {
+			Object[] constants = type.getEnumConstants();
+			return constants[position % constants.length];
+		}
+		throw new IllegalArgumentException("no sample value for " + type);
+	}
+
+}
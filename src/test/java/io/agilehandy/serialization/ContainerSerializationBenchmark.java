@@ -0,0 +1,141 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.serialization;
+
+import io.agilehandy.command.api.TransmitType;
+import io.agilehandy.command.api.evt.ContainerCreated;
+import io.agilehandy.command.api.evt.ContainerOpLoaded;
+import io.agilehandy.command.api.evt.ContainerOpOffLoaded;
+import io.agilehandy.command.api.evt.ContainerOpReleased;
+import io.agilehandy.command.api.evt.ContainerOpReserved;
+import io.agilehandy.command.api.evt.ContainerTransArrived;
+import io.agilehandy.command.api.evt.ContainerTransBoarded;
+import io.agilehandy.command.api.evt.ContainerTransDeparted;
+import io.agilehandy.command.api.evt.ContainerTransOffBoarded;
+import org.axonframework.serialization.SerializedObject;
+import org.axonframework.serialization.Serializer;
+import org.axonframework.serialization.xml.XStreamSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializing and deserializing container events with XStream, the former
+ * serializer, and with the {@link ContainerBinarySerializer} in front of it.
+ * Running {@link #main} first prints the bytes each event takes with both.
+ *
+ * @author Haytham Mohamed
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContainerSerializationBenchmark {
+
+	@Param({"xstream", "binary"})
+	String serializer;
+
+	@Param({"ContainerCreated", "ContainerOpReserved", "ContainerOpLoaded"})
+	String event;
+
+	Serializer subject;
+	Object payload;
+	SerializedObject<byte[]> serialized;
+
+	@Setup
+	public void setUp() {
+		subject = "binary".equals(serializer) ? binary() : xstream();
+		payload = events().get(event);
+		serialized = subject.serialize(payload, byte[].class);
+	}
+
+	@Benchmark
+	public SerializedObject<byte[]> serialize() {
+		return subject.serialize(payload, byte[].class);
+	}
+
+	@Benchmark
+	public Object deserialize() {
+		return subject.deserialize(serialized);
+	}
+
+	static Serializer xstream() {
+		return XStreamSerializer.builder().build();
+	}
+
+	static Serializer binary() {
+		return new ContainerBinarySerializer(xstream(),
+				new NameDictionary(Arrays.asList("zone-1", "port-1", "zone-2", "port-2")),
+				SerializationConfig.containerMessageTypes());
+	}
+
+	// one of each container event, as the demo client produces them
+	static Map<String, Object> events() {
+		UUID id = UUID.randomUUID();
+		LocalDateTime now = LocalDateTime.now();
+		Map<String, Object> events = new LinkedHashMap<>();
+		events.put("ContainerCreated", new ContainerCreated(id, 500f, "zone-1", "port-1", now));
+		events.put("ContainerOpReserved", new ContainerOpReserved(id, now, UUID.randomUUID(), TransmitType.PRIORITY,
+				"zone-2", "port-2", "zone-1", "port-1"));
+		events.put("ContainerOpLoaded", new ContainerOpLoaded(id, 80f, now));
+		events.put("ContainerTransBoarded", new ContainerTransBoarded(id, now));
+		events.put("ContainerTransDeparted", new ContainerTransDeparted(id, now));
+		events.put("ContainerTransArrived", new ContainerTransArrived(id, now));
+		events.put("ContainerTransOffBoarded", new ContainerTransOffBoarded(id, now));
+		events.put("ContainerOpOffLoaded", new ContainerOpOffLoaded(id, now));
+		events.put("ContainerOpReleased", new ContainerOpReleased(id, now));
+		return events;
+	}
+
+	static void printSizes() {
+		Serializer xstream = xstream();
+		Serializer binary = binary();
+		System.out.printf("%-26s %8s %8s%n", "event", "xstream", "binary");
+		events().forEach((name, payload) -> System.out.printf("%-26s %8d %8d%n", name,
+				xstream.serialize(payload, byte[].class).getData().length,
+				binary.serialize(payload, byte[].class).getData().length));
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		printSizes();
+		new Runner(new OptionsBuilder()
+				.include(ContainerSerializationBenchmark.class.getSimpleName())
+				.build()).run();
+	}
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.agilehandy.command.api.cmd.ContainerTransBoardCommand;
+import io.agilehandy.command.gateway.ContainerReservations;
+import io.agilehandy.command.gateway.PositionedCommandGateway;
+import io.agilehandy.command.impl.ContainerCapacityIndex;
+import io.agilehandy.query.inventory.Inventory;
+import io.agilehandy.query.inventory.InventoryProperties;
+import io.agilehandy.query.inventory.InventoryQuery;
+import org.axonframework.axonserver.connector.ErrorCode;
+import org.axonframework.commandhandling.CommandExecutionException;
+import org.axonframework.commandhandling.CommandMessage;
+import org.axonframework.commandhandling.SimpleCommandBus;
+import org.axonframework.commandhandling.gateway.DefaultCommandGateway;
+import org.axonframework.eventhandling.GlobalSequenceTrackingToken;
+import org.axonframework.eventsourcing.eventstore.EventStore;
+import org.axonframework.messaging.MessageHandlerInterceptor;
+import org.axonframework.modelling.command.AggregateNotFoundException;
+import org.axonframework.queryhandling.DefaultQueryGateway;
+import org.axonframework.queryhandling.QueryExecutionException;
+import org.axonframework.queryhandling.QueryMessage;
+import org.axonframework.queryhandling.SimpleQueryBus;
+import org.junit.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Failures of commands and queries get the same status whether they were
+ * handled in this JVM or on another node, whose failures come back the way
+ * the Axon Server connector serializes and converts them.
+ *
+ * @author Haytham Mohamed
+ **/
+public class ApiExceptionHandlerTests {
+
+	final UUID id = UUID.randomUUID();
+
+	@Test
+	public void rejectedCommand() throws Exception {
+		for (boolean remote : new boolean[] {false, true}) {
+			expect(mvc(remote, () -> new IllegalStateException("Container is not loaded yet"), null),
+					post("/containers/" + id + "/board"), 409, "Container is not loaded yet");
+		}
+	}
+
+	@Test
+	public void unknownContainer() throws Exception {
+		for (boolean remote : new boolean[] {false, true}) {
+			expect(mvc(remote, () -> new AggregateNotFoundException(id.toString(), "no container " + id), null),
+					post("/containers/" + id + "/board"), 404, "no container " + id);
+		}
+	}
+
+	@Test
+	public void remoteFailureWithoutMapping() throws Exception {
+		expect(mvc(true, () -> new UnsupportedOperationException("broken"), null),
+				post("/containers/" + id + "/board"), 500, "broken");
+	}
+
+	@Test
+	public void queryTimedOut() throws Exception {
+		for (boolean remote : new boolean[] {false, true}) {
+			expect(mvc(remote, null, () -> new TimeoutException("inventory has not reached position 7")),
+					get("/inventory/zones/zone-1/ports/port-1?atLeastPosition=7"),
+					504, "inventory has not reached position 7");
+		}
+	}
+
+	private static void expect(MockMvc mvc, RequestBuilder request, int status, String body) throws Exception {
+		MvcResult result = mvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+		mvc.perform(asyncDispatch(result))
+				.andExpect(status().is(status))
+				.andExpect(content().string(body));
+	}
+
+	// a board command and an inventory query failing as told, converted as the connector does when remote
+	private MockMvc mvc(boolean remote, Supplier<Exception> commandFailure, Supplier<Exception> queryFailure) {
+		SimpleCommandBus commandBus = SimpleCommandBus.builder().build();
+		commandBus.subscribe(ContainerTransBoardCommand.class.getName(), command -> {
+			throw commandFailure.get();
+		});
+		SimpleQueryBus queryBus = SimpleQueryBus.builder().build();
+		queryBus.subscribe(InventoryQuery.class.getName(), Inventory.class,
+				query -> {
+					CompletableFuture<Object> result = new CompletableFuture<>();
+					result.completeExceptionally(queryFailure.get());
+					return result;
+				});
+		if (remote) {
+			commandBus.registerHandlerInterceptor(RemoteLike.<CommandMessage<?>>failingAs(ErrorCode.COMMAND_EXECUTION_ERROR));
+			commandBus.registerHandlerInterceptor(new FailureDescribingInterceptor<CommandMessage<?>>(
+					CommandExecutionException::new, CommandExecutionException.class));
+			queryBus.registerHandlerInterceptor(RemoteLike.<QueryMessage<?, ?>>failingAs(ErrorCode.QUERY_EXECUTION_ERROR));
+			queryBus.registerHandlerInterceptor(new FailureDescribingInterceptor<QueryMessage<?, ?>>(
+					QueryExecutionException::new, QueryExecutionException.class));
+		}
+
+		EventStore eventStore = mock(EventStore.class);
+		when(eventStore.createHeadToken()).thenReturn(new GlobalSequenceTrackingToken(1));
+		PositionedCommandGateway commandGateway = new PositionedCommandGateway(
+				DefaultCommandGateway.builder().commandBus(commandBus).build(), eventStore);
+		return MockMvcBuilders
+				.standaloneSetup(new ContainerController(commandGateway,
+								new ContainerReservations(new ContainerCapacityIndex(), commandGateway)),
+						new InventoryController(DefaultQueryGateway.builder().queryBus(queryBus).build(),
+								new ObjectMapper(), new InventoryProperties()))
+				.setControllerAdvice(new ApiExceptionHandler())
+				.build();
+	}
+
+	// what the Axon Server connector does with a failure handled on another node before the sender sees it
+	private static class RemoteLike {
+
+		static <T extends org.axonframework.messaging.Message<?>> MessageHandlerInterceptor<T> failingAs(ErrorCode code) {
+			return (unitOfWork, chain) -> {
+				Object result;
+				try {
+					result = chain.proceed();
+				} catch (Exception e) {
+					throw code.convert("other-node", e);
+				}
+				if (result instanceof CompletableFuture) {
+					return ((CompletableFuture<?>) result).handle((value, e) -> {
+						if (e != null) {
+							throw code.convert("other-node", e instanceof CompletionException ? e.getCause() : e);
+						}
+						return value;
+					});
+				}
+				return result;
+			};
+		}
+	}
+
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.agilehandy.web;
+
+import io.agilehandy.ContainerDemoApplication;
+import io.agilehandy.command.api.CommandResult;
+import io.agilehandy.command.api.cmd.ContainerCreateCommand;
+import io.agilehandy.command.gateway.PositionedCommandGateway;
+import org.axonframework.commandhandling.CommandBus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * How many create requests can be in flight at once with only a few servlet
+ * threads, while every command takes a fixed time to handle. Served by the
+ * asynchronous endpoint a servlet thread is free again once the command is
+ * handed on to a command worker; served by an endpoint waiting on the result,
+ * every request in flight holds one of the servlet threads. Each iteration
+ * reports the most commands being handled at once, and scores are creates per
+ * second, about that many per delay.
+ *
+ * @author Haytham Mohamed
+ **/
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+// keep a connection per client thread alive, rather than the default of five
+@Fork(value = 1, jvmArgsAppend = "-Dhttp.maxConnections=" + ContainerApiBenchmark.CLIENTS)
+@Threads(ContainerApiBenchmark.CLIENTS)
+public class ContainerApiBenchmark {
+
+	static final int CLIENTS = 64;
+	static final int SERVLET_THREADS = 4;
+	static final long DELAY_MILLIS = 100;
+
+	// the same create, parking its servlet thread until handled
+	@RequestMapping("/blocking")
+	@ResponseBody
+	static class BlockingApi {
+
+		private final PositionedCommandGateway gateway;
+
+		BlockingApi(PositionedCommandGateway gateway) {
+			this.gateway = gateway;
+		}
+
+		@PostMapping("/containers")
+		public CommandResult<UUID> create(@RequestBody ContainerCreateCommand command) {
+			return gateway.<UUID>send(command).join();
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Server {
+
+		@Param({"async", "blocking"})
+		String api;
+
+		ServletWebServerApplicationContext context;
+		String base;
+
+		final AtomicInteger handling = new AtomicInteger();
+		final AtomicInteger mostHandling = new AtomicInteger();
+
+		@Setup(Level.Trial)
+		public void start() {
+			context = (ServletWebServerApplicationContext) new SpringApplicationBuilder(
+					ContainerDemoApplication.class)
+					// registered by hand, a component here would join every context scanning the tests
+					.initializers((GenericApplicationContext c) -> c.registerBean(BlockingApi.class))
+					// commands handled on workers of their own, one for each client
+					.profiles("embedded", "affine")
+					.properties("logging.level.root=WARN")
+					.run("--server.port=0",
+							"--server.tomcat.max-threads=" + SERVLET_THREADS,
+							"--server.tomcat.min-spare-threads=" + SERVLET_THREADS,
+							"--acme.container.affinity.workers=" + CLIENTS,
+							// a command holds its connection while handled, slow as it is
+							"--spring.datasource.hikari.maximum-pool-size=" + (CLIENTS + 8),
+							"--acme.client.mode=off");
+			// every command as slow as one waiting on something remote, without using a CPU meanwhile
+			context.getBean(CommandBus.class).registerHandlerInterceptor((unitOfWork, chain) -> {
+				mostHandling.accumulateAndGet(handling.incrementAndGet(), Math::max);
+				try {
+					Thread.sleep(DELAY_MILLIS);
+					return chain.proceed();
+				} finally {
+					handling.decrementAndGet();
+				}
+			});
+			base = "http://localhost:" + context.getWebServer().getPort()
+					+ ("blocking".equals(api) ? "/blocking" : "");
+		}
+
+		@Setup(Level.Iteration)
+		public void resetMostHandling() {
+			mostHandling.set(0);
+		}
+
+		@TearDown(Level.Iteration)
+		public void reportMostHandling() {
+			System.out.printf(" [at most %d commands in flight]", mostHandling.get());
+		}
+
+		@TearDown(Level.Trial)
+		public void stop() {
+			context.close();
+		}
+	}
+
+	@Benchmark
+	public String create(Server server) throws IOException {
+		return call("POST", server.base + "/containers",
+				"{\"id\":\"" + UUID.randomUUID() + "\",\"size\":500,"
+						+ "\"currentZoneName\":\"zone-1\",\"currentPortName\":\"port-1\"}");
+	}
+
+	// the whole response is read, so the connection goes back to the keep-alive cache
+	static String call(String method, String url, String json) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+		connection.setRequestMethod(method);
+		if (json != null) {
+			connection.setDoOutput(true);
+			connection.setRequestProperty("Content-Type", "application/json");
+			try (OutputStream out = connection.getOutputStream()) {
+				out.write(json.getBytes(StandardCharsets.UTF_8));
+			}
+		}
+		int status = connection.getResponseCode();
+		try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			byte[] buffer = new byte[1024];
+			for (int n; in != null && (n = in.read(buffer)) != -1; ) {
+				body.write(buffer, 0, n);
+			}
+			String text = new String(body.toByteArray(), StandardCharsets.UTF_8);
+			if (status != 200) {
+				throw new IllegalStateException(method + " " + url + " answered " + status + ": " + text);
+			}
+			return text;
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(ContainerApiBenchmark.class.getSimpleName())
+				.build()).run();
+	}
+
+}